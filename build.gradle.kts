@@ -28,6 +28,9 @@ dependencies {
     testImplementation("org.springframework.boot:spring-boot-starter-test:3.1.0")
     //cache spring
     implementation("org.springframework.boot:spring-boot-starter-cache:3.1.0")
+    implementation("com.github.ben-manes.caffeine:caffeine:3.1.8")
+    //metricas
+    implementation("org.springframework.boot:spring-boot-starter-actuator:3.1.0")
     //validation
     implementation("org.springframework.boot:spring-boot-starter-validation:3.0.4")
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310:2.14.2")
@@ -92,3 +92,7 @@ ALTER TABLE ONLY "public"."funkos"
 ALTER TABLE ONLY "public"."user_roles"
     ADD CONSTRAINT "fk2chxp26bnpqjibydrikgq4t9e" FOREIGN KEY (user_id) REFERENCES usuarios (id) NOT DEFERRABLE;
 
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_funkos_nombre_trgm ON "public"."funkos" USING gin (lower(nombre) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_categorias_name_trgm ON "public"."categorias" USING gin (lower(name) gin_trgm_ops);
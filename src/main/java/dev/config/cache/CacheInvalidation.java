@@ -0,0 +1,35 @@
+package dev.config.cache;
+
+// Sólo viajan claves Long y String; con cualquier otra clave (o null) se invalida la caché entera.
+public record CacheInvalidation(String nodeId, String cacheName, String key) {
+
+    public static CacheInvalidation of(String nodeId, String cacheName, Object key) {
+        String encoded = null;
+        if (key instanceof Long value) {
+            encoded = "L:" + value;
+        } else if (key instanceof String value) {
+            encoded = "S:" + value;
+        }
+        return new CacheInvalidation(nodeId, cacheName, encoded);
+    }
+
+    public static CacheInvalidation parse(String payload) {
+        String[] partes = payload.split("\\|", 3);
+        return new CacheInvalidation(partes[0], partes[1], partes.length > 2 && !partes[2].isEmpty() ? partes[2] : null);
+    }
+
+    public boolean isClear() {
+        return key == null;
+    }
+
+    public Object decodedKey() {
+        if (key == null) {
+            return null;
+        }
+        return key.startsWith("L:") ? (Object) Long.valueOf(key.substring(2)) : key.substring(2);
+    }
+
+    public String serialize() {
+        return nodeId + "|" + cacheName + "|" + (key != null ? key : "");
+    }
+}
@@ -0,0 +1,38 @@
+package dev.config.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@ConfigurationProperties(prefix = "cache")
+public record CachesProperties(Spec defaults, Map<String, Spec> specs, Cluster cluster) {
+    private static final Spec POR_DEFECTO = new Spec(10_000L, Duration.ofMinutes(10));
+
+    public CachesProperties {
+        defaults = defaults != null ? defaults.orElse(POR_DEFECTO) : POR_DEFECTO;
+        specs = specs != null ? specs : Map.of();
+        cluster = cluster != null ? cluster : new Cluster(null, null);
+    }
+
+    public Spec spec(String cacheName) {
+        Spec spec = specs.get(cacheName);
+        return spec != null ? spec.orElse(defaults) : defaults;
+    }
+
+    public record Spec(Long maxSize, Duration ttl) {
+        Spec orElse(Spec otra) {
+            return new Spec(maxSize != null ? maxSize : otra.maxSize(), ttl != null ? ttl : otra.ttl());
+        }
+    }
+
+    // Cachés que se mantienen coherentes entre réplicas y el identificador de este nodo
+    public record Cluster(List<String> caches, String nodeId) {
+        public Cluster {
+            caches = caches != null ? caches : List.of("funkos");
+            nodeId = nodeId != null ? nodeId : UUID.randomUUID().toString();
+        }
+    }
+}
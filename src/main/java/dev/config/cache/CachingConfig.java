@@ -0,0 +1,48 @@
+package dev.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Optional;
+import java.util.Set;
+
+// Cachés acotadas con Caffeine (expulsión W-TinyLFU) en lugar del ConcurrentMapCache por defecto,
+// que crece sin límite. Las estadísticas las publica actuator como métricas cache.*
+// Las cachés de cache.cluster.caches además se invalidan en el resto de réplicas (TwoLevelCache)
+// y los fallos concurrentes de una clave comparten una sola carga (métricas cache.loads*).
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(CachesProperties.class)
+public class CachingConfig {
+
+    @Bean
+    public CacheManager cacheManager(CachesProperties properties, InvalidationBus invalidationBus, Optional<SharedCacheProvider> sharedCacheProvider,
+                                     Optional<MeterRegistry> meterRegistry) {
+        CachesProperties.Cluster cluster = properties.cluster();
+        log.info("Cachés coherentes en el clúster {} (nodo {})", cluster.caches(), cluster.nodeId());
+        CaffeineCacheManager cacheManager = new TwoLevelCacheManager(
+                Set.copyOf(cluster.caches()), invalidationBus, sharedCacheProvider.orElse(null), cluster.nodeId(),
+                meterRegistry.orElseGet(SimpleMeterRegistry::new));
+        cacheManager.setCaffeine(caffeine(properties.defaults()));
+        properties.specs().keySet().forEach(name -> {
+            CachesProperties.Spec spec = properties.spec(name);
+            log.info("Configurando caché {}: máximo {} entradas, ttl {}", name, spec.maxSize(), spec.ttl());
+            cacheManager.registerCustomCache(name, caffeine(spec).build());
+        });
+        return cacheManager;
+    }
+
+    private static Caffeine<Object, Object> caffeine(CachesProperties.Spec spec) {
+        return Caffeine.newBuilder()
+                .maximumSize(spec.maxSize())
+                .expireAfterWrite(spec.ttl())
+                .recordStats();
+    }
+}
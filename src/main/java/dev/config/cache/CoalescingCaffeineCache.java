@@ -0,0 +1,64 @@
+package dev.config.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Para @Cacheable(sync = true): los fallos concurrentes de la misma clave comparten una sola carga.
+// La carga va dentro del get atómico de Caffeine, así que un evict que llega a mitad de la carga espera
+// a que termine y la descarta, en lugar de perderse y dejar el valor viejo hasta que caduque.
+// Cada petición cuenta un único acierto o fallo en las estadísticas de Caffeine.
+public class CoalescingCaffeineCache extends CaffeineCache {
+    private final Set<Object> enCarga = ConcurrentHashMap.newKeySet();
+    private final Counter cargas;
+    private final Counter coalescidas;
+
+    public CoalescingCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                   boolean allowNullValues, MeterRegistry meterRegistry) {
+        super(name, cache, allowNullValues);
+        this.cargas = Counter.builder("cache.loads")
+                .description("Cargas ejecutadas tras un fallo de caché")
+                .tag("cache", name)
+                .register(meterRegistry);
+        this.coalescidas = Counter.builder("cache.loads.coalesced")
+                .description("Fallos de caché que esperaron a una carga en curso de la misma clave")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        boolean esperando = enCarga.contains(key);
+        boolean[] cargado = {false};
+        Object valor = getNativeCache().get(key, k -> {
+            cargado[0] = true;
+            cargas.increment();
+            enCarga.add(k);
+            try {
+                return toStoreValue(valueLoader.call());
+            } catch (Exception e) {
+                throw new ValueRetrievalException(k, valueLoader, e);
+            } finally {
+                enCarga.remove(k);
+            }
+        });
+        // Aproximado: sólo cuenta quien ya veía la carga en curso al llegar
+        if (esperando && !cargado[0]) {
+            coalescidas.increment();
+        }
+        return (T) fromStoreValue(valor);
+    }
+
+    public long loads() {
+        return (long) cargas.count();
+    }
+
+    public long coalesced() {
+        return (long) coalescidas.count();
+    }
+}
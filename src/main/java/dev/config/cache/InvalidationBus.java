@@ -0,0 +1,10 @@
+package dev.config.cache;
+
+import java.util.function.Consumer;
+
+public interface InvalidationBus {
+
+    void publish(CacheInvalidation invalidation);
+
+    void subscribe(Consumer<CacheInvalidation> listener);
+}
@@ -0,0 +1,47 @@
+package dev.config.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Bus dentro de la JVM: los suscriptores se comparten entre todos los contextos,
+// así que varios contextos en el mismo proceso se comportan como nodos distintos.
+@Component
+@Profile("!prod")
+public class LoopbackInvalidationBus implements InvalidationBus {
+    private static final List<Consumer<CacheInvalidation>> SUSCRIPTORES = new CopyOnWriteArrayList<>();
+    private final List<Consumer<CacheInvalidation>> propios = new ArrayList<>();
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    SUSCRIPTORES.forEach(listener -> listener.accept(invalidation));
+                }
+            });
+        } else {
+            SUSCRIPTORES.forEach(listener -> listener.accept(invalidation));
+        }
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<CacheInvalidation> listener) {
+        propios.add(listener);
+        SUSCRIPTORES.add(listener);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        SUSCRIPTORES.removeAll(propios);
+        propios.clear();
+    }
+}
@@ -0,0 +1,109 @@
+package dev.config.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Todas las réplicas comparten Postgres, así que el bus es LISTEN/NOTIFY. Un NOTIFY emitido dentro
+// de una transacción sólo se entrega si hace commit, por lo que no hay que diferir la publicación.
+@Slf4j
+@Component
+@Profile("prod")
+public class PostgresInvalidationBus implements InvalidationBus {
+    private static final String CANAL = "cache_invalidation";
+    private static final int ESPERA_MS = 500;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+    private Thread escucha;
+
+    @Autowired
+    public PostgresInvalidationBus(DataSource dataSource, JdbcTemplate jdbcTemplate) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        escucha = new Thread(this::listen, "cache-invalidation-listener");
+        escucha.setDaemon(true);
+        escucha.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        escucha.interrupt();
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        jdbcTemplate.execute("SELECT pg_notify(?, ?)", (PreparedStatementCallback<Boolean>) ps -> {
+            ps.setString(1, CANAL);
+            ps.setString(2, invalidation.serialize());
+            return ps.execute();
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CANAL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Escuchando invalidaciones de caché en el canal {}", CANAL);
+                while (running) {
+                    PGNotification[] notificaciones = pgConnection.getNotifications(ESPERA_MS);
+                    if (notificaciones != null) {
+                        for (PGNotification notificacion : notificaciones) {
+                            dispatch(CacheInvalidation.parse(notificacion.getParameter()));
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.error("Error escuchando invalidaciones de caché, reintentando...", e);
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void dispatch(CacheInvalidation invalidation) {
+        for (Consumer<CacheInvalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (RuntimeException e) {
+                log.error("Error aplicando la invalidación de caché {}", invalidation, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package dev.config.cache;
+
+import org.springframework.cache.Cache;
+
+// Segundo nivel compartido por todos los nodos (Redis, Hazelcast...). Si no hay ningún bean
+// las cachés del clúster trabajan sólo con la caché local y el bus de invalidaciones.
+public interface SharedCacheProvider {
+
+    Cache getCache(String name);
+}
@@ -0,0 +1,122 @@
+package dev.config.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+// Caché local (near, la propia CaffeineCache) delante de una caché compartida opcional.
+// Toda escritura (put, evict, clear) se publica en el bus para que el resto de nodos descarten
+// su copia local. Las cargas por fallo deben usar get(key, loader) (@Cacheable(sync = true)):
+// un put se trata como una escritura y provocaría invalidaciones en el resto de nodos.
+public class TwoLevelCache extends CoalescingCaffeineCache {
+    private final Cache shared;
+    private final InvalidationBus bus;
+    private final String nodeId;
+
+    public TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> near, boolean allowNullValues,
+                         MeterRegistry meterRegistry, Cache shared, InvalidationBus bus, String nodeId) {
+        super(name, near, allowNullValues, meterRegistry);
+        this.shared = shared;
+        this.bus = bus;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper valor = super.get(key);
+        if (valor == null && shared != null) {
+            valor = shared.get(key);
+            if (valor != null) {
+                super.put(key, valor.get());
+            }
+        }
+        return valor;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper valor = get(key);
+        Object value = valor != null ? valor.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("El valor en caché no es del tipo " + type.getName() + ": " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return super.get(key, () -> {
+            if (shared != null) {
+                ValueWrapper valor = shared.get(key);
+                if (valor != null) {
+                    return (T) valor.get();
+                }
+            }
+            T value = valueLoader.call();
+            if (shared != null) {
+                shared.put(key, value);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (shared != null) {
+            shared.put(key, value);
+        }
+        super.put(key, value);
+        bus.publish(CacheInvalidation.of(nodeId, getName(), key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existente = get(key);
+        if (existente == null) {
+            put(key, value);
+        }
+        return existente;
+    }
+
+    @Override
+    public void evict(Object key) {
+        if (shared != null) {
+            shared.evict(key);
+        }
+        super.evict(key);
+        bus.publish(CacheInvalidation.of(nodeId, getName(), key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean presente = super.get(key) != null;
+        evict(key);
+        return presente;
+    }
+
+    @Override
+    public void clear() {
+        if (shared != null) {
+            shared.clear();
+        }
+        super.clear();
+        bus.publish(CacheInvalidation.of(nodeId, getName(), null));
+    }
+
+    @Override
+    public boolean invalidate() {
+        clear();
+        return true;
+    }
+
+    void invalidateLocal(CacheInvalidation invalidation) {
+        if (invalidation.isClear()) {
+            super.clear();
+        } else {
+            super.evict(invalidation.decodedKey());
+        }
+    }
+}
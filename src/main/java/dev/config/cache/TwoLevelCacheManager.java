@@ -0,0 +1,46 @@
+package dev.config.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.Set;
+
+// Todas las cachés agrupan las cargas concurrentes de una misma clave (CoalescingCaffeineCache);
+// las de clusterCaches además son TwoLevelCache, el resto siguen siendo sólo locales.
+@Slf4j
+public class TwoLevelCacheManager extends CaffeineCacheManager {
+    private final Set<String> clusterCaches;
+    private final InvalidationBus bus;
+    private final SharedCacheProvider shared;
+    private final String nodeId;
+    private final MeterRegistry meterRegistry;
+
+    public TwoLevelCacheManager(Set<String> clusterCaches, InvalidationBus bus, SharedCacheProvider shared, String nodeId, MeterRegistry meterRegistry) {
+        this.clusterCaches = clusterCaches;
+        this.meterRegistry = meterRegistry;
+        this.bus = bus;
+        this.shared = shared;
+        this.nodeId = nodeId;
+        bus.subscribe(this::onInvalidation);
+    }
+
+    @Override
+    protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+        if (!clusterCaches.contains(name)) {
+            return new CoalescingCaffeineCache(name, cache, isAllowNullValues(), meterRegistry);
+        }
+        return new TwoLevelCache(name, cache, isAllowNullValues(), meterRegistry, shared != null ? shared.getCache(name) : null, bus, nodeId);
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.nodeId()) || !getCacheNames().contains(invalidation.cacheName())) {
+            return;
+        }
+        if (getCache(invalidation.cacheName()) instanceof TwoLevelCache cache) {
+            log.debug("Invalidando {} en la caché {} por cambio en el nodo {}", invalidation.key(), invalidation.cacheName(), invalidation.nodeId());
+            cache.invalidateLocal(invalidation);
+        }
+    }
+}
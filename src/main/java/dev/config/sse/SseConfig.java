@@ -0,0 +1,44 @@
+package dev.config.sse;
+
+import dev.config.websocket.NotificationReplayBuffer;
+import dev.config.websocket.WebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// El stream SSE cuelga del mismo handler que las notificaciones websocket: comparte numeración y buffer de repetición
+@Configuration
+public class SseConfig {
+    @Value("${sse.threads:4}")
+    private int threads;
+    @Value("${sse.buffer-size:256}")
+    private int bufferSize;
+    @Value("${sse.timeout:1800000}")
+    private long timeout;
+    @Value("${sse.keep-alive:15000}")
+    private long keepAlive;
+    @Value("${sse.send-timeout:10000}")
+    private long sendTimeout;
+
+    @Bean(destroyMethod = "close")
+    public SseNotificationHub funkosEvents(WebSocketHandler webSocketFunkosHandler, NotificationReplayBuffer funkosReplay) {
+        AtomicInteger contador = new AtomicInteger();
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService vigilante = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-vigilante");
+            thread.setDaemon(true);
+            return thread;
+        });
+        SseNotificationHub hub = new SseNotificationHub(funkosReplay, executor, vigilante, bufferSize, timeout, keepAlive, sendTimeout);
+        webSocketFunkosHandler.addListener(hub);
+        return hub;
+    }
+}
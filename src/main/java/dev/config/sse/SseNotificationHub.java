@@ -0,0 +1,235 @@
+package dev.config.sse;
+
+import dev.config.websocket.NotificationListener;
+import dev.config.websocket.NotificationReplayBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Reparte las notificaciones de funkos a los suscriptores SSE. Cada evento se construye una vez con
+// SseEmitter.event().build() y las mismas líneas se envían a todos con emitter.send(Set). Cada suscriptor
+// tiene una cola acotada que vacía un pool pequeño de hilos (ningún hilo por conexión). Si un suscriptor no da abasto y su cola se llena se cierra su stream:
+// EventSource se reconecta solo con Last-Event-ID y recupera lo perdido del buffer de repetición.
+// Un envío bloqueado (cliente parado o conexión medio abierta) no puede quedarse con el pool: un vigilante aparte
+// cierra al suscriptor cuando un envío pasa de send-timeout y el pool tiene un hilo más hasta que ese envío vuelve.
+// Los cierres se hacen en un hilo propio porque SseEmitter.complete espera a que termine el send en curso.
+@Slf4j
+public class SseNotificationHub implements NotificationListener {
+    private static final Set<DataWithMediaType> KEEP_ALIVE = SseEmitter.event().comment("keep-alive").build();
+
+    private final NotificationReplayBuffer replay;
+    private final ScheduledExecutorService executor;
+    private final ScheduledExecutorService vigilante;
+    private final int bufferSize;
+    private final long timeout;
+    private final long sendTimeout;
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    // Los que están dentro de emitter.send, aunque ya se hayan cerrado por lentos
+    private final Set<Suscriptor> enviandoAhora = ConcurrentHashMap.newKeySet();
+
+    public SseNotificationHub(NotificationReplayBuffer replay, ScheduledExecutorService executor, ScheduledExecutorService vigilante,
+                              int bufferSize, long timeout, long keepAlive, long sendTimeout) {
+        this.replay = replay;
+        this.executor = executor;
+        this.vigilante = vigilante;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.sendTimeout = sendTimeout;
+        if (keepAlive > 0) {
+            vigilante.scheduleAtFixedRate(() -> suscriptores.forEach(s -> s.offer(KEEP_ALIVE)), keepAlive, keepAlive, TimeUnit.MILLISECONDS);
+        }
+        long revision = Math.max(sendTimeout / 2, 1);
+        vigilante.scheduleWithFixedDelay(this::checkSends, revision, revision, TimeUnit.MILLISECONDS);
+    }
+
+    // Con lastEventId se envía primero lo que el cliente se ha perdido, o un evento resync si ya no está
+    public SseEmitter subscribe(Long lastEventId) {
+        return subscribe(new SseEmitter(timeout), lastEventId);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, Long lastEventId) {
+        Suscriptor suscriptor = new Suscriptor(emitter);
+        emitter.onCompletion(() -> suscriptores.remove(suscriptor));
+        emitter.onTimeout(() -> suscriptores.remove(suscriptor));
+        emitter.onError(e -> suscriptores.remove(suscriptor));
+        synchronized (replay) {
+            if (lastEventId != null) {
+                Optional<List<NotificationReplayBuffer.Entry>> perdidas = replay.since(lastEventId);
+                if (perdidas.isEmpty() || perdidas.get().size() > bufferSize) {
+                    log.info("El suscriptor SSE pide eventos desde {} que ya no están disponibles, debe resincronizar", lastEventId);
+                    suscriptor.offer(resync(replay.lastSeq()));
+                } else {
+                    perdidas.get().forEach(entry -> suscriptor.offer(evento(entry)));
+                }
+            }
+            suscriptores.add(suscriptor);
+        }
+        log.info("Nuevo suscriptor SSE, hay {}", suscriptores.size());
+        return emitter;
+    }
+
+    @Override
+    public void onNotifications(List<NotificationReplayBuffer.Entry> entries) {
+        for (NotificationReplayBuffer.Entry entry : entries) {
+            Set<DataWithMediaType> evento = evento(entry);
+            for (Suscriptor suscriptor : suscriptores) {
+                suscriptor.offer(evento);
+            }
+        }
+    }
+
+    public int size() {
+        return suscriptores.size();
+    }
+
+    public void close() {
+        vigilante.shutdownNow();
+        executor.shutdownNow();
+        suscriptores.forEach(s -> s.emitter.complete());
+        suscriptores.clear();
+    }
+
+    private void checkSends() {
+        long ahora = System.nanoTime();
+        for (Suscriptor suscriptor : enviandoAhora) {
+            long desde = suscriptor.enviandoDesde;
+            if (desde != 0 && ahora - desde > TimeUnit.MILLISECONDS.toNanos(sendTimeout)) {
+                suscriptor.atascado();
+            }
+        }
+    }
+
+    // Hilos extra del pool mientras haya envíos atascados de suscriptores ya cerrados
+    private synchronized void resizePool(int cambio) {
+        if (executor instanceof ThreadPoolExecutor pool) {
+            pool.setCorePoolSize(pool.getCorePoolSize() + cambio);
+        }
+    }
+
+    private static Set<DataWithMediaType> evento(NotificationReplayBuffer.Entry entry) {
+        return SseEmitter.event()
+                .id(String.valueOf(entry.seq()))
+                .name("funko")
+                .data(entry.message(), MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    private static Set<DataWithMediaType> resync(long seq) {
+        return SseEmitter.event()
+                .id(String.valueOf(seq))
+                .name("resync")
+                .data("{\"resync\":\"required\",\"seq\":" + seq + "}", MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    // Sólo hay una tarea de envío en marcha por suscriptor; se programa cuando su cola deja de estar vacía
+    private final class Suscriptor {
+        private final SseEmitter emitter;
+        private final Deque<Set<DataWithMediaType>> cola = new ArrayDeque<>();
+        private boolean programado;
+        private boolean cerrado;
+        private boolean compensado;
+        private volatile long enviandoDesde;
+        private Thread enviando;
+
+        private Suscriptor(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Set<DataWithMediaType> evento) {
+            synchronized (this) {
+                if (cerrado) {
+                    return;
+                }
+                if (cola.size() >= bufferSize) {
+                    log.warn("Suscriptor SSE lento, se cierra su stream");
+                    cerrar();
+                    return;
+                }
+                cola.addLast(evento);
+                if (programado) {
+                    return;
+                }
+                programado = true;
+            }
+            executor.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Set<DataWithMediaType> evento;
+                synchronized (this) {
+                    evento = cola.pollFirst();
+                    if (evento == null || cerrado) {
+                        programado = false;
+                        return;
+                    }
+                    enviando = Thread.currentThread();
+                }
+                enviandoDesde = System.nanoTime();
+                enviandoAhora.add(this);
+                try {
+                    emitter.send(evento);
+                } catch (IOException | IllegalStateException e) {
+                    // El contenedor avisa de la desconexión por onError/onCompletion
+                    synchronized (this) {
+                        cerrado = true;
+                        cola.clear();
+                    }
+                    suscriptores.remove(this);
+                } finally {
+                    enviandoAhora.remove(this);
+                    enviandoDesde = 0;
+                    synchronized (this) {
+                        enviando = null;
+                        if (compensado) {
+                            compensado = false;
+                            Thread.interrupted();
+                            resizePool(-1);
+                        }
+                    }
+                }
+            }
+        }
+
+        // El envío en curso lleva más de send-timeout: se cierra el stream y se interrumpe el hilo
+        private void atascado() {
+            synchronized (this) {
+                if (compensado || enviandoDesde == 0) {
+                    return;
+                }
+                log.warn("Envío SSE bloqueado más de {} ms, se cierra el stream del suscriptor", sendTimeout);
+                if (!cerrado) {
+                    cerrar();
+                }
+                compensado = true;
+                resizePool(1);
+                if (enviando != null) {
+                    enviando.interrupt();
+                }
+            }
+        }
+
+        // Siempre con el lock del suscriptor
+        private void cerrar() {
+            cerrado = true;
+            cola.clear();
+            suscriptores.remove(this);
+            Thread cierre = new Thread(emitter::complete, "sse-cierre");
+            cierre.setDaemon(true);
+            cierre.start();
+        }
+    }
+}
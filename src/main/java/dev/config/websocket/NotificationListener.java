@@ -0,0 +1,9 @@
+package dev.config.websocket;
+
+import java.util.List;
+
+// Recibe las notificaciones ya numeradas, en el mismo orden en que salen por websocket
+public interface NotificationListener {
+
+    void onNotifications(List<NotificationReplayBuffer.Entry> entries);
+}
@@ -0,0 +1,63 @@
+package dev.config.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Últimas notificaciones enviadas, numeradas con una secuencia creciente, para que un cliente que
+// se reconecta reciba sólo lo que se ha perdido. La secuencia empieza en el instante de arranque
+// (milisegundos * 1000): tras un reinicio sigue siendo mayor que cualquiera de la ejecución anterior,
+// así que un cliente que viene de ella recibe todo lo enviado desde el arranque mientras no se haya
+// descartado nada del buffer. El valor cabe en un número de JavaScript sin perder precisión.
+public class NotificationReplayBuffer {
+    private final Entry[] buffer;
+    private final long inicio;
+    private long ultima;
+    private int size;
+
+    public NotificationReplayBuffer(int capacity) {
+        this(capacity, System.currentTimeMillis() * 1000);
+    }
+
+    NotificationReplayBuffer(int capacity, long inicio) {
+        this.buffer = new Entry[capacity];
+        this.inicio = inicio;
+        this.ultima = inicio;
+    }
+
+    // Añade al mensaje (un objeto JSON) su número de secuencia
+    public synchronized Entry append(String message, NotificationTopic topic) {
+        long seq = ++ultima;
+        Entry entry = new Entry(seq, topic, "{\"seq\":" + seq + "," + message.substring(message.indexOf('{') + 1));
+        buffer[(int) (seq % buffer.length)] = entry;
+        size = Math.min(size + 1, buffer.length);
+        return entry;
+    }
+
+    // Vacío si faltan eventos posteriores a lastSeq que ya se han descartado (o lastSeq no tiene sentido):
+    // el cliente tiene que volver a cargar el catálogo.
+    public synchronized Optional<List<Entry>> since(long lastSeq) {
+        long primera = ultima - size + 1;
+        if (lastSeq > ultima) {
+            return Optional.empty();
+        }
+        if (lastSeq < primera - 1) {
+            if (lastSeq >= inicio || primera != inicio + 1) {
+                return Optional.empty();
+            }
+            lastSeq = inicio;
+        }
+        List<Entry> perdidas = new ArrayList<>((int) (ultima - lastSeq));
+        for (long seq = lastSeq + 1; seq <= ultima; seq++) {
+            perdidas.add(buffer[(int) (seq % buffer.length)]);
+        }
+        return Optional.of(perdidas);
+    }
+
+    public synchronized long lastSeq() {
+        return ultima;
+    }
+
+    public record Entry(long seq, NotificationTopic topic, String message) {
+    }
+}
@@ -0,0 +1,7 @@
+package dev.config.websocket;
+
+import dev.websockets.notifications.models.Notification;
+
+// Lo que describe una notificación, para decidir a qué suscripciones se envía
+public record NotificationTopic(Notification.Tipo type, Long id, String categoria) {
+}
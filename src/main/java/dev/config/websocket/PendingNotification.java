@@ -0,0 +1,5 @@
+package dev.config.websocket;
+
+// Notificación ya serializada junto con lo que describe (topic puede ser null)
+public record PendingNotification(String message, NotificationTopic topic) {
+}
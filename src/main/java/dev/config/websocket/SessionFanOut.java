@@ -0,0 +1,144 @@
+package dev.config.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Reparte un mensaje a todas las sesiones: se crea un único TextMessage y cada sesión se envía
+// en paralelo desde el pool. Cada sesión tiene su propio buffer acotado
+// (ConcurrentWebSocketSessionDecorator): mientras un cliente lento está recibiendo, los mensajes
+// nuevos se acumulan en su buffer sin bloquear a nadie y, si lo desborda o un envío supera
+// sendTimeLimit, se aplica la política de consumidor lento.
+@Slf4j
+public class SessionFanOut {
+    private final ExecutorService executor;
+    private final int sendTimeLimit;
+    private final int bufferSizeLimit;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final Map<String, ConcurrentWebSocketSessionDecorator> sessions = new ConcurrentHashMap<>();
+
+    public SessionFanOut(ExecutorService executor, int sendTimeLimit, int bufferSizeLimit, SlowConsumerPolicy slowConsumerPolicy) {
+        this.executor = executor;
+        this.sendTimeLimit = sendTimeLimit;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public WebSocketSession register(WebSocketSession session) {
+        ConcurrentWebSocketSessionDecorator decorada = new ConcurrentWebSocketSessionDecorator(
+                session, sendTimeLimit, bufferSizeLimit,
+                slowConsumerPolicy == SlowConsumerPolicy.DROP
+                        ? ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP
+                        : ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        sessions.put(session.getId(), decorada);
+        return decorada;
+    }
+
+    public void unregister(WebSocketSession session) {
+        sessions.remove(session.getId());
+    }
+
+    public Collection<? extends WebSocketSession> sessions() {
+        return sessions.values();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public void broadcast(String payload) {
+        TextMessage message = new TextMessage(payload);
+        for (ConcurrentWebSocketSessionDecorator session : sessions.values()) {
+            executor.execute(() -> send(session, message));
+        }
+    }
+
+    public void broadcast(String payload, Collection<String> sessionIds) {
+        TextMessage message = new TextMessage(payload);
+        for (String sessionId : sessionIds) {
+            ConcurrentWebSocketSessionDecorator session = sessions.get(sessionId);
+            if (session != null) {
+                executor.execute(() -> send(session, message));
+            }
+        }
+    }
+
+    // Cada sesión recibe el mensaje que le toque (o ninguno si es null)
+    public void broadcast(Function<String, TextMessage> messageFor) {
+        for (Map.Entry<String, ConcurrentWebSocketSessionDecorator> entry : sessions.entrySet()) {
+            TextMessage message = messageFor.apply(entry.getKey());
+            if (message != null) {
+                ConcurrentWebSocketSessionDecorator session = entry.getValue();
+                executor.execute(() -> send(session, message));
+            }
+        }
+    }
+
+    // Los envíos a una sesión siempre pasan por su decorador: la sesión original no admite envíos concurrentes
+    public void sendTo(WebSocketSession session, TextMessage message) {
+        ConcurrentWebSocketSessionDecorator decorada = sessions.get(session.getId());
+        if (decorada != null) {
+            send(decorada, message);
+        }
+    }
+
+    public void ping(String sessionId) {
+        ConcurrentWebSocketSessionDecorator session = sessions.get(sessionId);
+        if (session != null) {
+            executor.execute(() -> send(session, new PingMessage()));
+        }
+    }
+
+    // El cierre también va al pool: con una conexión medio abierta puede tardar en completarse
+    public void close(String sessionId, CloseStatus status) {
+        ConcurrentWebSocketSessionDecorator session = sessions.get(sessionId);
+        if (session != null) {
+            executor.execute(() -> close(session, status));
+        }
+    }
+
+    private void send(WebSocketSession session, WebSocketMessage<?> message) {
+        if (!session.isOpen()) {
+            unregister(session);
+            return;
+        }
+        try {
+            session.sendMessage(message);
+        } catch (SessionLimitExceededException e) {
+            log.warn("Cerrando la sesión {} por consumidor lento: {}", session.getId(), e.getMessage());
+            close(session, CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error enviando mensaje a la sesión {}", session.getId(), e);
+            close(session, CloseStatus.SERVER_ERROR);
+        }
+    }
+
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void close(WebSocketSession session, CloseStatus status) {
+        unregister(session);
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            log.warn("Error cerrando la sesión {}", session.getId(), e);
+        }
+    }
+}
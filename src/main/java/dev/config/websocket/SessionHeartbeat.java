@@ -0,0 +1,145 @@
+package dev.config.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Latido a nivel de protocolo: a cada sesión que lleva pingInterval sin dar señales de vida se le envía
+// un ping (el navegador contesta con pong sin intervención del cliente). Si el pong no llega en pongTimeout
+// la conexión está muerta o medio abierta y se cierra. Con idleTimeout > 0 se cierran además las sesiones
+// que llevan ese tiempo sin enviar ningún mensaje.
+@Slf4j
+public class SessionHeartbeat {
+    private static final long SIN_PING = Long.MIN_VALUE;
+
+    private final SessionFanOut fanOut;
+    private final long pingIntervalNanos;
+    private final long pongTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final LongSupplier reloj;
+    private final Map<String, Latido> latidos = new ConcurrentHashMap<>();
+    private final Counter pings;
+    private final Counter caducadas;
+    private final Counter desalojadas;
+    private ScheduledExecutorService scheduler;
+
+    public SessionHeartbeat(SessionFanOut fanOut, long pingIntervalMs, long pongTimeoutMs, long idleTimeoutMs, MeterRegistry meterRegistry) {
+        this(fanOut, pingIntervalMs, pongTimeoutMs, idleTimeoutMs, meterRegistry, System::nanoTime);
+    }
+
+    SessionHeartbeat(SessionFanOut fanOut, long pingIntervalMs, long pongTimeoutMs, long idleTimeoutMs, MeterRegistry meterRegistry, LongSupplier reloj) {
+        this.fanOut = fanOut;
+        this.pingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pingIntervalMs);
+        this.pongTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(pongTimeoutMs);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.reloj = reloj;
+        Gauge.builder("websocket.sessions.live", fanOut, SessionFanOut::size)
+                .description("Sesiones websocket abiertas")
+                .register(meterRegistry);
+        this.pings = Counter.builder("websocket.pings").register(meterRegistry);
+        this.caducadas = Counter.builder("websocket.sessions.timedout")
+                .description("Sesiones cerradas por no contestar al ping")
+                .register(meterRegistry);
+        this.desalojadas = Counter.builder("websocket.sessions.evicted")
+                .description("Sesiones cerradas por inactividad")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        long periodo = Math.max(100, TimeUnit.NANOSECONDS.toMillis(Math.min(pingIntervalNanos, pongTimeoutNanos)) / 2);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::check, periodo, periodo, TimeUnit.MILLISECONDS);
+        log.info("Latido websocket iniciado: ping cada {} ms, revisión cada {} ms", TimeUnit.NANOSECONDS.toMillis(pingIntervalNanos), periodo);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void register(String sessionId) {
+        latidos.put(sessionId, new Latido(reloj.getAsLong()));
+    }
+
+    public void unregister(String sessionId) {
+        latidos.remove(sessionId);
+    }
+
+    public void pong(String sessionId) {
+        Latido latido = latidos.get(sessionId);
+        if (latido != null) {
+            latido.ultimaSenal = reloj.getAsLong();
+            latido.pingEnviado = SIN_PING;
+        }
+    }
+
+    // Cualquier mensaje del cliente también demuestra que la conexión está viva
+    public void activity(String sessionId) {
+        Latido latido = latidos.get(sessionId);
+        if (latido != null) {
+            long ahora = reloj.getAsLong();
+            latido.ultimaSenal = ahora;
+            latido.ultimaActividad = ahora;
+            latido.pingEnviado = SIN_PING;
+        }
+    }
+
+    public int size() {
+        return latidos.size();
+    }
+
+    void check() {
+        long ahora = reloj.getAsLong();
+        for (Map.Entry<String, Latido> entry : latidos.entrySet()) {
+            String sessionId = entry.getKey();
+            Latido latido = entry.getValue();
+            try {
+                if (latido.pingEnviado != SIN_PING && ahora - latido.pingEnviado > pongTimeoutNanos) {
+                    log.info("La sesión {} no contesta al ping, se cierra", sessionId);
+                    caducadas.increment();
+                    evict(sessionId, CloseStatus.SESSION_NOT_RELIABLE);
+                } else if (idleTimeoutNanos > 0 && ahora - latido.ultimaActividad > idleTimeoutNanos) {
+                    log.info("La sesión {} lleva demasiado tiempo inactiva, se cierra", sessionId);
+                    desalojadas.increment();
+                    evict(sessionId, CloseStatus.GOING_AWAY);
+                } else if (latido.pingEnviado == SIN_PING && ahora - latido.ultimaSenal >= pingIntervalNanos) {
+                    latido.pingEnviado = ahora;
+                    pings.increment();
+                    fanOut.ping(sessionId);
+                }
+            } catch (RuntimeException e) {
+                log.error("Error revisando el latido de la sesión {}", sessionId, e);
+            }
+        }
+    }
+
+    private void evict(String sessionId, CloseStatus status) {
+        latidos.remove(sessionId);
+        fanOut.close(sessionId, status);
+    }
+
+    private static final class Latido {
+        private volatile long ultimaSenal;
+        private volatile long ultimaActividad;
+        private volatile long pingEnviado = SIN_PING;
+
+        private Latido(long ahora) {
+            this.ultimaSenal = ahora;
+            this.ultimaActividad = ahora;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package dev.config.websocket;
+
+public enum SlowConsumerPolicy {
+    // se descartan los mensajes más antiguos del buffer de la sesión
+    DROP,
+    // se cierra la sesión
+    DISCONNECT
+}
@@ -0,0 +1,33 @@
+package dev.config.websocket;
+
+import dev.websockets.notifications.models.Notification;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Una sesión recibe una notificación si su tipo está en types (o types está vacío) y además
+// el funko está en ids o su categoría en categorias (o no se ha filtrado ni por ids ni por categorías).
+public record Subscription(Set<String> categorias, Set<Long> ids, Set<Notification.Tipo> types) {
+    public static final Subscription ALL = new Subscription(Set.of(), Set.of(), Set.of());
+
+    public Subscription {
+        categorias = categorias != null
+                ? categorias.stream().map(String::toLowerCase).collect(Collectors.toUnmodifiableSet())
+                : Set.of();
+        ids = ids != null ? Set.copyOf(ids) : Set.of();
+        types = types != null ? Set.copyOf(types) : Set.of();
+    }
+
+    public boolean filtersEntity() {
+        return !categorias.isEmpty() || !ids.isEmpty();
+    }
+
+    public boolean matches(NotificationTopic topic) {
+        if (!types.isEmpty() && !types.contains(topic.type())) {
+            return false;
+        }
+        return !filtersEntity()
+                || (topic.id() != null && ids.contains(topic.id()))
+                || (topic.categoria() != null && categorias.contains(topic.categoria().toLowerCase()));
+    }
+}
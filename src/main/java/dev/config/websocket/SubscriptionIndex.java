@@ -0,0 +1,65 @@
+package dev.config.websocket;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Índice de suscripciones por id de funko y por categoría: para cada notificación sólo se revisan
+// las sesiones suscritas a ese funko o a esa categoría, más las que no filtran por entidad.
+public class SubscriptionIndex {
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final Set<String> sinFiltroDeEntidad = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<String>> porId = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> porCategoria = new ConcurrentHashMap<>();
+
+    public void register(String sessionId) {
+        subscribe(sessionId, Subscription.ALL);
+    }
+
+    public synchronized void subscribe(String sessionId, Subscription subscription) {
+        remove(sessionId);
+        subscriptions.put(sessionId, subscription);
+        if (!subscription.filtersEntity()) {
+            sinFiltroDeEntidad.add(sessionId);
+        }
+        subscription.ids().forEach(id -> porId.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(sessionId));
+        subscription.categorias().forEach(categoria -> porCategoria.computeIfAbsent(categoria, k -> ConcurrentHashMap.newKeySet()).add(sessionId));
+    }
+
+    public synchronized void remove(String sessionId) {
+        Subscription subscription = subscriptions.remove(sessionId);
+        if (subscription == null) {
+            return;
+        }
+        sinFiltroDeEntidad.remove(sessionId);
+        subscription.ids().forEach(id -> removeFrom(porId, id, sessionId));
+        subscription.categorias().forEach(categoria -> removeFrom(porCategoria, categoria, sessionId));
+    }
+
+    public Subscription get(String sessionId) {
+        return subscriptions.get(sessionId);
+    }
+
+    public Set<String> match(NotificationTopic topic) {
+        Set<String> candidatas = new HashSet<>(sinFiltroDeEntidad);
+        if (topic.id() != null) {
+            candidatas.addAll(porId.getOrDefault(topic.id(), Set.of()));
+        }
+        if (topic.categoria() != null) {
+            candidatas.addAll(porCategoria.getOrDefault(topic.categoria().toLowerCase(), Set.of()));
+        }
+        candidatas.removeIf(sessionId -> {
+            Subscription subscription = subscriptions.get(sessionId);
+            return subscription == null || !subscription.matches(topic);
+        });
+        return candidatas;
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> indice, K clave, String sessionId) {
+        indice.computeIfPresent(clave, (k, sesiones) -> {
+            sesiones.remove(sessionId);
+            return sesiones.isEmpty() ? null : sesiones;
+        });
+    }
+}
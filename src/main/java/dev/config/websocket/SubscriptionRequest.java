@@ -0,0 +1,15 @@
+package dev.config.websocket;
+
+import dev.websockets.notifications.models.Notification;
+
+import java.util.Set;
+
+// Mensaje del cliente: {"action": "subscribe", "categorias": ["Marvel"], "ids": [1, 2], "types": ["UPDATE"]}
+// o {"action": "unsubscribe"} para volver a recibirlo todo
+// o {"action": "resume", "lastSeq": 1700000000000042} para recibir lo perdido desde esa secuencia
+public record SubscriptionRequest(String action, Set<String> categorias, Set<Long> ids, Set<Notification.Tipo> types, Long lastSeq) {
+
+    public Subscription toSubscription() {
+        return new Subscription(categorias, ids, types);
+    }
+}
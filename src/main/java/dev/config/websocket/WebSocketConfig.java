@@ -1,24 +1,83 @@
 package dev.config.websocket;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
+    @Value("${websocket.fan-out.threads:8}")
+    private int fanOutThreads;
+    @Value("${websocket.fan-out.queue-capacity:100000}")
+    private int fanOutQueueCapacity;
+    @Value("${websocket.send-time-limit:5000}")
+    private int sendTimeLimit;
+    @Value("${websocket.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+    @Value("${websocket.slow-consumer:DROP}")
+    private SlowConsumerPolicy slowConsumerPolicy;
+    @Value("${websocket.replay.capacity:10000}")
+    private int replayCapacity;
+    @Value("${websocket.heartbeat.ping-interval:25000}")
+    private long pingInterval;
+    @Value("${websocket.heartbeat.pong-timeout:10000}")
+    private long pongTimeout;
+    @Value("${websocket.heartbeat.idle-timeout:0}")
+    private long idleTimeout;
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public WebSocketConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(webSocketFunkosHandler(), "/ws/funkos");
     }
 
+    // Si la cola del pool se llena, el hilo que notifica hace el envío: así se frena al productor
+    @Bean(destroyMethod = "close")
+    public SessionFanOut funkosFanOut() {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                fanOutThreads, fanOutThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(fanOutQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ws-fan-out-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        return new SessionFanOut(executor, sendTimeLimit, bufferSizeLimit, slowConsumerPolicy);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public SessionHeartbeat funkosHeartbeat() {
+        return new SessionHeartbeat(funkosFanOut(), pingInterval, pongTimeout, idleTimeout, meterRegistry);
+    }
 
+    @Bean
+    public NotificationReplayBuffer funkosReplay() {
+        return new NotificationReplayBuffer(replayCapacity);
+    }
 
     @Bean
     public WebSocketHandler webSocketFunkosHandler() {
-        return new WebSocketHandler("Funkos");
+        return new WebSocketHandler("Funkos", funkosFanOut(), new SubscriptionIndex(),
+                funkosReplay(), funkosHeartbeat());
     }
-}
\ No newline at end of file
+}
@@ -1,72 +1,207 @@
 package dev.config.websocket;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
-import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Slf4j
 public class WebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable, WebSocketSender {
     private final String entity;
 
-    private final Set<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
+    private final SessionFanOut fanOut;
+    private final SubscriptionIndex subscriptions;
+    private final NotificationReplayBuffer replay;
+    private final SessionHeartbeat heartbeat;
+    private final List<NotificationListener> listeners = new CopyOnWriteArrayList<>();
+    private final ObjectMapper mapper = new ObjectMapper();
 
-    public WebSocketHandler(String entity) {
+    public WebSocketHandler(String entity, SessionFanOut fanOut, SubscriptionIndex subscriptions,
+                            NotificationReplayBuffer replay, SessionHeartbeat heartbeat) {
         this.entity = entity;
+        this.fanOut = fanOut;
+        this.subscriptions = subscriptions;
+        this.replay = replay;
+        this.heartbeat = heartbeat;
+    }
+
+    public void addListener(NotificationListener listener) {
+        listeners.add(listener);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         log.info("Conexión establecida con el servidor");
         log.info("Sesión: " + session);
-        sessions.add(session);
+        WebSocketSession decorada = fanOut.register(session);
+        subscriptions.register(session.getId());
+        heartbeat.register(session.getId());
         TextMessage message = new TextMessage("Updates Web socket: " + entity + " - Tienda API de Spring Boot");
         log.info("Servidor envía: {}", message);
-        session.sendMessage(message);
+        decorada.sendMessage(message);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         log.info("Conexión cerrada con el servidor: " + status);
-        sessions.remove(session);
+        fanOut.unregister(session);
+        subscriptions.remove(session.getId());
+        heartbeat.unregister(session.getId());
     }
 
     @Override
     public void sendMessage(String message) throws IOException {
-        log.info("Enviar mensaje de cambios en la entidad: " + entity + " : " + message);
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                log.info("Servidor WS envía: " + message);
-                session.sendMessage(new TextMessage(message));
+        sendMessage(message, null);
+    }
+
+    // Numerar y repartir van juntos para que un resume no se cruce con un envío a medias
+    @Override
+    public void sendMessage(String message, NotificationTopic topic) throws IOException {
+        synchronized (replay) {
+            NotificationReplayBuffer.Entry entry = replay.append(message, topic);
+            if (topic == null) {
+                log.info("Enviar mensaje de cambios en la entidad: " + entity + " a " + fanOut.size() + " sesiones: " + entry.message());
+                fanOut.broadcast(entry.message());
+            } else {
+                Set<String> destinatarios = subscriptions.match(topic);
+                log.info("Enviar mensaje de cambios en la entidad: " + entity + " a " + destinatarios.size() + " de " + fanOut.size() + " sesiones: " + entry.message());
+                fanOut.broadcast(entry.message(), destinatarios);
             }
+            notifyListeners(List.of(entry));
         }
     }
 
-    @Scheduled(fixedRate = 1000)
+    // Un único frame con un array de notificaciones. Las sesiones que lo reciben todo comparten el mismo
+    // frame; para el resto se construye uno por cada combinación distinta de notificaciones que les toca.
     @Override
-    public void sendPeriodicMessages() throws IOException {
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                String broadcast = "server periodic message " + LocalTime.now();
-                log.info("Server sends: " + broadcast);
-                session.sendMessage(new TextMessage(broadcast));
+    public void sendMessages(List<PendingNotification> notifications) throws IOException {
+        synchronized (replay) {
+            List<NotificationReplayBuffer.Entry> entries = new ArrayList<>(notifications.size());
+            for (PendingNotification notification : notifications) {
+                entries.add(replay.append(notification.message(), notification.topic()));
+            }
+            TextMessage todas = frame(entries, null);
+            Map<BitSet, TextMessage> frames = new HashMap<>();
+            log.info("Enviar lote de {} cambios en la entidad: {} a {} sesiones", entries.size(), entity, fanOut.size());
+            fanOut.broadcast(sessionId -> {
+                Subscription subscription = subscriptions.get(sessionId);
+                if (subscription == null || subscription.equals(Subscription.ALL)) {
+                    return todas;
+                }
+                BitSet seleccion = new BitSet(entries.size());
+                for (int i = 0; i < entries.size(); i++) {
+                    NotificationTopic topic = entries.get(i).topic();
+                    if (topic == null || subscription.matches(topic)) {
+                        seleccion.set(i);
+                    }
+                }
+                if (seleccion.isEmpty()) {
+                    return null;
+                }
+                return frames.computeIfAbsent(seleccion, bits -> frame(entries, bits));
+            });
+            notifyListeners(entries);
+        }
+    }
+
+    private void notifyListeners(List<NotificationReplayBuffer.Entry> entries) {
+        for (NotificationListener listener : listeners) {
+            try {
+                listener.onNotifications(entries);
+            } catch (RuntimeException e) {
+                log.error("Error entregando notificaciones a {}", listener, e);
+            }
+        }
+    }
+
+    private static TextMessage frame(List<NotificationReplayBuffer.Entry> entries, BitSet seleccion) {
+        StringJoiner array = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < entries.size(); i++) {
+            if (seleccion == null || seleccion.get(i)) {
+                array.add(entries.get(i).message());
             }
         }
+        return new TextMessage(array.toString());
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         log.info("Mensaje recibido: " + message);
-        session.sendMessage(message);
+        heartbeat.activity(session.getId());
+        SubscriptionRequest request = parseSubscription(message.getPayload());
+        if (request == null) {
+            fanOut.sendTo(session, message);
+        } else if ("subscribe".equalsIgnoreCase(request.action())) {
+            Subscription subscription = request.toSubscription();
+            subscriptions.subscribe(session.getId(), subscription);
+            fanOut.sendTo(session, new TextMessage(mapper.writeValueAsString(Map.of("subscribed", subscription))));
+        } else if ("unsubscribe".equalsIgnoreCase(request.action())) {
+            subscriptions.register(session.getId());
+            fanOut.sendTo(session, new TextMessage(mapper.writeValueAsString(Map.of("subscribed", Subscription.ALL))));
+        } else if ("resume".equalsIgnoreCase(request.action()) && request.lastSeq() != null) {
+            resume(session, request.lastSeq());
+        } else {
+            fanOut.sendTo(session, message);
+        }
+    }
+
+    // Reenvía las notificaciones posteriores a lastSeq que encajan con la suscripción de la sesión.
+    // Las que ya le hayan llegado en directo desde que se conectó pueden repetirse: el cliente
+    // descarta las que tengan una secuencia que ya ha aplicado.
+    private void resume(WebSocketSession session, long lastSeq) throws IOException {
+        synchronized (replay) {
+            Optional<List<NotificationReplayBuffer.Entry>> perdidas = replay.since(lastSeq);
+            if (perdidas.isEmpty()) {
+                log.info("La sesión {} pide eventos desde {} que ya no están disponibles, debe resincronizar", session.getId(), lastSeq);
+                fanOut.sendTo(session, new TextMessage(mapper.writeValueAsString(Map.of("resync", "required", "seq", replay.lastSeq()))));
+                return;
+            }
+            Subscription subscription = subscriptions.get(session.getId());
+            int enviadas = 0;
+            for (NotificationReplayBuffer.Entry entry : perdidas.get()) {
+                if (entry.topic() == null || subscription == null || subscription.matches(entry.topic())) {
+                    fanOut.sendTo(session, new TextMessage(entry.message()));
+                    enviadas++;
+                }
+            }
+            log.info("Reenviadas {} notificaciones a la sesión {} desde {}", enviadas, session.getId(), lastSeq);
+            fanOut.sendTo(session, new TextMessage(mapper.writeValueAsString(Map.of("resumed", enviadas, "seq", replay.lastSeq()))));
+        }
+    }
+
+    // Cualquier mensaje que no sea una petición de suscripción se sigue devolviendo como eco
+    private SubscriptionRequest parseSubscription(String payload) {
+        if (!payload.trim().startsWith("{")) {
+            return null;
+        }
+        try {
+            SubscriptionRequest request = mapper.readValue(payload, SubscriptionRequest.class);
+            return request.action() != null ? request : null;
+        } catch (JsonProcessingException e) {
+            log.warn("Mensaje de suscripción no válido: " + e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heartbeat.pong(session.getId());
     }
 
     @Override
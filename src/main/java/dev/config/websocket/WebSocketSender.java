@@ -2,10 +2,24 @@ package dev.config.websocket;
 
 
 import java.io.IOException;
+import java.util.List;
 
 public interface WebSocketSender {
 
     void sendMessage(String message) throws IOException;
 
-    void sendPeriodicMessages() throws IOException;
+    default void sendMessage(String message, NotificationTopic topic) throws IOException {
+        sendMessage(message);
+    }
+
+    // Un lote de notificaciones acumuladas durante la ventana del dispatcher
+    default void sendMessages(List<PendingNotification> notifications) throws IOException {
+        for (PendingNotification notification : notifications) {
+            if (notification.topic() != null) {
+                sendMessage(notification.message(), notification.topic());
+            } else {
+                sendMessage(notification.message());
+            }
+        }
+    }
 }
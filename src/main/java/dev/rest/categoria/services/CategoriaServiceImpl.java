@@ -6,6 +6,7 @@ import dev.rest.categoria.exceptions.CategoriaNotFound;
 import dev.rest.categoria.mappers.CategoriaMapper;
 import dev.rest.categoria.models.Categoria;
 import dev.rest.categoria.repositories.CategoriaRepository;
+import dev.rest.funkos.services.search.FunkoIndex;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,11 +26,13 @@ public class CategoriaServiceImpl implements CategoriaService {
 
     private final CategoriaRepository categoriaRepository;
     private final CategoriaMapper categoriaMapper;
+    private final FunkoIndex funkoIndex;
 
     @Autowired
-    public CategoriaServiceImpl(CategoriaRepository categoriaRepository, CategoriaMapper categoriaMapper) {
+    public CategoriaServiceImpl(CategoriaRepository categoriaRepository, CategoriaMapper categoriaMapper, FunkoIndex funkoIndex) {
         this.categoriaRepository = categoriaRepository;
         this.categoriaMapper = categoriaMapper;
+        this.funkoIndex = funkoIndex;
     }
 
     @Override
@@ -63,8 +66,9 @@ public class CategoriaServiceImpl implements CategoriaService {
         if (id.isPresent()) {
             throw new CategoriaConflict("Ya existe una categoría con el nombre " + categoriaDto.nombre());
         } else {
-            Categoria categoria = categoriaMapper.toCategoria(categoriaDto);
-            return categoriaRepository.save(categoria);
+            Categoria categoria = categoriaRepository.save(categoriaMapper.toCategoria(categoriaDto));
+            funkoIndex.indexCategoria(categoria);
+            return categoria;
         }
     }
 
@@ -73,8 +77,9 @@ public class CategoriaServiceImpl implements CategoriaService {
     public Categoria update(Long id, CategoriaDto categoriaDto) {
         log.info("Actualizando categoría: " + categoriaDto);
         Categoria categoriaActual = findById(id);
-        Categoria categoriaUpdated = categoriaMapper.toCategoria(categoriaDto, categoriaActual);
-        return categoriaRepository.save(categoriaUpdated);
+        Categoria categoriaUpdated = categoriaRepository.save(categoriaMapper.toCategoria(categoriaDto, categoriaActual));
+        funkoIndex.indexCategoria(categoriaUpdated);
+        return categoriaUpdated;
     }
 
     @Override
@@ -88,6 +93,7 @@ public class CategoriaServiceImpl implements CategoriaService {
             throw new CategoriaConflict("La categoría " + categoria.getName() + " tiene funkos asociados");
         } else {
             categoriaRepository.deleteById(id);
+            funkoIndex.removeCategoria(id);
         }
     }
 }
@@ -1,10 +1,15 @@
 package dev.rest.funkos.controllers;
 
+import dev.config.sse.SseNotificationHub;
 import dev.rest.funkos.dto.FunkoCreateDto;
 import dev.rest.funkos.dto.FunkoResponseDto;
 import dev.rest.funkos.dto.FunkoUpdateDto;
+import dev.rest.funkos.exceptions.FunkoBadRequest;
 import dev.rest.funkos.services.FunkoServiceImpl;
 import dev.rest.storage.services.StorageService;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
+import dev.utils.pagination.CursorPageResponse;
 import dev.utils.pagination.PageResponse;
 import dev.utils.pagination.PaginationLinksUtils;
 import io.swagger.v3.oas.annotations.Operation;
@@ -29,6 +34,8 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.HashMap;
@@ -43,11 +50,13 @@ public class FunkoController {
 
     private final FunkoServiceImpl funkoService;
     private final PaginationLinksUtils paginationLinksUtils;
+    private final SseNotificationHub funkosEvents;
 
     @Autowired
-    public FunkoController(FunkoServiceImpl funkoService, StorageService storageService, PaginationLinksUtils paginationLinksUtils) {
+    public FunkoController(FunkoServiceImpl funkoService, StorageService storageService, PaginationLinksUtils paginationLinksUtils, SseNotificationHub funkosEvents) {
         this.funkoService = funkoService;
         this.paginationLinksUtils = paginationLinksUtils;
+        this.funkosEvents = funkosEvents;
     }
 
     @Operation(summary = "Obtener todos los funkos paginados")
@@ -84,6 +93,53 @@ public class FunkoController {
                 .body(PageResponse.of(result, sortBy, direction));
     }
 
+    @Operation(summary = "Obtener todos los funkos paginados por cursor")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Funkos encontrados correctamente"),
+            @ApiResponse(responseCode = "400", description = "Parámetros o cursor inválidos")
+    })
+    @Parameters({
+            @Parameter(name = "categoria", description = "Categoría del funko", example = "Marvel"),
+            @Parameter(name = "nombre", description = "Nombre del funko", example = "Funko1"),
+            @Parameter(name = "maxPrecio", description = "Precio máximo del funko", example = "100.0"),
+            @Parameter(name = "cursor", description = "Cursor de la página, vacío para la primera", example = ""),
+            @Parameter(name = "size", description = "Tamaño de la página", example = "10"),
+            @Parameter(name = "sortBy", description = "Campo por el que se ordena", example = "id"),
+            @Parameter(name = "direction", description = "Dirección de la ordenación", example = "asc")
+    }
+    )
+
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPageResponse<FunkoResponseDto>> getFunkosByCursor(@RequestParam(required = false) Optional<String> categoria,
+                                                                                  @RequestParam(required = false) Optional<String> nombre,
+                                                                                  @RequestParam(required = false) Optional<Double> maxPrecio,
+                                                                                  @RequestParam String cursor,
+                                                                                  @RequestParam(defaultValue = "10") int size,
+                                                                                  @RequestParam(defaultValue = "id") String sortBy,
+                                                                                  @RequestParam(defaultValue = "asc") String direction,
+                                                                                  HttpServletRequest request) {
+        log.info("Buscando funkos por cursor...");
+        Cursor pageCursor = cursor.isBlank() ? Cursor.first(sortBy, direction) : Cursor.decode(cursor, FunkoBadRequest::new);
+        UriComponentsBuilder uriBuilder = ServletUriComponentsBuilder.fromRequest(request);
+        CursorPage<FunkoResponseDto> result = funkoService.findAll(categoria, nombre, maxPrecio, pageCursor, size);
+        return ResponseEntity.ok()
+                .header("link", paginationLinksUtils.createLinkHeader(result, uriBuilder))
+                .body(CursorPageResponse.of(result, pageCursor.sortBy(), pageCursor.direction().name().toLowerCase()));
+    }
+
+    @Operation(summary = "Recibir los cambios en los funkos como Server-Sent Events")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream de eventos abierto")
+    })
+    @Parameters({
+            @Parameter(name = "Last-Event-ID", description = "Último evento recibido, para recuperar los perdidos", example = "1700000000000042")
+    })
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getFunkoEvents(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        log.info("Nuevo suscriptor a los eventos de funkos desde: " + lastEventId);
+        return funkosEvents.subscribe(lastEventId);
+    }
+
     @Operation(summary = "Obtener un funko por su ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Funko encontrado correctamente"),
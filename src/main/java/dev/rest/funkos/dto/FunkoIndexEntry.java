@@ -0,0 +1,25 @@
+package dev.rest.funkos.dto;
+
+import dev.rest.funkos.models.Funko;
+
+import java.time.LocalDate;
+
+public record FunkoIndexEntry(
+        Long id,
+        String nombre,
+        Double precio,
+        Long categoriaId,
+        LocalDate fechaCreacion,
+        LocalDate fechaActualizacion
+) {
+    public static FunkoIndexEntry of(Funko funko) {
+        return new FunkoIndexEntry(
+                funko.getId(),
+                funko.getNombre(),
+                funko.getPrecio(),
+                funko.getCategoria() != null ? funko.getCategoria().getId() : null,
+                funko.getFechaCreacion(),
+                funko.getFechaActualizacion()
+        );
+    }
+}
@@ -0,0 +1,11 @@
+package dev.rest.funkos.repositories;
+
+import dev.rest.funkos.models.Funko;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface FunkoCursorRepository {
+
+    CursorPage<Funko> findAll(Specification<Funko> spec, Cursor cursor, int size);
+}
@@ -0,0 +1,117 @@
+package dev.rest.funkos.repositories;
+
+import dev.rest.funkos.exceptions.FunkoBadRequest;
+import dev.rest.funkos.models.Funko;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class FunkoCursorRepositoryImpl implements FunkoCursorRepository {
+    private static final String ID = "id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Paginación por clave (sortBy, id): en lugar de OFFSET se filtra a partir de la última fila vista,
+    // se pide una fila de más para saber si hay otra página y no se lanza ningún COUNT.
+    // Los null van detrás de todos los valores en orden ascendente y delante en descendente, como en el índice.
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CursorPage<Funko> findAll(Specification<Funko> spec, Cursor cursor, int size) {
+        if (size < 1) {
+            throw new FunkoBadRequest("El tamaño de la página tiene que ser al menos 1");
+        }
+        if (size > CursorPage.MAX_SIZE) {
+            throw new FunkoBadRequest("El tamaño de la página no puede pasar de " + CursorPage.MAX_SIZE);
+        }
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+        CriteriaQuery<Funko> query = cb.createQuery(Funko.class);
+        Root<Funko> root = query.from(Funko.class);
+
+        Expression<Comparable> sortKey = sortKey(root, cursor.sortBy());
+        Expression<Long> id = root.get(ID);
+        boolean ascending = cursor.direction().isAscending() != cursor.backward();
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (spec != null) {
+            predicates.add(spec.toPredicate(root, query, cb));
+        }
+        if (!cursor.isFirst()) {
+            Long lastId = (Long) parseValue(Long.class, cursor.id());
+            Predicate afterId = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+            if (cursor.sortBy().equals(ID)) {
+                predicates.add(afterId);
+            } else if (cursor.value() == null) {
+                Predicate nullsAfterId = cb.and(cb.isNull(sortKey), afterId);
+                predicates.add(ascending ? nullsAfterId : cb.or(nullsAfterId, cb.isNotNull(sortKey)));
+            } else {
+                Comparable value = parseValue(sortKey.getJavaType(), cursor.value());
+                Predicate afterValue = cb.or(
+                        ascending ? cb.greaterThan(sortKey, value) : cb.lessThan(sortKey, value),
+                        cb.and(cb.equal(sortKey, value), afterId));
+                predicates.add(ascending ? cb.or(afterValue, cb.isNull(sortKey)) : afterValue);
+            }
+        }
+        query.where(predicates.toArray(Predicate[]::new))
+                .orderBy(ascending ? cb.asc(sortKey, false) : cb.desc(sortKey, true), ascending ? cb.asc(id) : cb.desc(id));
+
+        List<Funko> funkos = new ArrayList<>(entityManager.createQuery(query).setMaxResults(size + 1).getResultList());
+        boolean hasMore = funkos.size() > size;
+        if (hasMore) {
+            funkos.remove(size);
+        }
+        if (cursor.backward()) {
+            Collections.reverse(funkos);
+        }
+
+        boolean hasNext = cursor.backward() || hasMore;
+        boolean hasPrevious = cursor.backward() ? hasMore : !cursor.isFirst();
+        String nextCursor = hasNext && !funkos.isEmpty() ? toCursor(cursor, funkos.get(funkos.size() - 1), false) : null;
+        String prevCursor = hasPrevious && !funkos.isEmpty() ? toCursor(cursor, funkos.get(0), true) : null;
+        return new CursorPage<>(funkos, size, nextCursor, prevCursor);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Expression<Comparable> sortKey(Root<Funko> root, String sortBy) {
+        try {
+            Path<Comparable> path = root.get(sortBy);
+            if (!Comparable.class.isAssignableFrom(path.getJavaType())) {
+                throw new FunkoBadRequest("No se puede ordenar por el campo " + sortBy);
+            }
+            return path;
+        } catch (IllegalArgumentException e) {
+            throw new FunkoBadRequest("No se puede ordenar por el campo " + sortBy);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Comparable parseValue(Class<?> type, String value) {
+        try {
+            if (type == Long.class) return Long.valueOf(value);
+            if (type == Integer.class) return Integer.valueOf(value);
+            if (type == Double.class) return Double.valueOf(value);
+            if (type == LocalDate.class) return LocalDate.parse(value);
+            return value;
+        } catch (RuntimeException e) {
+            throw new FunkoBadRequest("Cursor de paginación no válido");
+        }
+    }
+
+    private String toCursor(Cursor cursor, Funko funko, boolean backward) {
+        Object sortValue = new BeanWrapperImpl(funko).getPropertyValue(cursor.sortBy());
+        String value = sortValue != null ? sortValue.toString() : null;
+        return backward
+                ? cursor.previous(funko.getId(), value).encode()
+                : cursor.next(funko.getId(), value).encode();
+    }
+}
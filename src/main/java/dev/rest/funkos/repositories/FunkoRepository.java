@@ -1,5 +1,6 @@
 package dev.rest.funkos.repositories;
 
+import dev.rest.funkos.dto.FunkoIndexEntry;
 import dev.rest.funkos.models.Funko;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -10,7 +11,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface FunkoRepository extends JpaRepository<Funko, Long>, JpaSpecificationExecutor<Funko> {
+public interface FunkoRepository extends JpaRepository<Funko, Long>, JpaSpecificationExecutor<Funko>, FunkoCursorRepository {
 
     List<Funko> getByCategoriaNameContainingIgnoreCase(String categoria);
 
@@ -18,4 +19,7 @@ public interface FunkoRepository extends JpaRepository<Funko, Long>, JpaSpecific
 
     List<Funko> getByNombreAndCategoriaNameContainingIgnoreCase(String nombre, String categoria);
 
+    @Query("SELECT new dev.rest.funkos.dto.FunkoIndexEntry(f.id, f.nombre, f.precio, f.categoria.id, f.fechaCreacion, f.fechaActualizacion) FROM Funko f")
+    List<FunkoIndexEntry> findAllIndexEntries();
+
 }
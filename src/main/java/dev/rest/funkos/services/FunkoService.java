@@ -4,6 +4,8 @@ import dev.rest.funkos.dto.FunkoCreateDto;
 import dev.rest.funkos.dto.FunkoResponseDto;
 import dev.rest.funkos.dto.FunkoUpdateDto;
 import dev.rest.funkos.models.Funko;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
@@ -14,6 +16,8 @@ public interface FunkoService {
 
     Page<FunkoResponseDto> findAll(Optional<String> categoria, Optional<String> nombre, Optional<Double> minPrecio, Pageable pageable);
 
+    CursorPage<FunkoResponseDto> findAll(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio, Cursor cursor, int size);
+
     FunkoResponseDto findById(Long id);
 
     FunkoResponseDto save(FunkoCreateDto funkoCreateDto);
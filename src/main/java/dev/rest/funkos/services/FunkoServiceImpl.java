@@ -2,8 +2,7 @@ package dev.rest.funkos.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.config.websocket.WebSocketConfig;
-import dev.config.websocket.WebSocketHandler;
+import dev.config.websocket.NotificationTopic;
 import dev.rest.categoria.models.Categoria;
 import dev.rest.categoria.repositories.CategoriaRepository;
 import dev.rest.funkos.dto.FunkoCreateDto;
@@ -14,18 +13,27 @@ import dev.rest.funkos.exceptions.FunkoNotFound;
 import dev.rest.funkos.mappers.FunkoMapper;
 import dev.rest.funkos.models.Funko;
 import dev.rest.funkos.repositories.FunkoRepository;
+import dev.rest.funkos.services.search.FunkoIndex;
+import dev.rest.funkos.services.search.FunkoSearch;
+import dev.rest.pedido.services.stock.ledger.StockLedger;
+import dev.rest.pedido.services.stock.movements.StockMovement;
+import dev.rest.pedido.services.stock.movements.StockMovements;
 import dev.rest.storage.services.StorageService;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
 import dev.websockets.notifications.dto.FunkoNotificationDto;
 import dev.websockets.notifications.mapper.FunkoNotificationMapper;
 import dev.websockets.notifications.models.Notification;
-import jakarta.persistence.criteria.Join;
+import dev.websockets.notifications.outbox.Outbox;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
@@ -33,7 +41,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -42,50 +55,74 @@ public class FunkoServiceImpl implements FunkoService {
     private final FunkoRepository funkoRepository;
     private final FunkoMapper funkoMapper;
     private final StorageService storageService;
-    private final WebSocketConfig webSocketConfig;
     private final FunkoNotificationMapper funkoNotificationMapper;
     private final ObjectMapper mapper;
-    private WebSocketHandler webSocketService;
     private final CategoriaRepository categoryRepository;
-
+    private final FunkoSearch funkoSearch;
+    private final FunkoIndex funkoIndex;
+    private final Outbox outbox;
+    private final StockMovements stockMovements;
+    private final ObjectProvider<StockLedger> stockLedger;
 
     @Autowired
-    public FunkoServiceImpl(FunkoRepository funkoRepository, FunkoMapper funkoMapper, StorageService storageService, WebSocketConfig webSocketConfig, FunkoNotificationMapper funkoNotificationMapper, ObjectMapper mapper, CategoriaRepository categoryRepository) {
+    public FunkoServiceImpl(FunkoRepository funkoRepository, FunkoMapper funkoMapper, StorageService storageService, FunkoNotificationMapper funkoNotificationMapper, ObjectMapper mapper, CategoriaRepository categoryRepository, FunkoSearch funkoSearch, FunkoIndex funkoIndex, Outbox outbox, StockMovements stockMovements, ObjectProvider<StockLedger> stockLedger) {
         this.funkoRepository = funkoRepository;
         this.funkoMapper = funkoMapper;
         this.storageService = storageService;
-        this.webSocketConfig = webSocketConfig;
         this.funkoNotificationMapper = funkoNotificationMapper;
-        webSocketService = webSocketConfig.webSocketFunkosHandler();
         this.categoryRepository = categoryRepository;
+        this.funkoSearch = funkoSearch;
+        this.funkoIndex = funkoIndex;
+        this.outbox = outbox;
+        this.stockMovements = stockMovements;
+        this.stockLedger = stockLedger;
         this.mapper = new ObjectMapper();
     }
 
     @Override
     public Page<FunkoResponseDto> findAll(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio, Pageable pageable) {
-        Specification<Funko> specCategoriaFunko = (root, query, criteriaBuilder) ->
-                categoria.map(c -> {
-                    Join<Funko, Categoria> categoriaJoin = root.join("categoria");
-                    return criteriaBuilder.like(criteriaBuilder.lower(categoriaJoin.get("name")), "%" + c.toLowerCase() + "%");
-                }).orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-
-        Specification<Funko> specNombreFunko = (root, query, criteriaBuilder) ->
-                nombre.map(n -> criteriaBuilder.like(criteriaBuilder.lower(root.get("nombre")), "%" + n.toLowerCase() + "%"))
-                        .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+        var pagina = funkoIndex.search(categoria, nombre, maxPrecio, pageable);
+        if (pagina.isPresent()) {
+            return findAllById(pagina.get());
+        }
+        return funkoRepository.findAll(buildCriterio(categoria, nombre, maxPrecio), pageable).map(funkoMapper::toFunkoDto);
+    }
+
+    // El índice ya ha filtrado, ordenado y paginado: sólo se cargan los funkos de la página
+    private Page<FunkoResponseDto> findAllById(Page<Long> ids) {
+        Map<Long, Funko> funkos = funkoRepository.findAllById(ids.getContent()).stream()
+                .collect(Collectors.toMap(Funko::getId, Function.identity()));
+        List<FunkoResponseDto> contenido = ids.getContent().stream()
+                .map(funkos::get)
+                .filter(Objects::nonNull)
+                .map(funkoMapper::toFunkoDto)
+                .toList();
+        return new PageImpl<>(contenido, ids.getPageable(), ids.getTotalElements());
+    }
+
+    @Override
+    public CursorPage<FunkoResponseDto> findAll(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio, Cursor cursor, int size) {
+        return funkoRepository.findAll(buildCriterio(categoria, nombre, maxPrecio), cursor, size).map(funkoMapper::toFunkoDto);
+    }
+
+    private Specification<Funko> buildCriterio(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio) {
+        Specification<Funko> specCategoriaFunko = categoria.map(funkoSearch::categoriaContains)
+                .orElse((root, query, criteriaBuilder) -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
+
+        Specification<Funko> specNombreFunko = nombre.map(funkoSearch::nombreContains)
+                .orElse((root, query, criteriaBuilder) -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
 
         Specification<Funko> specMinPrecioFunko = (root, query, criteriaBuilder) ->
                 maxPrecio.map(p -> criteriaBuilder.lessThanOrEqualTo(root.get("precio"), p))
                         .orElseGet(() -> criteriaBuilder.isTrue(criteriaBuilder.literal(true)));
-        Specification<Funko> criterio = Specification.where(specCategoriaFunko)
-                .and(specCategoriaFunko)
+        return Specification.where(specCategoriaFunko)
                 .and(specNombreFunko)
                 .and(specMinPrecioFunko);
-        return funkoRepository.findAll(criterio, pageable).map(funkoMapper::toFunkoDto);
     }
 
 
     @Override
-    @Cacheable(key = "#id")
+    @Cacheable(key = "#id", sync = true)
     public FunkoResponseDto findById(Long id) {
         return funkoMapper.toFunkoDto(funkoRepository.findById(id).orElseThrow(() -> new FunkoNotFound(id)));
     }
@@ -99,10 +136,14 @@ public class FunkoServiceImpl implements FunkoService {
     }
 
     @Override
+    @Transactional
     @CachePut(key = "#result.id")
     public FunkoResponseDto save(FunkoCreateDto funko) {
+        // Aunque el ledger esté activo el alta va directa a la fila: el ledger carga el contador al usarlo por primera vez
         var categoria = checkCategoria(funko.categoria());
         var funkoSaved = funkoRepository.save(funkoMapper.toFunko(funko, categoria));
+        stockMovements.record(funkoSaved.getId(), Objects.requireNonNullElse(funkoSaved.getCantidad(), 0), StockMovement.Motivo.ALTA);
+        funkoIndex.index(funkoSaved);
         sendNotification(Notification.Tipo.CREATE, funkoSaved);
         return funkoMapper.toFunkoDto(funkoSaved);
     }
@@ -120,7 +161,22 @@ public class FunkoServiceImpl implements FunkoService {
             categoria = funkoActual.getCategoria();
         }
 
-        var funkoUpdated = funkoRepository.save(funkoMapper.toFunko(funkoUpdateDto, funkoActual, categoria));
+        var funko = funkoMapper.toFunko(funkoUpdateDto, funkoActual, categoria);
+        Integer cantidad = funko.getCantidad();
+        int cambio = Objects.requireNonNullElse(cantidad, 0) - Objects.requireNonNullElse(funkoActual.getCantidad(), 0);
+        StockLedger ledger = stockLedger.getIfAvailable();
+        if (ledger != null) {
+            // Con el ledger activo la fila sólo cambia con el volcado: la cantidad nueva se fija en el ledger
+            funko.setCantidad(funkoActual.getCantidad());
+            cambio = funkoUpdateDto.cantidad() != null ? ledger.set(id, funkoUpdateDto.cantidad()) : 0;
+            cantidad = ledger.stock(id);
+        }
+        var funkoUpdated = funkoRepository.save(funko);
+        stockMovements.record(id, cambio, StockMovement.Motivo.AJUSTE);
+        if (ledger != null) {
+            funkoUpdated = conCantidad(funkoUpdated, cantidad);
+        }
+        funkoIndex.index(funkoUpdated);
         sendNotification(Notification.Tipo.UPDATE, funkoUpdated);
         return funkoMapper.toFunkoDto(funkoUpdated);
     }
@@ -131,6 +187,10 @@ public class FunkoServiceImpl implements FunkoService {
     public void deleteById(Long id) {
         Funko funko = funkoRepository.findById(id).orElseThrow(() -> new FunkoNotFound(id));
         funkoRepository.deleteById(id);
+        StockLedger ledger = stockLedger.getIfAvailable();
+        int cantidad = ledger != null ? ledger.remove(id) : Objects.requireNonNullElse(funko.getCantidad(), 0);
+        stockMovements.record(id, -cantidad, StockMovement.Motivo.BAJA);
+        funkoIndex.remove(id);
         if (funko.getRutaImagen() != null && !funko.getRutaImagen().equals(Funko.RUTA_IMAGEN)) {
             storageService.delete(funko.getRutaImagen());
         }
@@ -164,11 +224,22 @@ public class FunkoServiceImpl implements FunkoService {
         return funkoMapper.toFunkoDto(funkoUpdate);
     }
 
+    // Copia fuera de JPA con el stock del ledger, para responder y notificar sin que se escriba en la fila
+    private static Funko conCantidad(Funko funko, Integer cantidad) {
+        return Funko.builder()
+                .id(funko.getId())
+                .nombre(funko.getNombre())
+                .precio(funko.getPrecio())
+                .cantidad(cantidad)
+                .rutaImagen(funko.getRutaImagen())
+                .fechaCreacion(funko.getFechaCreacion())
+                .fechaActualizacion(funko.getFechaActualizacion())
+                .categoria(funko.getCategoria())
+                .build();
+    }
+
+    // La notificación se guarda en el outbox dentro de la transacción y se envía después del commit
     void sendNotification(Notification.Tipo tipo, Funko data) {
-        if (webSocketService == null) {
-            log.warn("No se ha configurado el servicio de websockets");
-            webSocketService = this.webSocketConfig.webSocketFunkosHandler();
-        }
         try {
             Notification<FunkoNotificationDto> notificacion = new Notification<>(
                     "FUNKOS",
@@ -178,23 +249,13 @@ public class FunkoServiceImpl implements FunkoService {
             );
 
             String json = mapper.writeValueAsString((notificacion));
-            log.info("Enviando notificación mensaje..");
-
-            Thread senderThread = new Thread(() -> {
-                try {
-                    webSocketService.sendMessage(json);
-                } catch (Exception e) {
-                    log.error("Error al enviar el mensaje a través del servicio WebSocket", e);
-                }
-            });
-            senderThread.start();
+            log.info("Guardando notificación en el outbox..");
+            NotificationTopic topic = new NotificationTopic(tipo, data.getId(),
+                    data.getCategoria() != null ? data.getCategoria().getName() : null);
+            outbox.publish("FUNKOS:" + data.getId(), json, topic);
         } catch (JsonProcessingException e) {
             log.error("Error al convertir la notificación a JSON", e);
         }
     }
-
-    public void setWebSocketService(WebSocketHandler webSocketHandlerMock) {
-        this.webSocketService = webSocketHandlerMock;
-    }
 }
 
@@ -0,0 +1,177 @@
+package dev.rest.funkos.services.search;
+
+import dev.rest.categoria.models.Categoria;
+import dev.rest.categoria.repositories.CategoriaRepository;
+import dev.rest.funkos.dto.FunkoIndexEntry;
+import dev.rest.funkos.exceptions.FunkoBadRequest;
+import dev.rest.funkos.models.Funko;
+import dev.rest.funkos.repositories.FunkoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Índice en memoria del catálogo: resuelve los filtros de nombre, categoría y precio máximo
+// y devuelve los ids de la página pedida, de modo que la base de datos sólo carga esa página.
+// Mientras no está construido (o si se ordena por un campo no indexado) devuelve vacío
+// y el servicio consulta la base de datos como siempre.
+@Slf4j
+@Component
+public class FunkoIndex {
+    private static final Set<String> ORDENABLES = Set.of("id", "nombre", "precio", "fechaCreacion", "fechaActualizacion");
+
+    private final FunkoRepository funkoRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final long maxOffset;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Consumer<IndiceFunkos>> pendientes = new ArrayList<>();
+    private IndiceFunkos indice;
+    private boolean reconstruyendo;
+
+    @Autowired
+    public FunkoIndex(FunkoRepository funkoRepository, CategoriaRepository categoriaRepository,
+                      @Value("${funkos.index.max-offset:10000}") long maxOffset) {
+        this.funkoRepository = funkoRepository;
+        this.categoriaRepository = categoriaRepository;
+        this.maxOffset = maxOffset;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    // Los cambios que llegan mientras se construye se aplican al índice actual y se guardan
+    // para repetirlos sobre el nuevo, que puede haberse leído antes de ellos.
+    public void rebuild() {
+        log.info("Construyendo índice en memoria del catálogo de funkos...");
+        long inicio = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            reconstruyendo = true;
+            pendientes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        IndiceFunkos nuevo;
+        try {
+            nuevo = IndiceFunkos.build(funkoRepository.findAllIndexEntries(), categoriaRepository.findAll());
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                reconstruyendo = false;
+                pendientes.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("Error al construir el índice de funkos, las búsquedas irán a la base de datos", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pendientes.forEach(cambio -> cambio.accept(nuevo));
+            pendientes.clear();
+            indice = nuevo;
+            reconstruyendo = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de funkos construido: {} funkos en {} ms", nuevo.size(), System.currentTimeMillis() - inicio);
+    }
+
+    public void index(Funko funko) {
+        FunkoIndexEntry entrada = FunkoIndexEntry.of(funko);
+        apply(indice -> indice.put(entrada));
+    }
+
+    public void remove(Long id) {
+        apply(indice -> indice.remove(id));
+    }
+
+    public void indexCategoria(Categoria categoria) {
+        Long id = categoria.getId();
+        String nombre = categoria.getName();
+        apply(indice -> indice.putCategoria(id, nombre));
+    }
+
+    public void removeCategoria(Long id) {
+        apply(indice -> indice.removeCategoria(id));
+    }
+
+    // Las páginas profundas se piden por cursor: por offset habría que ordenar offset + size funkos
+    public Optional<Page<Long>> search(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio, Pageable pageable) {
+        if (pageable.isPaged() && pageable.getOffset() + pageable.getPageSize() > maxOffset) {
+            throw new FunkoBadRequest("No se puede paginar más allá de " + maxOffset + " funkos por offset, usa la paginación por cursor");
+        }
+        for (Sort.Order order : pageable.getSort()) {
+            if (!ORDENABLES.contains(order.getProperty())) {
+                return Optional.empty();
+            }
+        }
+        lock.readLock().lock();
+        try {
+            if (indice == null) {
+                return Optional.empty();
+            }
+            return Optional.of(indice.page(indice.match(categoria, nombre, maxPrecio), pageable));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<List<Long>> findIds(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio) {
+        lock.readLock().lock();
+        try {
+            if (indice == null) {
+                return Optional.empty();
+            }
+            return Optional.of(indice.ids(indice.match(categoria, nombre, maxPrecio)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Dentro de una transacción el índice sólo cambia si hace commit.
+    private void apply(Consumer<IndiceFunkos> cambio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyNow(cambio);
+                }
+            });
+        } else {
+            applyNow(cambio);
+        }
+    }
+
+    private void applyNow(Consumer<IndiceFunkos> cambio) {
+        lock.writeLock().lock();
+        try {
+            if (reconstruyendo) {
+                pendientes.add(cambio);
+            }
+            if (indice != null) {
+                cambio.accept(indice);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package dev.rest.funkos.services.search;
+
+import dev.rest.categoria.models.Categoria;
+import dev.rest.funkos.models.Funko;
+import jakarta.persistence.criteria.Join;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface FunkoSearch {
+
+    Specification<Funko> nombreContains(String nombre);
+
+    Specification<Funko> categoriaContains(String categoria);
+
+    static Specification<Funko> nombreLike(String nombre) {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.like(criteriaBuilder.lower(root.get("nombre")), "%" + nombre.toLowerCase() + "%");
+    }
+
+    static Specification<Funko> categoriaLike(String categoria) {
+        return (root, query, criteriaBuilder) -> {
+            Join<Funko, Categoria> categoriaJoin = root.join("categoria");
+            return criteriaBuilder.like(criteriaBuilder.lower(categoriaJoin.get("name")), "%" + categoria.toLowerCase() + "%");
+        };
+    }
+}
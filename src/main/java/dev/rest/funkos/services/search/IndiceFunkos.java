@@ -0,0 +1,352 @@
+package dev.rest.funkos.services.search;
+
+import dev.rest.categoria.models.Categoria;
+import dev.rest.funkos.dto.FunkoIndexEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+// Índice invertido de funkos: cada documento ocupa una posición (docId) en arrays paralelos
+// y cada trigrama del nombre apunta a una lista ordenada de docIds en un int[].
+// No es thread-safe: FunkoIndex se encarga de sincronizar el acceso.
+class IndiceFunkos {
+    private static final int N = 3;
+    private static final int CAPACIDAD_MINIMA = 1024;
+    private static final int DOCS_POR_BLOQUE = 10_000;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+    // Ordena los nombres como la collation de la base de datos (sin distinguir mayúsculas ni acentos
+    // en el primer nivel). Los Collator no se pueden compartir entre los hilos del build en paralelo.
+    private static final ThreadLocal<Collator> COLLATOR = ThreadLocal.withInitial(() -> Collator.getInstance(new Locale("es", "ES")));
+
+    private long[] ids;
+    private String[] nombres;
+    private String[] nombresNormalizados;
+    private CollationKey[] clavesNombre;
+    private double[] precios;
+    private long[] categorias;
+    private long[] fechasCreacion;
+    private long[] fechasActualizacion;
+    private BitSet borrados;
+    private int huecos;
+    private int docs;
+    private Map<Long, Integer> docPorId;
+    private Map<String, IntList> postings;
+    private final Map<Long, String> nombresCategorias = new HashMap<>();
+
+    private IndiceFunkos(int capacidad) {
+        capacidad = Math.max(CAPACIDAD_MINIMA, capacidad);
+        ids = new long[capacidad];
+        nombres = new String[capacidad];
+        nombresNormalizados = new String[capacidad];
+        clavesNombre = new CollationKey[capacidad];
+        precios = new double[capacidad];
+        categorias = new long[capacidad];
+        fechasCreacion = new long[capacidad];
+        fechasActualizacion = new long[capacidad];
+        borrados = new BitSet(capacidad);
+        docPorId = new HashMap<>(capacidad * 4 / 3 + 1);
+        postings = new HashMap<>();
+    }
+
+    // Los bloques de docIds consecutivos se indexan en paralelo y se concatenan en orden,
+    // así cada posting list sale ya ordenada sin tener que reordenarla.
+    static IndiceFunkos build(List<FunkoIndexEntry> entradas, List<Categoria> categorias) {
+        int total = entradas.size();
+        IndiceFunkos indice = new IndiceFunkos(total);
+        categorias.forEach(categoria -> indice.putCategoria(categoria.getId(), categoria.getName()));
+
+        IntStream.range(0, total).parallel().forEach(doc -> indice.set(doc, entradas.get(doc)));
+        for (int doc = 0; doc < total; doc++) {
+            indice.docPorId.put(indice.ids[doc], doc);
+        }
+        indice.docs = total;
+
+        int bloques = Math.max(1, (total + DOCS_POR_BLOQUE - 1) / DOCS_POR_BLOQUE);
+        List<Map<String, IntList>> parciales = IntStream.range(0, bloques).parallel()
+                .mapToObj(bloque -> indice.postingsDe(bloque * DOCS_POR_BLOQUE, Math.min(total, (bloque + 1) * DOCS_POR_BLOQUE)))
+                .toList();
+        for (Map<String, IntList> parcial : parciales) {
+            parcial.forEach((ngrama, lista) -> indice.postings.computeIfAbsent(ngrama, k -> new IntList()).addAll(lista));
+        }
+        return indice;
+    }
+
+    int size() {
+        return docPorId.size();
+    }
+
+    void put(FunkoIndexEntry entrada) {
+        Integer anterior = docPorId.remove(entrada.id());
+        if (anterior != null) {
+            borrados.set(anterior);
+            huecos++;
+        }
+        if (docs == ids.length) {
+            crecer();
+        }
+        int doc = docs++;
+        set(doc, entrada);
+        docPorId.put(entrada.id(), doc);
+        for (String ngrama : ngramas(nombresNormalizados[doc])) {
+            postings.computeIfAbsent(ngrama, k -> new IntList()).add(doc);
+        }
+        compactarSiHaceFalta();
+    }
+
+    void remove(Long id) {
+        Integer doc = docPorId.remove(id);
+        if (doc != null) {
+            borrados.set(doc);
+            huecos++;
+            compactarSiHaceFalta();
+        }
+    }
+
+    void putCategoria(Long id, String nombre) {
+        nombresCategorias.put(id, nombre.toLowerCase());
+    }
+
+    void removeCategoria(Long id) {
+        nombresCategorias.remove(id);
+    }
+
+    IntList match(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio) {
+        IntList resultado = new IntList();
+        long[] categoriasValidas = categoria.map(this::categoriasQueContienen).orElse(null);
+        if (categoriasValidas != null && categoriasValidas.length == 0) {
+            return resultado;
+        }
+        String buscado = nombre.map(String::toLowerCase).orElse(null);
+        IntList candidatos = buscado != null ? candidatos(buscado) : null;
+        int total = candidatos != null ? candidatos.size() : docs;
+        double max = maxPrecio.orElse(Double.NaN);
+
+        for (int i = 0; i < total; i++) {
+            int doc = candidatos != null ? candidatos.get(i) : i;
+            if (borrados.get(doc)) continue;
+            if (buscado != null && !nombresNormalizados[doc].contains(buscado)) continue;
+            if (categoriasValidas != null && !contiene(categoriasValidas, categorias[doc])) continue;
+            if (maxPrecio.isPresent() && !(precios[doc] <= max)) continue;
+            resultado.add(doc);
+        }
+        return resultado;
+    }
+
+    List<Long> ids(IntList docs) {
+        List<Long> resultado = new ArrayList<>(docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            resultado.add(ids[docs.get(i)]);
+        }
+        return resultado;
+    }
+
+    // Sólo se ordena lo necesario: un montículo acotado con los offset + size primeros.
+    // FunkoIndex limita el offset, así que el montículo nunca pasa de ese límite.
+    Page<Long> page(IntList docs, Pageable pageable) {
+        Comparator<Integer> orden = comparator(pageable.getSort());
+        int total = docs.size();
+        int desde = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), total) : 0;
+        int hasta = pageable.isPaged() ? (int) Math.min((long) desde + pageable.getPageSize(), total) : total;
+        if (desde >= hasta) {
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+
+        PriorityQueue<Integer> primeros = new PriorityQueue<>(hasta, orden.reversed());
+        for (int i = 0; i < total; i++) {
+            int doc = docs.get(i);
+            if (primeros.size() < hasta) {
+                primeros.add(doc);
+            } else if (orden.compare(doc, primeros.peek()) < 0) {
+                primeros.poll();
+                primeros.add(doc);
+            }
+        }
+        List<Integer> ordenados = new ArrayList<>(primeros);
+        ordenados.sort(orden);
+        List<Long> contenido = ordenados.subList(desde, hasta).stream().map(doc -> ids[doc]).toList();
+        return new PageImpl<>(contenido, pageable, total);
+    }
+
+    private Comparator<Integer> comparator(Sort sort) {
+        Comparator<Integer> porId = (a, b) -> Long.compare(ids[a], ids[b]);
+        Comparator<Integer> orden = null;
+        for (Sort.Order order : sort) {
+            Comparator<Integer> campo = switch (order.getProperty()) {
+                case "nombre" -> (a, b) -> clavesNombre[a].compareTo(clavesNombre[b]);
+                case "precio" -> (a, b) -> Double.compare(precios[a], precios[b]);
+                case "fechaCreacion" -> (a, b) -> Long.compare(fechasCreacion[a], fechasCreacion[b]);
+                case "fechaActualizacion" -> (a, b) -> Long.compare(fechasActualizacion[a], fechasActualizacion[b]);
+                default -> porId;
+            };
+            if (order.isDescending()) {
+                campo = campo.reversed();
+            }
+            orden = orden == null ? campo : orden.thenComparing(campo);
+        }
+        return orden == null ? porId : orden.thenComparing(porId);
+    }
+
+    // Se recorre la posting list del trigrama más raro y se verifica la subcadena en cada candidato.
+    // Con menos de N caracteres no hay trigramas y se recorren todos los documentos (null).
+    private IntList candidatos(String buscado) {
+        if (buscado.length() < N) {
+            return null;
+        }
+        IntList menor = null;
+        for (String ngrama : ngramas(buscado)) {
+            IntList lista = postings.get(ngrama);
+            if (lista == null) {
+                return new IntList();
+            }
+            if (menor == null || lista.size() < menor.size()) {
+                menor = lista;
+            }
+        }
+        return menor;
+    }
+
+    private long[] categoriasQueContienen(String categoria) {
+        String buscada = categoria.toLowerCase();
+        return nombresCategorias.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(buscada))
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private static boolean contiene(long[] valores, long valor) {
+        for (long v : valores) {
+            if (v == valor) return true;
+        }
+        return false;
+    }
+
+    private void set(int doc, FunkoIndexEntry entrada) {
+        ids[doc] = entrada.id();
+        nombres[doc] = entrada.nombre() != null ? entrada.nombre() : "";
+        nombresNormalizados[doc] = nombres[doc].toLowerCase();
+        clavesNombre[doc] = COLLATOR.get().getCollationKey(nombres[doc]);
+        precios[doc] = entrada.precio() != null ? entrada.precio() : Double.NaN;
+        categorias[doc] = entrada.categoriaId() != null ? entrada.categoriaId() : -1L;
+        fechasCreacion[doc] = epochDay(entrada.fechaCreacion());
+        fechasActualizacion[doc] = epochDay(entrada.fechaActualizacion());
+    }
+
+    private FunkoIndexEntry get(int doc) {
+        return new FunkoIndexEntry(
+                ids[doc],
+                nombres[doc],
+                Double.isNaN(precios[doc]) ? null : precios[doc],
+                categorias[doc] == -1L ? null : categorias[doc],
+                fechasCreacion[doc] == SIN_FECHA ? null : LocalDate.ofEpochDay(fechasCreacion[doc]),
+                fechasActualizacion[doc] == SIN_FECHA ? null : LocalDate.ofEpochDay(fechasActualizacion[doc])
+        );
+    }
+
+    private Map<String, IntList> postingsDe(int desde, int hasta) {
+        Map<String, IntList> parcial = new HashMap<>();
+        for (int doc = desde; doc < hasta; doc++) {
+            for (String ngrama : ngramas(nombresNormalizados[doc])) {
+                parcial.computeIfAbsent(ngrama, k -> new IntList()).add(doc);
+            }
+        }
+        return parcial;
+    }
+
+    private void crecer() {
+        int capacidad = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacidad);
+        nombres = Arrays.copyOf(nombres, capacidad);
+        nombresNormalizados = Arrays.copyOf(nombresNormalizados, capacidad);
+        clavesNombre = Arrays.copyOf(clavesNombre, capacidad);
+        precios = Arrays.copyOf(precios, capacidad);
+        categorias = Arrays.copyOf(categorias, capacidad);
+        fechasCreacion = Arrays.copyOf(fechasCreacion, capacidad);
+        fechasActualizacion = Arrays.copyOf(fechasActualizacion, capacidad);
+    }
+
+    // Los borrados y las actualizaciones dejan huecos en las posting lists; cuando son más
+    // de la mitad de los documentos se reconstruye el índice con los vivos.
+    private void compactarSiHaceFalta() {
+        if (docs < CAPACIDAD_MINIMA || huecos * 2 < docs) {
+            return;
+        }
+        List<FunkoIndexEntry> vivos = new ArrayList<>(size());
+        for (int doc = 0; doc < docs; doc++) {
+            if (!borrados.get(doc)) {
+                vivos.add(get(doc));
+            }
+        }
+        IndiceFunkos compactado = build(vivos, List.of());
+        ids = compactado.ids;
+        nombres = compactado.nombres;
+        nombresNormalizados = compactado.nombresNormalizados;
+        clavesNombre = compactado.clavesNombre;
+        precios = compactado.precios;
+        categorias = compactado.categorias;
+        fechasCreacion = compactado.fechasCreacion;
+        fechasActualizacion = compactado.fechasActualizacion;
+        borrados = compactado.borrados;
+        huecos = 0;
+        docs = compactado.docs;
+        docPorId = compactado.docPorId;
+        postings = compactado.postings;
+    }
+
+    private static long epochDay(LocalDate fecha) {
+        return fecha != null ? fecha.toEpochDay() : SIN_FECHA;
+    }
+
+    private static Set<String> ngramas(String texto) {
+        Set<String> ngramas = new HashSet<>();
+        for (int i = 0; i + N <= texto.length(); i++) {
+            ngramas.add(texto.substring(i, i + N));
+        }
+        return ngramas;
+    }
+
+    static final class IntList {
+        private int[] valores = new int[4];
+        private int size;
+
+        void add(int valor) {
+            if (size == valores.length) {
+                valores = Arrays.copyOf(valores, size * 2);
+            }
+            valores[size++] = valor;
+        }
+
+        void addAll(IntList otra) {
+            if (size + otra.size > valores.length) {
+                valores = Arrays.copyOf(valores, Math.max(valores.length * 2, size + otra.size));
+            }
+            System.arraycopy(otra.valores, 0, valores, size, otra.size);
+            size += otra.size;
+        }
+
+        int get(int i) {
+            return valores[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
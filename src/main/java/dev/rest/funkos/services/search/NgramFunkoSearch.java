@@ -0,0 +1,42 @@
+package dev.rest.funkos.services.search;
+
+import dev.rest.funkos.models.Funko;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+// H2 no tiene pg_trgm: las Specifications filtran por los ids que devuelve el índice de trigramas
+// en memoria. Si el índice aún no está construido se usa el LIKE de siempre.
+@Component
+@Profile("!prod")
+public class NgramFunkoSearch implements FunkoSearch {
+    private final FunkoIndex funkoIndex;
+
+    @Autowired
+    public NgramFunkoSearch(FunkoIndex funkoIndex) {
+        this.funkoIndex = funkoIndex;
+    }
+
+    @Override
+    public Specification<Funko> nombreContains(String nombre) {
+        return funkoIndex.findIds(Optional.empty(), Optional.of(nombre), Optional.empty())
+                .map(NgramFunkoSearch::idIn)
+                .orElseGet(() -> FunkoSearch.nombreLike(nombre));
+    }
+
+    @Override
+    public Specification<Funko> categoriaContains(String categoria) {
+        return funkoIndex.findIds(Optional.of(categoria), Optional.empty(), Optional.empty())
+                .map(NgramFunkoSearch::idIn)
+                .orElseGet(() -> FunkoSearch.categoriaLike(categoria));
+    }
+
+    private static Specification<Funko> idIn(List<Long> ids) {
+        return (root, query, criteriaBuilder) ->
+                ids.isEmpty() ? criteriaBuilder.disjunction() : root.get("id").in(ids);
+    }
+}
@@ -0,0 +1,76 @@
+package dev.rest.funkos.services.search;
+
+import dev.rest.funkos.models.Funko;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// En Postgres los LIKE '%x%' sobre lower(columna) los resuelve un índice GIN de trigramas (pg_trgm),
+// así que basta con que existan los índices y se mantienen las mismas Specifications.
+// La extensión y los índices los crea database/init.sql. Al arrancar sólo se crean los índices que falten, con
+// CONCURRENTLY para no bloquear las escrituras en funkos; si no está pg_trgm o algo falla se avisa y las búsquedas
+// siguen con LIKE sin índice.
+@Slf4j
+@Component
+@Profile("prod")
+public class TrigramFunkoSearch implements FunkoSearch {
+    private static final Map<String, String> INDICES = Map.of(
+            "idx_funkos_nombre_trgm", "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_funkos_nombre_trgm ON funkos USING gin (lower(nombre) gin_trgm_ops)",
+            "idx_categorias_name_trgm", "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_categorias_name_trgm ON categorias USING gin (lower(name) gin_trgm_ops)"
+    );
+    private static final String EXTENSION = "SELECT count(*) FROM pg_extension WHERE extname = 'pg_trgm'";
+    // Un CONCURRENTLY que falla deja el índice marcado como no válido y IF NOT EXISTS ya no lo repetiría
+    private static final String INVALIDO = "SELECT count(*) FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ? AND NOT i.indisvalid";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public TrigramFunkoSearch(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // JdbcTemplate sin transacción: cada sentencia va en autocommit, como necesita CREATE INDEX CONCURRENTLY
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            Integer extension = jdbcTemplate.queryForObject(EXTENSION, Integer.class);
+            if (extension == null || extension == 0) {
+                log.warn("La extensión pg_trgm no está instalada, la búsqueda de funkos seguirá sin índices de trigramas");
+                return;
+            }
+        } catch (DataAccessException e) {
+            log.warn("No se ha podido comprobar la extensión pg_trgm, la búsqueda de funkos seguirá sin índices de trigramas", e);
+            return;
+        }
+        INDICES.forEach((nombre, sql) -> {
+            try {
+                Integer invalido = jdbcTemplate.queryForObject(INVALIDO, Integer.class, nombre);
+                if (invalido != null && invalido > 0) {
+                    log.warn("El índice {} quedó a medias, se vuelve a crear", nombre);
+                    jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + nombre);
+                }
+                jdbcTemplate.execute(sql);
+            } catch (DataAccessException e) {
+                log.warn("No se ha podido crear el índice {}, la búsqueda seguirá sin él", nombre, e);
+            }
+        });
+    }
+
+    @Override
+    public Specification<Funko> nombreContains(String nombre) {
+        return FunkoSearch.nombreLike(nombre);
+    }
+
+    @Override
+    public Specification<Funko> categoriaContains(String categoria) {
+        return FunkoSearch.categoriaLike(categoria);
+    }
+}
@@ -1,7 +1,17 @@
 package dev.rest.pedido.controllers;
 
+import dev.rest.pedido.exceptions.PedidoBadRequest;
+import dev.rest.pedido.exceptions.PedidoNotFound;
+import dev.rest.pedido.idempotency.IdempotencyStore;
 import dev.rest.pedido.models.Pedido;
 import dev.rest.pedido.services.PedidoService;
+import dev.rest.pedido.services.export.PedidoExportFormat;
+import dev.rest.pedido.services.export.PedidoExporter;
+import dev.rest.pedido.services.intake.PedidoIntake;
+import dev.rest.pedido.services.intake.PedidoIntakeStatus;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
+import dev.utils.pagination.CursorPageResponse;
 import dev.utils.pagination.PageResponse;
 import dev.utils.pagination.PaginationLinksUtils;
 import io.swagger.v3.oas.annotations.Operation;
@@ -16,16 +26,23 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.URI;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/pedidos")
@@ -33,11 +50,18 @@ import java.util.Map;
 public class PedidoController {
     private final PedidoService pedidoService;
     private final PaginationLinksUtils paginationLinksUtils;
+    private final PedidoIntake pedidoIntake;
+    private final IdempotencyStore idempotencyStore;
+    private final PedidoExporter pedidoExporter;
 
     @Autowired
-    public PedidoController(PedidoService pedidoService, PaginationLinksUtils paginationLinksUtils) {
+    public PedidoController(PedidoService pedidoService, PaginationLinksUtils paginationLinksUtils,
+                            PedidoIntake pedidoIntake, IdempotencyStore idempotencyStore, PedidoExporter pedidoExporter) {
         this.pedidoService = pedidoService;
         this.paginationLinksUtils = paginationLinksUtils;
+        this.pedidoIntake = pedidoIntake;
+        this.idempotencyStore = idempotencyStore;
+        this.pedidoExporter = pedidoExporter;
     }
 
     @GetMapping()
@@ -58,6 +82,20 @@ public class PedidoController {
                 .body(PageResponse.of(pageResult, sortBy, direction));
     }
 
+    // Paginación por clave sobre _id o createdAt: las páginas profundas no recorren las anteriores
+    @GetMapping(params = "cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageResponse<Pedido>> getAllByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            HttpServletRequest request
+    ) {
+        log.info("Buscando pedidos por cursor...");
+        return findByCursor(Optional.empty(), cursor, size, sortBy, direction, request);
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Pedido> getPedido(@PathVariable("id") ObjectId idPedido) {
@@ -65,6 +103,23 @@ public class PedidoController {
         return ResponseEntity.ok(pedidoService.findById(idPedido));
     }
 
+    // Todos los pedidos que cumplan los filtros en una sola respuesta, escrita según se lee de Mongo
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportPedidos(
+            @RequestParam(defaultValue = "NDJSON") PedidoExportFormat format,
+            @RequestParam(required = false) Optional<Long> idUsuario,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Optional<LocalDate> desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Optional<LocalDate> hasta
+    ) {
+        log.info("Exportando pedidos en formato: " + format);
+        StreamingResponseBody cuerpo = salida -> pedidoExporter.export(idUsuario, desde, hasta, format, salida);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, format.getMediaType() + ";charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"pedidos." + format.getExtension() + "\"")
+                .body(cuerpo);
+    }
+
     @GetMapping("/usuario/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<PageResponse<Pedido>> getPedidosByUsuario(
@@ -80,11 +135,55 @@ public class PedidoController {
         return ResponseEntity.ok(PageResponse.of(pedidoService.findByIdUsuario(idUser, pageable), sortBy, direction));
     }
 
+    @GetMapping(value = "/usuario/{id}", params = "cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageResponse<Pedido>> getPedidosByUsuarioAndCursor(
+            @PathVariable("id") Long idUser,
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "asc") String direction,
+            HttpServletRequest request
+    ) {
+        log.info("Obteniendo pedidos por cursor del usuario con id: " + idUser);
+        return findByCursor(Optional.of(idUser), cursor, size, sortBy, direction, request);
+    }
+
     @PostMapping()
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Pedido> createPedido(@Valid @RequestBody Pedido pedido) {
+    public ResponseEntity<?> createPedido(@Valid @RequestBody Pedido pedido,
+                                          @RequestHeader(value = "Prefer", required = false) String prefer,
+                                          @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         log.info("Creando pedido: " + pedido);
-        return ResponseEntity.status(HttpStatus.CREATED).body(pedidoService.save(pedido));
+        if (idempotencyKey == null) {
+            return create(pedido, prefer);
+        }
+        String huella = IdempotencyStore.huella(pedido.getIdUsuario(), pedido.getCliente(), pedido.getLineasPedido());
+        Optional<IdempotencyStore.Resultado> original = idempotencyStore.begin(idempotencyKey, huella);
+        if (original.isPresent()) {
+            log.info("Petición repetida con la clave de idempotencia: " + idempotencyKey);
+            return replay(original.get());
+        }
+        ResponseEntity<?> respuesta;
+        try {
+            respuesta = create(pedido, prefer);
+        } catch (RuntimeException e) {
+            idempotencyStore.abort(idempotencyKey);
+            throw e;
+        }
+        // El pedido ya está creado o encolado: si no se puede guardar el resultado no se libera la clave
+        ObjectId idPedido = respuesta.getBody() instanceof Pedido guardado ? guardado.getId() : pedido.getId();
+        idempotencyStore.complete(idempotencyKey, respuesta.getStatusCode().value(), idPedido);
+        return respuesta;
+    }
+
+    @GetMapping("/intake/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PedidoIntakeStatus> getIntakeStatus(@PathVariable("id") ObjectId idPedido) {
+        log.info("Obteniendo estado del pedido encolado con id: " + idPedido);
+        return pedidoIntake.status(idPedido)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PutMapping("/{id}")
@@ -102,6 +201,49 @@ public class PedidoController {
         return ResponseEntity.noContent().build();
     }
 
+    private ResponseEntity<?> create(Pedido pedido, String prefer) {
+        if (pedidoIntake.isAsync(prefer)) {
+            PedidoIntakeStatus estado = pedidoIntake.submit(pedido);
+            return ResponseEntity.accepted().location(intakeLocation(pedido.getId())).body(estado);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(pedidoService.save(pedido));
+    }
+
+    // Se repite el status original; el cuerpo se vuelve a montar con el pedido o con su estado en la cola.
+    // El estado de la cola sólo lo tiene el nodo que encoló el pedido y caduca antes que la clave: si no está,
+    // se devuelve el pedido si ya se ha creado y, si no, un estado UNKNOWN
+    private ResponseEntity<?> replay(IdempotencyStore.Resultado original) {
+        var respuesta = ResponseEntity.status(original.status()).header("Idempotent-Replayed", "true");
+        if (original.status() != HttpStatus.ACCEPTED.value()) {
+            return respuesta.body(pedidoService.findById(original.idPedido()));
+        }
+        respuesta.location(intakeLocation(original.idPedido()));
+        Optional<PedidoIntakeStatus> estado = pedidoIntake.status(original.idPedido());
+        if (estado.isPresent()) {
+            return respuesta.body(estado.get());
+        }
+        try {
+            return respuesta.body(pedidoService.findById(original.idPedido()));
+        } catch (PedidoNotFound e) {
+            return respuesta.body(new PedidoIntakeStatus(original.idPedido().toHexString(), PedidoIntakeStatus.Estado.UNKNOWN,
+                    "El estado del pedido sólo lo conoce el nodo que lo recibió"));
+        }
+    }
+
+    private ResponseEntity<CursorPageResponse<Pedido>> findByCursor(Optional<Long> idUsuario, String cursor, int size,
+                                                                    String sortBy, String direction, HttpServletRequest request) {
+        Cursor pageCursor = cursor.isBlank() ? Cursor.first(sortBy, direction) : Cursor.decode(cursor, PedidoBadRequest::new);
+        UriComponentsBuilder uriBuilder = ServletUriComponentsBuilder.fromRequest(request);
+        CursorPage<Pedido> result = pedidoService.findAll(idUsuario, pageCursor, size);
+        return ResponseEntity.ok()
+                .header("link", paginationLinksUtils.createLinkHeader(result, uriBuilder))
+                .body(CursorPageResponse.of(result, pageCursor.sortBy(), pageCursor.direction().name().toLowerCase()));
+    }
+
+    private URI intakeLocation(ObjectId idPedido) {
+        return ServletUriComponentsBuilder.fromCurrentRequest().path("/intake/{id}").buildAndExpand(idPedido.toHexString()).toUri();
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public Map<String, String> handleValidationExceptions(
@@ -0,0 +1,54 @@
+package dev.rest.pedido.controllers;
+
+import dev.rest.pedido.services.rollups.SalesRollup;
+import dev.rest.pedido.services.rollups.SalesRollups;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/ventas")
+@Slf4j
+public class SalesRollupController {
+    private final SalesRollups salesRollups;
+
+    @Autowired
+    public SalesRollupController(SalesRollups salesRollups) {
+        this.salesRollups = salesRollups;
+    }
+
+    @GetMapping()
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<SalesRollup>> getVentas(
+            @RequestParam(defaultValue = "TOTAL") SalesRollup.Tipo tipo,
+            @RequestParam(required = false) Optional<String> clave,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        log.info("Buscando ventas por " + tipo + " del " + desde + " al " + hasta);
+        return ResponseEntity.ok(salesRollups.find(tipo, clave, desde, hasta));
+    }
+
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuild(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta
+    ) {
+        log.info("Recalculando ventas del " + desde + " al " + hasta);
+        int documentos = salesRollups.rebuild(desde, hasta);
+        return ResponseEntity.ok(Map.of("desde", desde, "hasta", hasta, "documentos", documentos));
+    }
+}
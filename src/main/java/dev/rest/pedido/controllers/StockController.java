@@ -0,0 +1,47 @@
+package dev.rest.pedido.controllers;
+
+import dev.rest.pedido.services.stock.movements.StockDrift;
+import dev.rest.pedido.services.stock.movements.StockLevel;
+import dev.rest.pedido.services.stock.movements.StockMovements;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stock")
+@Slf4j
+public class StockController {
+    private final StockMovements stockMovements;
+
+    @Autowired
+    public StockController(StockMovements stockMovements) {
+        this.stockMovements = stockMovements;
+    }
+
+    @GetMapping("/{idFunko}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StockLevel> getStock(
+            @PathVariable("idFunko") Long idFunko,
+            @RequestParam(value = "at", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime momento
+    ) {
+        log.info("Obteniendo el stock del funko con id: " + idFunko);
+        return ResponseEntity.ok(stockMovements.stockAt(idFunko, momento != null ? momento : LocalDateTime.now()));
+    }
+
+    @GetMapping("/drift")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<StockDrift>> getDrift() {
+        log.info("Comprobando el stock de los funkos contra sus movimientos");
+        return ResponseEntity.ok(stockMovements.drift());
+    }
+}
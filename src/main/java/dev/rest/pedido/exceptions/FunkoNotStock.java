@@ -3,9 +3,15 @@ package dev.rest.pedido.exceptions;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.util.List;
+
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class FunkoNotStock extends PedidoException {
     public FunkoNotStock(Long id) {
         super("Cantidad no válida o Funko con id " + id + " no tiene stock suficiente");
     }
+
+    public FunkoNotStock(List<Long> ids) {
+        super("Cantidad no válida o Funkos con id " + ids + " no tienen stock suficiente");
+    }
 }
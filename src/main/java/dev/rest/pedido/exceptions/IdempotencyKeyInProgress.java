@@ -0,0 +1,11 @@
+package dev.rest.pedido.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class IdempotencyKeyInProgress extends PedidoException {
+    public IdempotencyKeyInProgress(String clave) {
+        super("Ya se está procesando una petición con la clave de idempotencia " + clave);
+    }
+}
@@ -0,0 +1,11 @@
+package dev.rest.pedido.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyInvalid extends PedidoException {
+    public IdempotencyKeyInvalid(String message) {
+        super(message);
+    }
+}
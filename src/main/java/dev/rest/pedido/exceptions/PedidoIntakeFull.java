@@ -0,0 +1,11 @@
+package dev.rest.pedido.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PedidoIntakeFull extends PedidoException {
+    public PedidoIntakeFull() {
+        super("Hay demasiados pedidos pendientes, inténtelo más tarde");
+    }
+}
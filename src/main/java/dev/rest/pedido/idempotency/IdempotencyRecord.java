@@ -0,0 +1,66 @@
+package dev.rest.pedido.idempotency;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+// Respaldo persistente de las claves de idempotencia. La clave primaria hace de cerrojo entre nodos:
+// sólo un insert puede ganar, y se hace persist directo (isNew) para que el duplicado falle al momento.
+@Builder
+@Entity
+@Data
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord implements Persistable<String> {
+    public enum Estado {IN_PROGRESS, COMPLETED}
+
+    @Id
+    @Column(name = "clave", length = 255)
+    private String clave;
+
+    @Column(nullable = false, length = 64)
+    private String huella;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    @Builder.Default
+    private Estado estado = Estado.IN_PROGRESS;
+
+    private Integer status;
+
+    @Column(name = "id_pedido", length = 24)
+    private String idPedido;
+
+    @Column(name = "created_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Transient
+    @Builder.Default
+    private boolean nueva = true;
+
+    @Override
+    public String getId() {
+        return clave;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nueva;
+    }
+
+    @PostLoad
+    @PostPersist
+    void marcarGuardada() {
+        nueva = false;
+    }
+}
@@ -0,0 +1,32 @@
+package dev.rest.pedido.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.estado = dev.rest.pedido.idempotency.IdempotencyRecord.Estado.COMPLETED, " +
+            "r.status = :status, r.idPedido = :idPedido WHERE r.clave = :clave")
+    int complete(@Param("clave") String clave, @Param("status") int status, @Param("idPedido") String idPedido);
+
+    // Caducada, o en curso desde antes de limite (el nodo que la tenía se cayó a mitad de la petición)
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.clave = :clave AND (r.expiresAt < :ahora " +
+            "OR (r.estado = dev.rest.pedido.idempotency.IdempotencyRecord.Estado.IN_PROGRESS AND r.createdAt < :limite))")
+    int deleteStale(@Param("clave") String clave, @Param("ahora") LocalDateTime ahora, @Param("limite") LocalDateTime limite);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :ahora")
+    int deleteAllExpired(@Param("ahora") LocalDateTime ahora);
+}
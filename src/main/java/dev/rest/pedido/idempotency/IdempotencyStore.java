@@ -0,0 +1,259 @@
+package dev.rest.pedido.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.rest.pedido.exceptions.IdempotencyKeyInProgress;
+import dev.rest.pedido.exceptions.IdempotencyKeyInvalid;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Claves de idempotencia para la creación de pedidos (cabecera Idempotency-Key).
+// El índice en memoria sólo guarda por clave la huella de la petición y el resultado (status e id del pedido),
+// no la respuesta: al repetirla se vuelve a montar a partir del pedido. Las peticiones duplicadas que llegan
+// mientras la original está en curso esperan a que termine (hasta wait-ms) y reciben su misma respuesta.
+// La tabla idempotency_keys respalda el índice: cubre los reinicios y las peticiones repartidas entre nodos.
+@Slf4j
+@Component
+public class IdempotencyStore {
+    public static final int MAX_LENGTH = 255;
+    private static final int COMPLETE_ATTEMPTS = 3;
+    private static final long COMPLETE_BACKOFF_MS = 100;
+    // JSON con las propiedades y las claves de los mapas ordenadas: la misma petición da siempre los mismos bytes
+    private static final ObjectMapper CANONICO = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final IdempotencyRepository repository;
+    private final Duration ttl;
+    private final long waitMs;
+    private final Duration inProgressTimeout;
+    private final long purgeInterval;
+    private final Cache<String, Entrada> index;
+    private final Counter repetidas;
+    private final Counter enCurso;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public IdempotencyStore(IdempotencyRepository repository,
+                            @Value("${pedidos.idempotency.ttl:86400000}") long ttlMs,
+                            @Value("${pedidos.idempotency.index-size:100000}") long indexSize,
+                            @Value("${pedidos.idempotency.wait-ms:10000}") long waitMs,
+                            @Value("${pedidos.idempotency.in-progress-timeout:60000}") long inProgressTimeoutMs,
+                            @Value("${pedidos.idempotency.purge-interval:600000}") long purgeInterval,
+                            MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.ttl = Duration.ofMillis(ttlMs);
+        this.waitMs = waitMs;
+        this.inProgressTimeout = Duration.ofMillis(inProgressTimeoutMs);
+        this.purgeInterval = purgeInterval;
+        this.index = Caffeine.newBuilder()
+                .maximumSize(indexSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.repetidas = Counter.builder("pedidos.idempotency.replayed").register(meterRegistry);
+        this.enCurso = Counter.builder("pedidos.idempotency.conflicts")
+                .description("Peticiones duplicadas rechazadas porque la original sigue en curso")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purge, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Huella de lo que pide el cliente (SHA-256 en hexadecimal); con la misma clave y otra huella la petición se rechaza
+    public static String huella(Object... partes) {
+        try {
+            byte[] canonico = CANONICO.writeValueAsBytes(Arrays.asList(partes));
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonico));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se ha podido calcular la huella de la petición", e);
+        }
+    }
+
+    // Vacío si la petición es nueva y hay que ejecutarla (terminando con complete o abort),
+    // o la respuesta original si es una repetición
+    public Optional<Resultado> begin(String clave, String huella) {
+        if (clave.isBlank() || clave.length() > MAX_LENGTH) {
+            throw new IdempotencyKeyInvalid("La clave de idempotencia debe tener entre 1 y " + MAX_LENGTH + " caracteres");
+        }
+        while (true) {
+            Entrada nueva = new Entrada(huella);
+            Entrada existente = index.asMap().putIfAbsent(clave, nueva);
+            if (existente == null) {
+                return reservar(clave, nueva);
+            }
+            if (!existente.huella.equals(huella)) {
+                throw new IdempotencyKeyInvalid("La clave de idempotencia " + clave + " ya se usó con otra petición");
+            }
+            try {
+                Resultado resultado = existente.resultado.get(waitMs, TimeUnit.MILLISECONDS);
+                repetidas.increment();
+                return Optional.of(resultado);
+            } catch (ExecutionException | CancellationException e) {
+                // La original falló y liberó la clave: se vuelve a intentar como petición nueva
+                index.asMap().remove(clave, existente);
+            } catch (TimeoutException e) {
+                enCurso.increment();
+                throw new IdempotencyKeyInProgress(clave);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyKeyInProgress(clave);
+            }
+        }
+    }
+
+    // Si el resultado no llega a la tabla la fila se queda IN_PROGRESS y, pasado in-progress-timeout, otro nodo
+    // liberaría la clave y el pedido se crearía dos veces: se reintenta y, si no hay manera, se lanza el error.
+    // El índice en memoria se completa igualmente para que este nodo sí responda bien a las repeticiones.
+    public void complete(String clave, int status, ObjectId idPedido) {
+        Resultado resultado = new Resultado(status, idPedido);
+        Entrada entrada = index.getIfPresent(clave);
+        if (entrada != null) {
+            entrada.resultado.complete(resultado);
+        }
+        RuntimeException error = null;
+        for (int intento = 1; intento <= COMPLETE_ATTEMPTS; intento++) {
+            try {
+                if (repository.complete(clave, status, idPedido.toHexString()) == 1) {
+                    return;
+                }
+                error = new IllegalStateException("La clave de idempotencia " + clave + " ya no está registrada");
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            log.warn("Error guardando el resultado de la clave de idempotencia {} (intento {})", clave, intento, error);
+            if (intento < COMPLETE_ATTEMPTS) {
+                try {
+                    Thread.sleep(COMPLETE_BACKOFF_MS * intento);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        throw new IllegalStateException("No se ha podido guardar el resultado de la clave de idempotencia " + clave, error);
+    }
+
+    // La petición ha fallado: se libera la clave para que el cliente pueda reintentar
+    public void abort(String clave) {
+        Entrada entrada = index.asMap().remove(clave);
+        try {
+            repository.deleteById(clave);
+        } catch (RuntimeException e) {
+            log.error("Error liberando la clave de idempotencia {}", clave, e);
+        }
+        if (entrada != null) {
+            entrada.resultado.cancel(false);
+        }
+    }
+
+    public void purge() {
+        try {
+            int borradas = repository.deleteAllExpired(LocalDateTime.now());
+            if (borradas > 0) {
+                log.info("Borradas {} claves de idempotencia caducadas", borradas);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error borrando las claves de idempotencia caducadas", e);
+        }
+    }
+
+    // La clave no estaba en este nodo: la fila de la base de datos decide si es nueva
+    private Optional<Resultado> reservar(String clave, Entrada nueva) {
+        LocalDateTime ahora = LocalDateTime.now();
+        try {
+            if (insert(clave, nueva.huella, ahora)) {
+                return Optional.empty();
+            }
+            repository.deleteStale(clave, ahora, ahora.minus(inProgressTimeout));
+            if (insert(clave, nueva.huella, ahora)) {
+                return Optional.empty();
+            }
+            IdempotencyRecord registro = repository.findById(clave).orElse(null);
+            if (registro == null) {
+                throw new IdempotencyKeyInProgress(clave);
+            }
+            if (!nueva.huella.equals(registro.getHuella())) {
+                throw new IdempotencyKeyInvalid("La clave de idempotencia " + clave + " ya se usó con otra petición");
+            }
+            if (registro.getEstado() != IdempotencyRecord.Estado.COMPLETED) {
+                enCurso.increment();
+                throw new IdempotencyKeyInProgress(clave);
+            }
+            Resultado resultado = new Resultado(registro.getStatus(), new ObjectId(registro.getIdPedido()));
+            nueva.resultado.complete(resultado);
+            repetidas.increment();
+            return Optional.of(resultado);
+        } catch (RuntimeException e) {
+            index.asMap().remove(clave, nueva);
+            nueva.resultado.cancel(false);
+            throw e;
+        }
+    }
+
+    private boolean insert(String clave, String huella, LocalDateTime ahora) {
+        try {
+            repository.saveAndFlush(IdempotencyRecord.builder()
+                    .clave(clave)
+                    .huella(huella)
+                    .createdAt(ahora)
+                    .expiresAt(ahora.plus(ttl))
+                    .build());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    public record Resultado(int status, ObjectId idPedido) {
+    }
+
+    private static final class Entrada {
+        private final String huella;
+        private final CompletableFuture<Resultado> resultado = new CompletableFuture<>();
+
+        private Entrada(String huella) {
+            this.huella = huella;
+        }
+    }
+}
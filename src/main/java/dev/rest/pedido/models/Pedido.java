@@ -12,6 +12,8 @@ import org.bson.types.ObjectId;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -24,6 +26,12 @@ import java.util.List;
 @Builder
 @Document("pedidos")
 @TypeAlias("Pedido")
+// Índices para la paginación por clave (ver PedidoCursorRepositoryImpl); PedidoIndexes los crea al arrancar
+@CompoundIndexes({
+        @CompoundIndex(name = "idx_pedidos_usuario_created", def = "{'idUsuario': 1, 'createdAt': 1, '_id': 1}"),
+        @CompoundIndex(name = "idx_pedidos_usuario_id", def = "{'idUsuario': 1, '_id': 1}"),
+        @CompoundIndex(name = "idx_pedidos_created", def = "{'createdAt': 1, '_id': 1}")
+})
 @EntityListeners(AuditingEntityListener.class)
 public class Pedido {
     @Id
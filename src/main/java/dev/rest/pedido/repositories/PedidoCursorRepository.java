@@ -0,0 +1,12 @@
+package dev.rest.pedido.repositories;
+
+import dev.rest.pedido.models.Pedido;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
+
+import java.util.Optional;
+
+public interface PedidoCursorRepository {
+
+    CursorPage<Pedido> findAll(Optional<Long> idUsuario, Cursor cursor, int size);
+}
@@ -0,0 +1,99 @@
+package dev.rest.pedido.repositories;
+
+import dev.rest.pedido.exceptions.PedidoBadRequest;
+import dev.rest.pedido.models.Pedido;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+public class PedidoCursorRepositoryImpl implements PedidoCursorRepository {
+    private static final String ID = "id";
+    private static final String CREATED_AT = "createdAt";
+
+    private final MongoTemplate mongoTemplate;
+
+    public PedidoCursorRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // Paginación por clave (sortBy, _id) como en funkos: en lugar de skip se busca a partir del último pedido
+    // visto con los índices (createdAt, _id) o (idUsuario, createdAt, _id), así que una página profunda cuesta
+    // lo mismo que la primera. Se pide un pedido de más para saber si hay otra página y no se cuenta nada.
+    @Override
+    public CursorPage<Pedido> findAll(Optional<Long> idUsuario, Cursor cursor, int size) {
+        if (size < 1) {
+            throw new PedidoBadRequest("El tamaño de la página tiene que ser al menos 1");
+        }
+        if (size > CursorPage.MAX_SIZE) {
+            throw new PedidoBadRequest("El tamaño de la página no puede pasar de " + CursorPage.MAX_SIZE);
+        }
+        boolean porId = cursor.sortBy().equals(ID);
+        if (!porId && !cursor.sortBy().equals(CREATED_AT)) {
+            throw new PedidoBadRequest("Sólo se puede paginar por cursor ordenando por " + ID + " o " + CREATED_AT);
+        }
+        boolean ascending = cursor.direction().isAscending() != cursor.backward();
+
+        Query query = new Query();
+        idUsuario.ifPresent(id -> query.addCriteria(Criteria.where("idUsuario").is(id)));
+        if (!cursor.isFirst()) {
+            ObjectId lastId = parseId(cursor.id());
+            Criteria afterId = ascending ? Criteria.where("_id").gt(lastId) : Criteria.where("_id").lt(lastId);
+            if (porId) {
+                query.addCriteria(afterId);
+            } else {
+                LocalDateTime value = parseCreatedAt(cursor.value());
+                query.addCriteria(new Criteria().orOperator(
+                        ascending ? Criteria.where(CREATED_AT).gt(value) : Criteria.where(CREATED_AT).lt(value),
+                        new Criteria().andOperator(Criteria.where(CREATED_AT).is(value), afterId)));
+            }
+        }
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        query.with(porId ? Sort.by(direction, "_id") : Sort.by(direction, CREATED_AT, "_id")).limit(size + 1);
+
+        List<Pedido> pedidos = new ArrayList<>(mongoTemplate.find(query, Pedido.class));
+        boolean hasMore = pedidos.size() > size;
+        if (hasMore) {
+            pedidos.remove(size);
+        }
+        if (cursor.backward()) {
+            Collections.reverse(pedidos);
+        }
+
+        boolean hasNext = cursor.backward() || hasMore;
+        boolean hasPrevious = cursor.backward() ? hasMore : !cursor.isFirst();
+        String nextCursor = hasNext && !pedidos.isEmpty() ? toCursor(cursor, pedidos.get(pedidos.size() - 1), false, porId) : null;
+        String prevCursor = hasPrevious && !pedidos.isEmpty() ? toCursor(cursor, pedidos.get(0), true, porId) : null;
+        return new CursorPage<>(pedidos, size, nextCursor, prevCursor);
+    }
+
+    private ObjectId parseId(String id) {
+        if (!ObjectId.isValid(id)) {
+            throw new PedidoBadRequest("Cursor de paginación no válido");
+        }
+        return new ObjectId(id);
+    }
+
+    private LocalDateTime parseCreatedAt(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (RuntimeException e) {
+            throw new PedidoBadRequest("Cursor de paginación no válido");
+        }
+    }
+
+    private String toCursor(Cursor cursor, Pedido pedido, boolean backward, boolean porId) {
+        String id = pedido.getId().toHexString();
+        String value = porId ? id : String.valueOf(pedido.getCreatedAt());
+        return backward ? cursor.previous(id, value).encode() : cursor.next(id, value).encode();
+    }
+}
@@ -0,0 +1,36 @@
+package dev.rest.pedido.repositories;
+
+import dev.rest.pedido.models.Pedido;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+// Crea los índices declarados en Pedido. No se usa auto-index-creation para que sólo se creen los de
+// los documentos que lo necesitan; ensureIndex no hace nada si el índice ya existe.
+@Slf4j
+@Component
+public class PedidoIndexes {
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public PedidoIndexes(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(Pedido.class);
+            new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                    .resolveIndexFor(Pedido.class)
+                    .forEach(indexOps::ensureIndex);
+            log.info("Índices de pedidos comprobados");
+        } catch (RuntimeException e) {
+            log.error("Error creando los índices de pedidos", e);
+        }
+    }
+}
@@ -9,7 +9,7 @@ import org.springframework.stereotype.Repository;
 
 
 @Repository
-public interface PedidoRepository extends MongoRepository<Pedido, ObjectId> {
+public interface PedidoRepository extends MongoRepository<Pedido, ObjectId>, PedidoCursorRepository {
     Page<Pedido> findByIdUsuario(Long idUsuario, Pageable pageable);
 
     boolean existsById(Long id);
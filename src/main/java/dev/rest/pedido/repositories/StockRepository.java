@@ -0,0 +1,56 @@
+package dev.rest.pedido.repositories;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class StockRepository {
+    private static final String DECREMENT_STOCK = "UPDATE funkos SET cantidad = cantidad - ? WHERE id = ? AND cantidad >= ?";
+    private static final String INCREMENT_STOCK = "UPDATE funkos SET cantidad = cantidad + ? WHERE id = ?";
+    private static final String FIND_STOCK = "SELECT cantidad FROM funkos WHERE id = ?";
+    private static final String LOCK_STOCK = "SELECT id, cantidad FROM funkos WHERE id IN (%s) ORDER BY id FOR UPDATE";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public StockRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int[] decrementStock(Map<Long, Integer> cantidades) {
+        return jdbcTemplate.batchUpdate(DECREMENT_STOCK, cantidades.entrySet().stream()
+                .map(cantidad -> new Object[]{cantidad.getValue(), cantidad.getKey(), cantidad.getValue()})
+                .toList());
+    }
+
+    public int[] incrementStock(Map<Long, Integer> cantidades) {
+        return jdbcTemplate.batchUpdate(INCREMENT_STOCK, cantidades.entrySet().stream()
+                .map(cantidad -> new Object[]{cantidad.getValue(), cantidad.getKey()})
+                .toList());
+    }
+
+    public Optional<Integer> findStock(Long id) {
+        return jdbcTemplate.query(FIND_STOCK, (rs, rowNum) -> rs.getInt("cantidad"), id).stream().findFirst();
+    }
+
+    // Bloquea las filas hasta el final de la transacción; siempre en orden de id para no cruzarse con otros lotes
+    public Map<Long, Integer> lockStock(Collection<Long> ids) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (ids.isEmpty()) {
+            return stock;
+        }
+        String marcadores = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query(LOCK_STOCK.formatted(marcadores),
+                (RowCallbackHandler) rs -> stock.put(rs.getLong("id"), rs.getInt("cantidad")),
+                ids.toArray());
+        return stock;
+    }
+}
@@ -0,0 +1,11 @@
+package dev.rest.pedido.services;
+
+import dev.rest.pedido.models.Pedido;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.Map;
+
+// Resultado de guardar un lote: los pedidos guardados y el motivo de cada rechazo
+public record PedidoBatchResult(List<Pedido> guardados, Map<ObjectId, String> rechazados) {
+}
@@ -1,10 +1,15 @@
 package dev.rest.pedido.services;
 
 import dev.rest.pedido.models.Pedido;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
 import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+import java.util.Optional;
+
 public interface PedidoService {
 
     Page<Pedido> findAll(Pageable pageable);
@@ -13,8 +18,12 @@ public interface PedidoService {
 
     Page<Pedido> findByIdUsuario(Long idUsuario, Pageable pageable);
 
+    CursorPage<Pedido> findAll(Optional<Long> idUsuario, Cursor cursor, int size);
+
     Pedido save(Pedido pedido);
 
+    PedidoBatchResult saveAll(List<Pedido> pedidos);
+
     Pedido update(ObjectId idPedido, Pedido pedido);
 
     void delete(ObjectId idPedido);
@@ -6,8 +6,15 @@ import dev.rest.pedido.exceptions.*;
 import dev.rest.pedido.models.LineaPedido;
 import dev.rest.pedido.models.Pedido;
 import dev.rest.pedido.repositories.PedidoRepository;
+import dev.rest.pedido.services.rollups.SalesRollups;
+import dev.rest.pedido.services.saga.PedidoSaga;
+import dev.rest.pedido.services.stock.StockService;
+import dev.rest.pedido.services.stock.ledger.StockLedger;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
@@ -18,6 +25,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -25,10 +40,18 @@ import java.time.LocalDateTime;
 public class PedidoServiceImpl implements PedidoService {
     private final PedidoRepository pedidoRepository;
     private final FunkoRepository funkoRepository;
+    private final StockService stockService;
+    private final PedidoSaga pedidoSaga;
+    private final SalesRollups salesRollups;
+    private final ObjectProvider<StockLedger> stockLedger;
 
-    public PedidoServiceImpl(PedidoRepository pedidoRepository, FunkoRepository funkoRepository) {
+    public PedidoServiceImpl(PedidoRepository pedidoRepository, FunkoRepository funkoRepository, StockService stockService, PedidoSaga pedidoSaga, SalesRollups salesRollups, ObjectProvider<StockLedger> stockLedger) {
         this.pedidoRepository = pedidoRepository;
         this.funkoRepository = funkoRepository;
+        this.stockService = stockService;
+        this.pedidoSaga = pedidoSaga;
+        this.salesRollups = salesRollups;
+        this.stockLedger = stockLedger;
     }
 
     @Override
@@ -38,7 +61,7 @@ public class PedidoServiceImpl implements PedidoService {
     }
 
     @Override
-    @Cacheable(key = "#idPedido")
+    @Cacheable(key = "#idPedido", sync = true)
     public Pedido findById(ObjectId idPedido) {
         log.info("Buscando pedido por id: {}", idPedido);
         return pedidoRepository.findById(idPedido).orElseThrow(() -> new PedidoNotFound(idPedido.toString()));
@@ -51,18 +74,90 @@ public class PedidoServiceImpl implements PedidoService {
     }
 
     @Override
-    @Transactional
+    public CursorPage<Pedido> findAll(Optional<Long> idUsuario, Cursor cursor, int size) {
+        log.info("Buscando pedidos por cursor, idUsuario: {}", idUsuario.orElse(null));
+        return pedidoRepository.findAll(idUsuario, cursor, size);
+    }
+
+    // Postgres y Mongo no comparten transacción: el stock se reserva y se confirma con una saga
+    @Override
     @CachePut(key = "#result.id")
     public Pedido save(Pedido pedido) {
         log.info("Guardando pedido: {}", pedido);
-        checkPedido(pedido);
+        var funkos = checkPedido(pedido);
 
-        var pedidoToSave = reserveStockPedidos(pedido);
+        var pedidoToSave = pedidoSaga.begin(pedido.getId(), StockService.cantidadesPorFunko(pedido.getLineasPedido()),
+                () -> reserveStockPedidos(pedido, funkos));
 
         pedidoToSave.setCreatedAt(LocalDateTime.now());
         pedidoToSave.setUpdatedAt(LocalDateTime.now());
 
-        return pedidoRepository.save(pedidoToSave);
+        Pedido pedidoGuardado;
+        try {
+            pedidoGuardado = pedidoRepository.save(pedidoToSave);
+        } catch (RuntimeException e) {
+            log.error("Error guardando el pedido {}, devolviendo el stock reservado", pedido.getId(), e);
+            pedidoSaga.compensate(pedido.getId());
+            throw e;
+        }
+        pedidoSaga.confirm(pedidoGuardado.getId());
+        salesRollups.add(List.of(pedidoGuardado), funkos);
+        return pedidoGuardado;
+    }
+
+    // Un lote entero con una consulta de funkos, una reserva de stock y una escritura en bloque en Mongo.
+    // Los pedidos que no pasan la validación o no caben en el stock se rechazan sin afectar al resto.
+    @Override
+    public PedidoBatchResult saveAll(List<Pedido> pedidos) {
+        log.info("Guardando lote de {} pedidos", pedidos.size());
+        Map<ObjectId, String> rechazados = new LinkedHashMap<>();
+        var funkos = findFunkosPedidos(pedidos);
+        Map<ObjectId, Map<Long, Integer>> validos = new LinkedHashMap<>();
+        for (Pedido pedido : pedidos) {
+            try {
+                if (pedido.getLineasPedido() == null || pedido.getLineasPedido().isEmpty()) {
+                    throw new PedidoNotItems(pedido.getId().toHexString());
+                }
+                checkLineas(pedido, Map.of(), funkos);
+                validos.put(pedido.getId(), StockService.cantidadesPorFunko(pedido.getLineasPedido()));
+            } catch (PedidoException e) {
+                rechazados.put(pedido.getId(), e.getMessage());
+            }
+        }
+        if (validos.isEmpty()) {
+            return new PedidoBatchResult(List.of(), rechazados);
+        }
+
+        var reservados = pedidoSaga.beginAll(() -> {
+            var sinStock = stockService.reserveAll(validos);
+            sinStock.forEach(idPedido -> rechazados.put(idPedido,
+                    new FunkoNotStock(new ArrayList<>(validos.get(idPedido).keySet())).getMessage()));
+            return pedidos.stream()
+                    .filter(pedido -> validos.containsKey(pedido.getId()) && !sinStock.contains(pedido.getId()))
+                    .toList();
+        });
+        if (reservados.isEmpty()) {
+            return new PedidoBatchResult(List.of(), rechazados);
+        }
+
+        var ahora = LocalDateTime.now();
+        reservados.forEach(pedido -> {
+            calculateTotals(pedido, funkos);
+            pedido.setCreatedAt(ahora);
+            pedido.setUpdatedAt(ahora);
+        });
+        List<Pedido> guardados;
+        try {
+            guardados = pedidoRepository.insert(reservados);
+        } catch (RuntimeException e) {
+            // Con la escritura en bloque a medias se mira pedido a pedido si llegó a Mongo
+            log.error("Error guardando un lote de {} pedidos, revisando sus reservas de stock", reservados.size(), e);
+            reservados.forEach(pedido -> pedidoSaga.recover(pedido.getId()));
+            throw e;
+        }
+        guardados.forEach(pedido -> pedidoSaga.confirm(pedido.getId()));
+        salesRollups.add(guardados, funkos);
+        return new PedidoBatchResult(guardados, rechazados);
     }
 
     @Override
@@ -71,11 +166,20 @@ public class PedidoServiceImpl implements PedidoService {
     public Pedido update(ObjectId idPedido, Pedido pedido) {
         log.info("Actualizando pedido por id: {}", idPedido);
         Pedido pedidoUpdate = pedidoRepository.findById(idPedido).orElseThrow(() -> new PedidoNotFound(idPedido.toString()));
-        returnStockPedidos(pedidoUpdate);
-        checkPedido(pedido);
-        var pedidoToSave = reserveStockPedidos(pedido);
+        var reservado = pedidoUpdate.getLineasPedido() != null
+                ? StockService.cantidadesPorFunko(pedidoUpdate.getLineasPedido())
+                : Map.<Long, Integer>of();
+        var funkos = checkPedido(pedido, reservado);
+        var pedidoToSave = updateStockPedidos(pedido, reservado, funkos);
         pedidoToSave.setUpdatedAt(LocalDateTime.now());
-        return pedidoRepository.save(pedidoToSave);
+        boolean bloqueado = salesRollups.lockClosedDay(pedidoUpdate);
+        try {
+            var pedidoGuardado = pedidoRepository.save(pedidoToSave);
+            salesRollups.update(pedidoUpdate, pedidoGuardado, funkos);
+            return pedidoGuardado;
+        } finally {
+            salesRollups.unlockClosedDay(pedidoUpdate, bloqueado);
+        }
     }
 
     @Override
@@ -85,40 +189,59 @@ public class PedidoServiceImpl implements PedidoService {
         log.info("Borrando pedido por id: {}", idPedido);
         var pedidoToDelete = pedidoRepository.findById(idPedido).orElseThrow(() -> new PedidoNotFound(idPedido.toString()));
         returnStockPedidos(pedidoToDelete);
-        pedidoRepository.deleteById(idPedido);
+        boolean bloqueado = salesRollups.lockClosedDay(pedidoToDelete);
+        try {
+            pedidoRepository.deleteById(idPedido);
+            salesRollups.remove(pedidoToDelete);
+        } finally {
+            salesRollups.unlockClosedDay(pedidoToDelete, bloqueado);
+        }
     }
 
     public Pedido returnStockPedidos(Pedido pedido) {
         log.info("Retornando stock del pedido: {}", pedido);
-        if (pedido.getLineasPedido() != null) {
-            pedido.getLineasPedido().forEach(lineaPedido -> {
-                Funko funko = funkoRepository.findById(lineaPedido.getIdFunko()).get();
-
-                funko.setCantidad(funko.getCantidad() + lineaPedido.getCantidad());
-
-                funkoRepository.save(funko);
-            });
+        if (pedido.getLineasPedido() != null && !pedido.getLineasPedido().isEmpty()) {
+            stockService.release(pedido.getLineasPedido());
         }
         return pedido;
     }
 
-    public Pedido reserveStockPedidos(Pedido pedido) {
+    public Pedido reserveStockPedidos(Pedido pedido, Map<Long, Funko> funkos) {
         log.info("Reservando stock del pedido: {}", pedido);
 
         if (pedido.getLineasPedido() == null || pedido.getLineasPedido().isEmpty()) {
             throw new PedidoNotItems(pedido.getId().toHexString());
         }
-        pedido.getLineasPedido().forEach(lineaPedido -> {
-            var funko = funkoRepository.findById(lineaPedido.getIdFunko()).get();
+        var sinStock = stockService.reserve(pedido.getLineasPedido());
+        if (!sinStock.isEmpty()) {
+            throw new FunkoNotStock(sinStock);
+        }
+        return calculateTotals(pedido, funkos);
+    }
 
-            funko.setCantidad(funko.getCantidad() - lineaPedido.getCantidad());
+    public Pedido updateStockPedidos(Pedido pedido, Map<Long, Integer> reservado, Map<Long, Funko> funkos) {
+        log.info("Actualizando stock del pedido: {}", pedido);
 
-            funkoRepository.save(funko);
+        if (pedido.getLineasPedido() == null || pedido.getLineasPedido().isEmpty()) {
+            throw new PedidoNotItems(pedido.getId().toHexString());
+        }
+        var diferencias = StockService.cantidadesPorFunko(pedido.getLineasPedido());
+        reservado.forEach((idFunko, cantidad) -> diferencias.merge(idFunko, -cantidad, Integer::sum));
+        diferencias.values().removeIf(cantidad -> cantidad == 0);
+        if (!diferencias.isEmpty()) {
+            var sinStock = stockService.adjust(diferencias);
+            if (!sinStock.isEmpty()) {
+                throw new FunkoNotStock(sinStock);
+            }
+        }
+        return calculateTotals(pedido, funkos);
+    }
 
-            lineaPedido.setTotal(lineaPedido.getCantidad() * lineaPedido.getPrecioFunko());
-        });
+    private Pedido calculateTotals(Pedido pedido, Map<Long, Funko> funkos) {
+        pedido.getLineasPedido().forEach(lineaPedido ->
+                lineaPedido.setTotal(lineaPedido.getCantidad() * funkos.get(lineaPedido.getIdFunko()).getPrecio()));
         var total = pedido.getLineasPedido().stream()
-                .map(lineaPedido -> lineaPedido.getCantidad() * lineaPedido.getPrecioFunko())
+                .map(LineaPedido::getTotal)
                 .reduce(0.0, Double::sum);
 
         var totalItems = pedido.getLineasPedido().stream()
@@ -132,16 +255,32 @@ public class PedidoServiceImpl implements PedidoService {
     }
 
 
-    public void checkPedido(Pedido pedido) {
+    public Map<Long, Funko> checkPedido(Pedido pedido) {
+        return checkPedido(pedido, Map.of());
+    }
+
+    public Map<Long, Funko> checkPedido(Pedido pedido, Map<Long, Integer> reservado) {
         log.info("Comprobando pedido: {}", pedido);
         if (pedido.getLineasPedido() == null || pedido.getLineasPedido().isEmpty()) {
             throw new PedidoNotItems(pedido.getId().toHexString());
         }
+        var funkos = findFunkosPedidos(List.of(pedido));
+        checkLineas(pedido, reservado, funkos);
+        return funkos;
+    }
+
+    // Con el ledger activo la fila del funko va por detrás hasta el siguiente volcado: el stock se lee del ledger
+    private void checkLineas(Pedido pedido, Map<Long, Integer> reservado, Map<Long, Funko> funkos) {
+        StockLedger ledger = stockLedger.getIfAvailable();
         pedido.getLineasPedido().forEach(lineaPedido -> {
-            var funko = funkoRepository.findById(lineaPedido.getIdFunko())
-                    .orElseThrow(() -> new FunkoNotFound(lineaPedido.getIdFunko()));
+            var funko = funkos.get(lineaPedido.getIdFunko());
+            if (funko == null) {
+                throw new FunkoNotFound(lineaPedido.getIdFunko());
+            }
 
-            if (funko.getCantidad() < lineaPedido.getCantidad() && lineaPedido.getCantidad() > 0) {
+            var stock = ledger != null ? ledger.stock(funko.getId()) : funko.getCantidad();
+            var disponible = stock + reservado.getOrDefault(lineaPedido.getIdFunko(), 0);
+            if (disponible < lineaPedido.getCantidad() && lineaPedido.getCantidad() > 0) {
                 throw new FunkoNotStock(lineaPedido.getIdFunko());
             }
             if (!funko.getPrecio().equals(lineaPedido.getPrecioFunko())) {
@@ -149,4 +288,15 @@ public class PedidoServiceImpl implements PedidoService {
             }
         });
     }
+
+    private Map<Long, Funko> findFunkosPedidos(List<Pedido> pedidos) {
+        var ids = pedidos.stream()
+                .filter(pedido -> pedido.getLineasPedido() != null)
+                .flatMap(pedido -> pedido.getLineasPedido().stream())
+                .map(LineaPedido::getIdFunko)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return funkoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Funko::getId, Function.identity()));
+    }
 }
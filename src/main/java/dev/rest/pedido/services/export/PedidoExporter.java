@@ -0,0 +1,130 @@
+package dev.rest.pedido.services.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.rest.pedido.models.LineaPedido;
+import dev.rest.pedido.models.Pedido;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Exportación de pedidos recorriendo un cursor de Mongo: se escribe cada pedido según llega y cada
+// batch-size pedidos se vacía el buffer hacia el cliente, así que la memoria no depende del tamaño.
+// El orden es el de _id, que siempre tiene índice, para que Mongo no tenga que ordenar en memoria.
+@Slf4j
+@Component
+public class PedidoExporter {
+    private static final String CABECERA_CSV = "id,idUsuario,cliente,email,createdAt,idFunko,cantidad,precioFunko,totalLinea,totalPedido";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+    private final Counter exportados;
+
+    @Autowired
+    public PedidoExporter(MongoTemplate mongoTemplate,
+                          ObjectMapper mapper,
+                          @Value("${pedidos.export.batch-size:500}") int batchSize,
+                          MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.exportados = Counter.builder("pedidos.export.exported").register(meterRegistry);
+    }
+
+    // desde y hasta son días incluidos, por fecha de creación. Devuelve el número de pedidos escritos.
+    public long export(Optional<Long> idUsuario, Optional<LocalDate> desde, Optional<LocalDate> hasta,
+                       PedidoExportFormat formato, OutputStream salida) throws IOException {
+        log.info("Exportando pedidos en {}: usuario {}, desde {}, hasta {}", formato, idUsuario.orElse(null),
+                desde.orElse(null), hasta.orElse(null));
+        Query query = new Query().with(Sort.by("_id"));
+        idUsuario.ifPresent(id -> query.addCriteria(Criteria.where("idUsuario").is(id)));
+        if (desde.isPresent() || hasta.isPresent()) {
+            Criteria creacion = Criteria.where("createdAt");
+            desde.ifPresent(dia -> creacion.gte(dia.atStartOfDay()));
+            hasta.ifPresent(dia -> creacion.lt(dia.plusDays(1).atStartOfDay()));
+            query.addCriteria(creacion);
+        }
+        query.cursorBatchSize(batchSize);
+        // Un cliente lento puede tener el cursor parado más de lo que Mongo espera; se cierra siempre al acabar
+        query.noCursorTimeout();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 64 * 1024);
+        long total = 0;
+        try (Stream<Pedido> pedidos = mongoTemplate.stream(query, Pedido.class)) {
+            if (formato == PedidoExportFormat.CSV) {
+                writer.write(CABECERA_CSV);
+                writer.write('\n');
+            }
+            Iterator<Pedido> cursor = pedidos.iterator();
+            while (cursor.hasNext()) {
+                Pedido pedido = cursor.next();
+                if (formato == PedidoExportFormat.CSV) {
+                    writeCsv(writer, pedido);
+                } else {
+                    writer.write(mapper.writeValueAsString(pedido));
+                    writer.write('\n');
+                }
+                if (++total % batchSize == 0) {
+                    writer.flush();
+                    exportados.increment(batchSize);
+                }
+            }
+        }
+        writer.flush();
+        exportados.increment(total % batchSize);
+        log.info("Exportados {} pedidos en {}", total, formato);
+        return total;
+    }
+
+    // Una fila por línea de pedido con los datos del pedido repetidos
+    private void writeCsv(Writer writer, Pedido pedido) throws IOException {
+        List<LineaPedido> lineas = pedido.getLineasPedido() != null && !pedido.getLineasPedido().isEmpty()
+                ? pedido.getLineasPedido()
+                : Collections.singletonList(null);
+        for (LineaPedido linea : lineas) {
+            writer.write(String.join(",",
+                    campo(pedido.getId() != null ? pedido.getId().toHexString() : null),
+                    campo(pedido.getIdUsuario()),
+                    campo(pedido.getCliente() != null ? pedido.getCliente().nombreCompleto() : null),
+                    campo(pedido.getCliente() != null ? pedido.getCliente().email() : null),
+                    campo(pedido.getCreatedAt()),
+                    campo(linea != null ? linea.getIdFunko() : null),
+                    campo(linea != null ? linea.getCantidad() : null),
+                    campo(linea != null ? linea.getPrecioFunko() : null),
+                    campo(linea != null ? linea.getTotal() : null),
+                    campo(pedido.getTotal())));
+            writer.write('\n');
+        }
+    }
+
+    private static String campo(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.indexOf(',') < 0 && texto.indexOf('"') < 0 && texto.indexOf('\n') < 0 && texto.indexOf('\r') < 0) {
+            return texto;
+        }
+        return '"' + texto.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,186 @@
+package dev.rest.pedido.services.intake;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.rest.pedido.exceptions.PedidoIntakeFull;
+import dev.rest.pedido.models.Pedido;
+import dev.rest.pedido.services.PedidoBatchResult;
+import dev.rest.pedido.services.PedidoService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Recepción asíncrona de pedidos: la petición sólo encola el pedido y responde 202 con la URL de estado.
+// Un worker agrupa los pedidos en lotes (hasta batch-size o hasta window-ms desde el primero) y guarda
+// cada lote con PedidoService.saveAll: una reserva de stock y una escritura en bloque en Mongo por lote.
+// Con async=false sólo se encolan las peticiones que lo piden con la cabecera Prefer: respond-async.
+// Es de mejor esfuerzo y de un solo nodo: la cola y los estados están en memoria, así que el estado sólo se
+// consulta en el nodo que recibió el pedido y una caída del proceso pierde lo encolado. Al parar se deja de
+// aceptar pedidos y se procesa toda la cola antes de salir.
+@Slf4j
+@Component
+public class PedidoIntake {
+    private static final String RESPOND_ASYNC = "respond-async";
+
+    private final PedidoService pedidoService;
+    private final boolean async;
+    private final int batchSize;
+    private final long windowNanos;
+    private final long drainTimeoutMs;
+    private final BlockingQueue<Pedido> cola;
+    private final Cache<ObjectId, PedidoIntakeStatus> estados;
+    private final Counter lotes;
+    private final Counter rechazados;
+    private final Counter llena;
+    private final DistributionSummary tamanoLote;
+    private volatile boolean running = true;
+    private Thread worker;
+
+    @Autowired
+    public PedidoIntake(PedidoService pedidoService,
+                        @Value("${pedidos.intake.async:false}") boolean async,
+                        @Value("${pedidos.intake.capacity:10000}") int capacidad,
+                        @Value("${pedidos.intake.batch-size:200}") int batchSize,
+                        @Value("${pedidos.intake.window-ms:20}") long windowMs,
+                        @Value("${pedidos.intake.status-ttl:600000}") long statusTtlMs,
+                        @Value("${pedidos.intake.drain-timeout:60000}") long drainTimeoutMs,
+                        MeterRegistry meterRegistry) {
+        this.pedidoService = pedidoService;
+        this.async = async;
+        this.batchSize = Math.max(1, batchSize);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.drainTimeoutMs = drainTimeoutMs;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.estados = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(statusTtlMs))
+                .build();
+        Gauge.builder("pedidos.intake.queue", cola, BlockingQueue::size)
+                .description("Pedidos pendientes de procesar")
+                .register(meterRegistry);
+        this.lotes = Counter.builder("pedidos.intake.batches").register(meterRegistry);
+        this.rechazados = Counter.builder("pedidos.intake.rejected").register(meterRegistry);
+        this.llena = Counter.builder("pedidos.intake.full")
+                .description("Pedidos rechazados con la cola llena")
+                .register(meterRegistry);
+        this.tamanoLote = DistributionSummary.builder("pedidos.intake.batch.size").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::work, "pedidos-intake");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Recepción de pedidos iniciada: lotes de hasta {} pedidos, ventana {} ms{}",
+                batchSize, TimeUnit.NANOSECONDS.toMillis(windowNanos), async ? ", modo asíncrono" : "");
+    }
+
+    // Se procesan todos los pedidos que quedan en la cola antes de parar. Si el worker no ha terminado en
+    // drain-timeout se avisa; lo que entre entre la parada del worker y la del nodo se procesa aquí mismo
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join(drainTimeoutMs);
+            if (worker.isAlive()) {
+                log.error("La recepción de pedidos no ha terminado en {} ms, quedan {} pedidos encolados", drainTimeoutMs, cola.size());
+                return;
+            }
+        }
+        List<Pedido> restantes = new ArrayList<>();
+        while (cola.drainTo(restantes, batchSize) > 0) {
+            process(restantes);
+            restantes = new ArrayList<>();
+        }
+        log.info("Recepción de pedidos parada con la cola vacía");
+    }
+
+    public boolean isAsync(String prefer) {
+        return async || (prefer != null && prefer.contains(RESPOND_ASYNC));
+    }
+
+    public PedidoIntakeStatus submit(Pedido pedido) {
+        if (!running) {
+            llena.increment();
+            throw new PedidoIntakeFull();
+        }
+        log.info("Encolando pedido: {}", pedido.getId());
+        PedidoIntakeStatus estado = PedidoIntakeStatus.of(pedido.getId(), PedidoIntakeStatus.Estado.QUEUED);
+        estados.put(pedido.getId(), estado);
+        if (!cola.offer(pedido)) {
+            estados.invalidate(pedido.getId());
+            llena.increment();
+            throw new PedidoIntakeFull();
+        }
+        return estado;
+    }
+
+    public Optional<PedidoIntakeStatus> status(ObjectId idPedido) {
+        return Optional.ofNullable(estados.getIfPresent(idPedido));
+    }
+
+    private void work() {
+        while (running || !cola.isEmpty()) {
+            try {
+                Pedido primero = cola.poll(100, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                List<Pedido> lote = new ArrayList<>(batchSize);
+                lote.add(primero);
+                long limite = System.nanoTime() + windowNanos;
+                while (lote.size() < batchSize) {
+                    cola.drainTo(lote, batchSize - lote.size());
+                    long restante = limite - System.nanoTime();
+                    if (lote.size() >= batchSize || restante <= 0 || !running) {
+                        break;
+                    }
+                    Pedido siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                }
+                process(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void process(List<Pedido> lote) {
+        lote.forEach(pedido -> estados.put(pedido.getId(), PedidoIntakeStatus.of(pedido.getId(), PedidoIntakeStatus.Estado.PROCESSING)));
+        lotes.increment();
+        tamanoLote.record(lote.size());
+        try {
+            PedidoBatchResult resultado = pedidoService.saveAll(lote);
+            resultado.guardados().forEach(pedido ->
+                    estados.put(pedido.getId(), PedidoIntakeStatus.of(pedido.getId(), PedidoIntakeStatus.Estado.CREATED)));
+            resultado.rechazados().forEach((idPedido, motivo) ->
+                    estados.put(idPedido, PedidoIntakeStatus.of(idPedido, PedidoIntakeStatus.Estado.REJECTED, motivo)));
+            rechazados.increment(resultado.rechazados().size());
+            log.info("Lote de {} pedidos procesado: {} guardados, {} rechazados",
+                    lote.size(), resultado.guardados().size(), resultado.rechazados().size());
+        } catch (RuntimeException e) {
+            log.error("Error procesando un lote de {} pedidos", lote.size(), e);
+            lote.forEach(pedido -> estados.put(pedido.getId(),
+                    PedidoIntakeStatus.of(pedido.getId(), PedidoIntakeStatus.Estado.FAILED, e.getMessage())));
+        }
+    }
+}
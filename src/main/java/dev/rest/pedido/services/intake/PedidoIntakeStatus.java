@@ -0,0 +1,18 @@
+package dev.rest.pedido.services.intake;
+
+import org.bson.types.ObjectId;
+
+public record PedidoIntakeStatus(String id, Estado estado, String motivo) {
+
+    public enum Estado {
+        QUEUED, PROCESSING, CREATED, REJECTED, FAILED, UNKNOWN
+    }
+
+    static PedidoIntakeStatus of(ObjectId id, Estado estado) {
+        return new PedidoIntakeStatus(id.toHexString(), estado, null);
+    }
+
+    static PedidoIntakeStatus of(ObjectId id, Estado estado, String motivo) {
+        return new PedidoIntakeStatus(id.toHexString(), estado, motivo);
+    }
+}
@@ -0,0 +1,42 @@
+package dev.rest.pedido.services.rollups;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+// Ventas de un día ya sumadas por funko, por categoría o en total. El id es tipo:clave:dia para que
+// los incrementos se hagan con un upsert por documento; dia va como yyyy-MM-dd.
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Document("sales_rollups")
+@TypeAlias("SalesRollup")
+public class SalesRollup {
+    @Id
+    private String id;
+
+    private Tipo tipo;
+
+    private String clave;
+
+    private String dia;
+
+    private long unidades;
+
+    private double importe;
+
+    private long pedidos;
+
+    public static String id(Tipo tipo, String clave, String dia) {
+        return tipo.name() + ":" + clave + ":" + dia;
+    }
+
+    public enum Tipo {
+        FUNKO, CATEGORIA, TOTAL
+    }
+}
@@ -0,0 +1,388 @@
+package dev.rest.pedido.services.rollups;
+
+import dev.rest.funkos.models.Funko;
+import dev.rest.funkos.repositories.FunkoRepository;
+import dev.rest.pedido.models.LineaPedido;
+import dev.rest.pedido.models.Pedido;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// Ventas por día ya agregadas, para no recorrer la colección de pedidos en cada consulta.
+// Cada escritura de pedidos suma su diferencia con un $inc con upsert por documento, todos en un único
+// bulk. Si falla el pedido ya está guardado: el día queda pendiente y cada reconcile-interval se recalcula
+// en cuanto está cerrado.
+// rebuild recalcula por tramos de días en paralelo y sustituye los documentos de cada tramo. Sólo recalcula
+// días cerrados (anteriores a hoy), porque los pedidos nuevos siempre caen en el día de hoy; los cambios y
+// borrados de pedidos de días cerrados esperan, con lockClosedDay, a que termine el tramo que los incluye.
+// El bloqueo es de este proceso: con varias instancias rebuild sigue siendo para horas tranquilas.
+@Slf4j
+@Component
+public class SalesRollups {
+    private static final String TOTAL = "total";
+    private static final int FRANJAS = 64;
+
+    private final MongoTemplate mongoTemplate;
+    private final FunkoRepository funkoRepository;
+    private final int rebuildThreads;
+    private final int rebuildChunkDays;
+    private final int batchSize;
+    private final long reconcileInterval;
+    private final Counter errores;
+    private final ReentrantReadWriteLock[] bloqueos = new ReentrantReadWriteLock[FRANJAS];
+    private final Set<LocalDate> pendientes = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public SalesRollups(MongoTemplate mongoTemplate,
+                        FunkoRepository funkoRepository,
+                        @Value("${pedidos.rollups.rebuild-threads:4}") int rebuildThreads,
+                        @Value("${pedidos.rollups.rebuild-chunk-days:7}") int rebuildChunkDays,
+                        @Value("${pedidos.rollups.batch-size:1000}") int batchSize,
+                        @Value("${pedidos.rollups.reconcile-interval:600000}") long reconcileInterval,
+                        MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.funkoRepository = funkoRepository;
+        this.rebuildThreads = rebuildThreads;
+        this.rebuildChunkDays = rebuildChunkDays;
+        this.batchSize = batchSize;
+        this.reconcileInterval = reconcileInterval;
+        this.errores = Counter.builder("pedidos.rollups.errors")
+                .description("Incrementos de ventas que no se han podido guardar")
+                .register(meterRegistry);
+        Gauge.builder("pedidos.rollups.pending-days", pendientes, Set::size)
+                .description("Días con incrementos de ventas perdidos pendientes de recalcular")
+                .register(meterRegistry);
+        for (int i = 0; i < FRANJAS; i++) {
+            bloqueos[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            mongoTemplate.indexOps(SalesRollup.class).ensureIndex(new Index()
+                    .on("tipo", Sort.Direction.ASC)
+                    .on("clave", Sort.Direction.ASC)
+                    .on("dia", Sort.Direction.ASC));
+        } catch (RuntimeException e) {
+            log.error("Error creando el índice de las ventas agregadas", e);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pedidos-rollups-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcile, reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Para cambiar o borrar un pedido: si es de un día cerrado se espera a que no se esté recalculando ese día
+    // y se bloquea hasta unlockClosedDay, que recibe lo que devuelve este método.
+    public boolean lockClosedDay(Pedido pedido) {
+        if (pedido.getCreatedAt() == null || !pedido.getCreatedAt().toLocalDate().isBefore(LocalDate.now())) {
+            return false;
+        }
+        bloqueo(pedido.getCreatedAt().toLocalDate()).readLock().lock();
+        return true;
+    }
+
+    public void unlockClosedDay(Pedido pedido, boolean bloqueado) {
+        if (bloqueado) {
+            bloqueo(pedido.getCreatedAt().toLocalDate()).readLock().unlock();
+        }
+    }
+
+    public void add(Collection<Pedido> pedidos, Map<Long, Funko> funkos) {
+        Map<Long, String> categorias = categorias(pedidos, funkos);
+        Map<String, Acumulado> incrementos = new HashMap<>();
+        pedidos.forEach(pedido -> sumar(incrementos, pedido, categorias, 1));
+        apply(incrementos);
+    }
+
+    public void update(Pedido anterior, Pedido nuevo, Map<Long, Funko> funkos) {
+        Map<Long, String> categorias = categorias(List.of(anterior, nuevo), funkos);
+        Map<String, Acumulado> incrementos = new HashMap<>();
+        sumar(incrementos, anterior, categorias, -1);
+        sumar(incrementos, nuevo, categorias, 1);
+        apply(incrementos);
+    }
+
+    public void remove(Pedido pedido) {
+        Map<Long, String> categorias = categorias(List.of(pedido), Map.of());
+        Map<String, Acumulado> incrementos = new HashMap<>();
+        sumar(incrementos, pedido, categorias, -1);
+        apply(incrementos);
+    }
+
+    public List<SalesRollup> find(SalesRollup.Tipo tipo, Optional<String> clave, LocalDate desde, LocalDate hasta) {
+        Criteria criterio = Criteria.where("tipo").is(tipo);
+        clave.ifPresent(valor -> criterio.and("clave").is(valor));
+        criterio.and("dia").gte(desde.toString()).lte(hasta.toString());
+        return mongoTemplate.find(new Query(criterio).with(Sort.by("clave", "dia")), SalesRollup.class);
+    }
+
+    // Devuelve el número de documentos escritos. El día de hoy no se recalcula: sigue recibiendo pedidos
+    public int rebuild(LocalDate desde, LocalDate hasta) {
+        LocalDate ayer = LocalDate.now().minusDays(1);
+        if (hasta.isAfter(ayer)) {
+            log.warn("Sólo se recalculan días cerrados: el recálculo acaba el {} en lugar del {}", ayer, hasta);
+            hasta = ayer;
+        }
+        if (desde.isAfter(hasta)) {
+            return 0;
+        }
+        log.info("Recalculando las ventas agregadas del {} al {}", desde, hasta);
+        Map<Long, String> categorias = categorias();
+        AtomicInteger hilos = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads, runnable -> {
+            Thread thread = new Thread(runnable, "pedidos-rollups-" + hilos.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Integer>> tramos = new ArrayList<>();
+            for (LocalDate inicio = desde; !inicio.isAfter(hasta); inicio = inicio.plusDays(rebuildChunkDays)) {
+                LocalDate primero = inicio;
+                LocalDate ultimo = inicio.plusDays(rebuildChunkDays - 1L).isAfter(hasta) ? hasta : inicio.plusDays(rebuildChunkDays - 1L);
+                tramos.add(executor.submit(() -> rebuild(primero, ultimo, categorias)));
+            }
+            int documentos = 0;
+            for (Future<Integer> tramo : tramos) {
+                documentos += tramo.get();
+            }
+            log.info("Ventas agregadas recalculadas: {} documentos en {} tramos", documentos, tramos.size());
+            return documentos;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error recalculando las ventas agregadas", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido recalculando las ventas agregadas", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Recalcula los días cerrados cuyos incrementos han fallado; los de hoy esperan a que el día se cierre
+    public int reconcile() {
+        LocalDate hoy = LocalDate.now();
+        List<LocalDate> dias = pendientes.stream().filter(dia -> dia.isBefore(hoy)).sorted().toList();
+        if (dias.isEmpty()) {
+            return 0;
+        }
+        int documentos = 0;
+        try {
+            Map<Long, String> categorias = categorias();
+            for (LocalDate dia : dias) {
+                pendientes.remove(dia);
+                try {
+                    documentos += rebuild(dia, dia, categorias);
+                } catch (RuntimeException e) {
+                    pendientes.add(dia);
+                    log.error("Error recalculando las ventas agregadas del {}, se reintentará", dia, e);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Error cargando las categorías para recalcular las ventas agregadas", e);
+        }
+        log.info("Recalculadas las ventas agregadas de {} días con incrementos perdidos", dias.size());
+        return documentos;
+    }
+
+    // Un tramo lee sus pedidos con un cursor y sólo escribe documentos de sus días, así que no se pisa con otros.
+    // Mientras tanto no se pueden cambiar ni borrar pedidos de esos días.
+    private int rebuild(LocalDate primero, LocalDate ultimo, Map<Long, String> categorias) {
+        Set<Integer> franjas = new TreeSet<>();
+        for (LocalDate dia = primero; !dia.isAfter(ultimo); dia = dia.plusDays(1)) {
+            franjas.add(franja(dia));
+        }
+        franjas.forEach(franja -> bloqueos[franja].writeLock().lock());
+        try {
+            return replace(primero, ultimo, categorias);
+        } finally {
+            franjas.forEach(franja -> bloqueos[franja].writeLock().unlock());
+        }
+    }
+
+    private int replace(LocalDate primero, LocalDate ultimo, Map<Long, String> categorias) {
+        Map<String, Acumulado> acumulados = new HashMap<>();
+        Query pedidos = new Query(Criteria.where("createdAt")
+                .gte(primero.atStartOfDay())
+                .lt(ultimo.plusDays(1).atStartOfDay()));
+        pedidos.cursorBatchSize(batchSize);
+        try (Stream<Pedido> cursor = mongoTemplate.stream(pedidos, Pedido.class)) {
+            cursor.forEach(pedido -> sumar(acumulados, pedido, categorias, 1));
+        }
+        acumulados.values().removeIf(Acumulado::vacio);
+        mongoTemplate.remove(new Query(Criteria.where("dia").gte(primero.toString()).lte(ultimo.toString())), SalesRollup.class);
+        if (!acumulados.isEmpty()) {
+            mongoTemplate.insert(acumulados.entrySet().stream()
+                    .map(acumulado -> acumulado.getValue().toRollup(acumulado.getKey()))
+                    .toList(), SalesRollup.class);
+        }
+        return acumulados.size();
+    }
+
+    private void apply(Map<String, Acumulado> incrementos) {
+        incrementos.values().removeIf(Acumulado::vacio);
+        if (incrementos.isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class);
+            incrementos.forEach((id, acumulado) -> bulk.upsert(
+                    new Query(Criteria.where("_id").is(id)),
+                    new Update()
+                            .inc("unidades", acumulado.unidades)
+                            .inc("importe", acumulado.importe)
+                            .inc("pedidos", acumulado.pedidos)
+                            .setOnInsert("tipo", acumulado.tipo)
+                            .setOnInsert("clave", acumulado.clave)
+                            .setOnInsert("dia", acumulado.dia)));
+            bulk.execute();
+        } catch (RuntimeException e) {
+            errores.increment();
+            incrementos.values().forEach(acumulado -> pendientes.add(LocalDate.parse(acumulado.dia)));
+            log.error("Error actualizando {} documentos de ventas agregadas, se recalcularán sus días", incrementos.size(), e);
+        }
+    }
+
+    private ReentrantReadWriteLock bloqueo(LocalDate dia) {
+        return bloqueos[franja(dia)];
+    }
+
+    private static int franja(LocalDate dia) {
+        return (int) Math.floorMod(dia.toEpochDay(), (long) FRANJAS);
+    }
+
+    private Map<Long, String> categorias() {
+        Map<Long, String> categorias = new HashMap<>();
+        funkoRepository.findAll().forEach(funko -> {
+            if (funko.getCategoria() != null) {
+                categorias.put(funko.getId(), funko.getCategoria().getName());
+            }
+        });
+        return categorias;
+    }
+
+    // Un pedido cuenta una vez en cada documento que toca, aunque tenga varias líneas del mismo funko
+    private void sumar(Map<String, Acumulado> acumulados, Pedido pedido, Map<Long, String> categorias, int signo) {
+        if (pedido.getLineasPedido() == null || pedido.getCreatedAt() == null) {
+            return;
+        }
+        String dia = pedido.getCreatedAt().toLocalDate().toString();
+        Set<Acumulado> tocados = new HashSet<>();
+        for (LineaPedido linea : pedido.getLineasPedido()) {
+            List<Acumulado> destinos = new ArrayList<>();
+            destinos.add(acumulado(acumulados, SalesRollup.Tipo.TOTAL, TOTAL, dia));
+            if (linea.getIdFunko() != null) {
+                destinos.add(acumulado(acumulados, SalesRollup.Tipo.FUNKO, linea.getIdFunko().toString(), dia));
+                String categoria = categorias.get(linea.getIdFunko());
+                if (categoria != null) {
+                    destinos.add(acumulado(acumulados, SalesRollup.Tipo.CATEGORIA, categoria, dia));
+                }
+            }
+            for (Acumulado destino : destinos) {
+                destino.unidades += (long) signo * linea.getCantidad();
+                destino.importe += signo * linea.getTotal();
+                tocados.add(destino);
+            }
+        }
+        tocados.forEach(destino -> destino.pedidos += signo);
+    }
+
+    private static Acumulado acumulado(Map<String, Acumulado> acumulados, SalesRollup.Tipo tipo, String clave, String dia) {
+        return acumulados.computeIfAbsent(SalesRollup.id(tipo, clave, dia), id -> new Acumulado(tipo, clave, dia));
+    }
+
+    // Categoría de cada funko de los pedidos; los que no vienen en funkos se buscan de una vez
+    private Map<Long, String> categorias(Collection<Pedido> pedidos, Map<Long, Funko> funkos) {
+        Map<Long, String> categorias = new HashMap<>();
+        Set<Long> faltan = new HashSet<>();
+        pedidos.stream()
+                .filter(pedido -> pedido.getLineasPedido() != null)
+                .flatMap(pedido -> pedido.getLineasPedido().stream())
+                .map(LineaPedido::getIdFunko)
+                .filter(idFunko -> idFunko != null && !funkos.containsKey(idFunko))
+                .forEach(faltan::add);
+        List<Funko> todos = new ArrayList<>(funkos.values());
+        if (!faltan.isEmpty()) {
+            todos.addAll(funkoRepository.findAllById(faltan));
+        }
+        todos.forEach(funko -> {
+            if (funko.getCategoria() != null) {
+                categorias.put(funko.getId(), funko.getCategoria().getName());
+            }
+        });
+        return categorias;
+    }
+
+    private static final class Acumulado {
+        private final SalesRollup.Tipo tipo;
+        private final String clave;
+        private final String dia;
+        private long unidades;
+        private double importe;
+        private long pedidos;
+
+        private Acumulado(SalesRollup.Tipo tipo, String clave, String dia) {
+            this.tipo = tipo;
+            this.clave = clave;
+            this.dia = dia;
+        }
+
+        private boolean vacio() {
+            return unidades == 0 && importe == 0 && pedidos == 0;
+        }
+
+        private SalesRollup toRollup(String id) {
+            return SalesRollup.builder()
+                    .id(id)
+                    .tipo(tipo)
+                    .clave(clave)
+                    .dia(dia)
+                    .unidades(unidades)
+                    .importe(importe)
+                    .pedidos(pedidos)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package dev.rest.pedido.services.saga;
+
+import dev.rest.pedido.models.Pedido;
+import dev.rest.pedido.repositories.PedidoRepository;
+import dev.rest.pedido.services.stock.StockService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Saga para crear un pedido entre Postgres (stock) y Mongo (pedido), que no comparten transacción:
+//  1. begin: en una transacción de Postgres se descuenta el stock y se guarda la reserva PENDING.
+//  2. el servicio guarda el pedido en Mongo.
+//  3. confirm: la reserva pasa a CONFIRMED. Las confirmaciones se agrupan y se escriben en un solo
+//     UPDATE cada confirm-interval, fuera del camino de la petición.
+//  Si Mongo falla se compensa al momento (se devuelve el stock y la reserva queda COMPENSATED).
+//  Si el nodo cae entre medias, el barrido revisa las reservas PENDING con más de timeout: si el pedido
+//  está en Mongo se confirman y si no se compensan. El timeout tiene que ser mayor que lo que pueda
+//  tardar una escritura en Mongo.
+@Slf4j
+@Component
+public class PedidoSaga {
+    private final StockService stockService;
+    private final StockReservationRepository reservationRepository;
+    private final PedidoRepository pedidoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long confirmInterval;
+    private final long sweepInterval;
+    private final long timeout;
+    private final int sweepBatchSize;
+    private final Queue<String> porConfirmar = new ConcurrentLinkedQueue<>();
+    private final Counter confirmadas;
+    private final Counter compensadas;
+    private final Counter recuperadas;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public PedidoSaga(StockService stockService,
+                      StockReservationRepository reservationRepository,
+                      PedidoRepository pedidoRepository,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${pedidos.saga.confirm-interval:50}") long confirmInterval,
+                      @Value("${pedidos.saga.sweep-interval:30000}") long sweepInterval,
+                      @Value("${pedidos.saga.timeout:60000}") long timeout,
+                      @Value("${pedidos.saga.sweep-batch-size:100}") int sweepBatchSize,
+                      MeterRegistry meterRegistry) {
+        this.stockService = stockService;
+        this.reservationRepository = reservationRepository;
+        this.pedidoRepository = pedidoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.confirmInterval = confirmInterval;
+        this.sweepInterval = sweepInterval;
+        this.timeout = timeout;
+        this.sweepBatchSize = sweepBatchSize;
+        this.confirmadas = Counter.builder("pedidos.saga.confirmed").register(meterRegistry);
+        this.compensadas = Counter.builder("pedidos.saga.compensated").register(meterRegistry);
+        this.recuperadas = Counter.builder("pedidos.saga.recovered")
+                .description("Reservas pendientes resueltas por el barrido")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pedidos-saga");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushConfirmations, confirmInterval, confirmInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        flushConfirmations();
+    }
+
+    // reserva hace el descuento de stock; si lanza una excepción no queda nada escrito
+    public <T> T begin(ObjectId idPedido, Map<Long, Integer> cantidades, Supplier<T> reserva) {
+        return transactionTemplate.execute(status -> {
+            T resultado = reserva.get();
+            reservationRepository.save(StockReservation.builder()
+                    .idPedido(idPedido.toHexString())
+                    .cantidades(new HashMap<>(cantidades))
+                    .build());
+            return resultado;
+        });
+    }
+
+    // Igual que begin para un lote: reserva devuelve los pedidos que han conseguido stock
+    public List<Pedido> beginAll(Supplier<List<Pedido>> reserva) {
+        return transactionTemplate.execute(status -> {
+            List<Pedido> reservados = reserva.get();
+            reservationRepository.saveAll(reservados.stream()
+                    .map(pedido -> StockReservation.builder()
+                            .idPedido(pedido.getId().toHexString())
+                            .cantidades(StockService.cantidadesPorFunko(pedido.getLineasPedido()))
+                            .build())
+                    .toList());
+            return reservados;
+        });
+    }
+
+    public void confirm(ObjectId idPedido) {
+        porConfirmar.add(idPedido.toHexString());
+    }
+
+    public void compensate(ObjectId idPedido) {
+        if (compensate(idPedido.toHexString())) {
+            compensadas.increment();
+        }
+    }
+
+    public void flushConfirmations() {
+        List<String> ids = new ArrayList<>();
+        String id;
+        while ((id = porConfirmar.poll()) != null) {
+            ids.add(id);
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            Integer actualizadas = transactionTemplate.execute(status ->
+                    reservationRepository.updateEstado(ids, SagaEstado.CONFIRMED, SagaEstado.PENDING, LocalDateTime.now()));
+            confirmadas.increment(actualizadas != null ? actualizadas : 0);
+            log.debug("Confirmadas {} reservas de stock", ids.size());
+        } catch (RuntimeException e) {
+            // Siguen PENDING: el barrido las confirmará al encontrar el pedido en Mongo
+            log.error("Error confirmando {} reservas de stock", ids.size(), e);
+        }
+    }
+
+    public void sweep() {
+        try {
+            LocalDateTime limite = LocalDateTime.now().minus(Duration.ofMillis(timeout));
+            List<StockReservation> pendientes = reservationRepository.findByEstadoAndCreatedAtBefore(
+                    SagaEstado.PENDING, limite, PageRequest.of(0, sweepBatchSize));
+            for (StockReservation reserva : pendientes) {
+                recover(new ObjectId(reserva.getIdPedido()));
+                recuperadas.increment();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error revisando las reservas de stock pendientes", e);
+        }
+    }
+
+    // Para cuando no se sabe si el pedido llegó a Mongo (p. ej. una escritura en bloque a medias)
+    public void recover(ObjectId idPedido) {
+        if (pedidoRepository.existsById(idPedido)) {
+            transactionTemplate.execute(status -> reservationRepository.updateEstado(
+                    List.of(idPedido.toHexString()), SagaEstado.CONFIRMED, SagaEstado.PENDING, LocalDateTime.now()));
+            log.info("Reserva {} confirmada, el pedido está en Mongo", idPedido);
+        } else {
+            compensate(idPedido);
+            log.warn("Reserva {} sin pedido en Mongo, stock devuelto", idPedido);
+        }
+    }
+
+    // El cambio de estado va primero y condicionado a PENDING: si otro nodo (o el barrido y la petición a la
+    // vez) ya la ha compensado, o flushConfirmations la ha confirmado, no se actualiza nada y no se devuelve
+    // stock. El UPDATE bloquea la fila hasta el commit, así que sólo una transacción puede ganar.
+    private boolean compensate(String idPedido) {
+        Boolean compensada = transactionTemplate.execute(status -> {
+            int actualizadas = reservationRepository.updateEstado(List.of(idPedido), SagaEstado.COMPENSATED,
+                    SagaEstado.PENDING, LocalDateTime.now());
+            if (actualizadas != 1) {
+                return false;
+            }
+            StockReservation reserva = reservationRepository.findById(idPedido).orElseThrow();
+            Map<Long, Integer> devolver = new HashMap<>();
+            reserva.getCantidades().forEach((idFunko, cantidad) -> devolver.put(idFunko, -cantidad));
+            stockService.adjust(devolver);
+            return true;
+        });
+        return Boolean.TRUE.equals(compensada);
+    }
+}
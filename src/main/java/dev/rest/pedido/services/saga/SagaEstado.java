@@ -0,0 +1,5 @@
+package dev.rest.pedido.services.saga;
+
+public enum SagaEstado {
+    PENDING, CONFIRMED, COMPENSATED
+}
@@ -0,0 +1,67 @@
+package dev.rest.pedido.services.saga;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+// Stock reservado en Postgres para un pedido que todavía puede no estar en Mongo.
+// El id lo pone el pedido, así que se marca como nueva hasta que se guarda o se carga: save hace un
+// persist directo en lugar de un merge con su SELECT previo.
+@Builder
+@Entity
+@Data
+@Table(name = "stock_reservations", indexes = @Index(name = "idx_stock_reservations_estado", columnList = "estado, created_at"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockReservation implements Persistable<String> {
+    @Id
+    @Column(name = "id_pedido", length = 24)
+    private String idPedido;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    @Builder.Default
+    private SagaEstado estado = SagaEstado.PENDING;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "stock_reservation_lines", joinColumns = @JoinColumn(name = "id_pedido"))
+    @MapKeyColumn(name = "id_funko")
+    @Column(name = "cantidad")
+    @Builder.Default
+    private Map<Long, Integer> cantidades = new HashMap<>();
+
+    @Column(name = "created_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    @Transient
+    @Builder.Default
+    private boolean nueva = true;
+
+    @Override
+    public String getId() {
+        return idPedido;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nueva;
+    }
+
+    @PostLoad
+    @PostPersist
+    void marcarGuardada() {
+        nueva = false;
+    }
+}
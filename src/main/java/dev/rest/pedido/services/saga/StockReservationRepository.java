@@ -0,0 +1,24 @@
+package dev.rest.pedido.services.saga;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+
+    List<StockReservation> findByEstadoAndCreatedAtBefore(SagaEstado estado, LocalDateTime createdAt, Pageable pageable);
+
+    // Sólo pasan a CONFIRMED las que siguen pendientes: una ya compensada no se toca
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.estado = :estado, r.updatedAt = :ahora WHERE r.idPedido IN :ids AND r.estado = :pendiente")
+    int updateEstado(@Param("ids") Collection<String> ids, @Param("estado") SagaEstado estado,
+                     @Param("pendiente") SagaEstado pendiente, @Param("ahora") LocalDateTime ahora);
+}
@@ -0,0 +1,65 @@
+package dev.rest.pedido.services.stock;
+
+import dev.rest.pedido.models.LineaPedido;
+import dev.rest.pedido.repositories.StockRepository;
+import dev.rest.pedido.services.stock.ledger.StockLedger;
+import dev.rest.pedido.services.stock.movements.StockMovements;
+import dev.websockets.notifications.outbox.Outbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// StockService sobre el ledger en memoria (stock.ledger.enabled=true): las reservas no tocan la fila del
+// funko, que se actualiza después con la suma de los movimientos.
+@Service
+@Primary
+@Slf4j
+@ConditionalOnProperty(name = "stock.ledger.enabled", havingValue = "true")
+public class LedgerStockService extends StockServiceImpl {
+    private final StockLedger stockLedger;
+
+    @Autowired
+    public LedgerStockService(StockRepository stockRepository, Outbox outbox, StockMovements stockMovements, StockLedger stockLedger) {
+        super(stockRepository, outbox, stockMovements);
+        this.stockLedger = stockLedger;
+    }
+
+    @Override
+    public List<Long> adjust(Map<Long, Integer> cantidades) {
+        log.info("Ajustando stock de {} funkos en el ledger", cantidades.size());
+        var sinStock = stockLedger.adjust(cantidades);
+        if (sinStock.isEmpty()) {
+            publish(cambios(cantidades));
+        }
+        return sinStock;
+    }
+
+    @Override
+    public <K> Set<K> reserveAll(Map<K, Map<Long, Integer>> pedidos) {
+        log.info("Reservando stock de un lote de {} pedidos en el ledger", pedidos.size());
+        var sinStock = stockLedger.reserveAll(pedidos);
+        Map<Long, Integer> total = new HashMap<>();
+        pedidos.forEach((clave, cantidades) -> {
+            if (!sinStock.contains(clave)) {
+                cantidades.forEach((idFunko, cantidad) -> total.merge(idFunko, cantidad, Integer::sum));
+            }
+        });
+        publish(cambios(total));
+        return sinStock;
+    }
+
+    @Override
+    public void release(List<LineaPedido> lineasPedido) {
+        log.info("Liberando stock de {} líneas de pedido en el ledger", lineasPedido.size());
+        Map<Long, Integer> devoluciones = new HashMap<>();
+        StockService.cantidadesPorFunko(lineasPedido).forEach((idFunko, cantidad) -> devoluciones.put(idFunko, -cantidad));
+        adjust(devoluciones);
+    }
+}
@@ -0,0 +1,25 @@
+package dev.rest.pedido.services.stock;
+
+import dev.rest.pedido.models.LineaPedido;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public interface StockService {
+
+    static Map<Long, Integer> cantidadesPorFunko(List<LineaPedido> lineasPedido) {
+        Map<Long, Integer> cantidades = new TreeMap<>();
+        lineasPedido.forEach(lineaPedido -> cantidades.merge(lineaPedido.getIdFunko(), lineaPedido.getCantidad(), Integer::sum));
+        return cantidades;
+    }
+
+    List<Long> reserve(List<LineaPedido> lineasPedido);
+
+    List<Long> adjust(Map<Long, Integer> cantidades);
+
+    <K> Set<K> reserveAll(Map<K, Map<Long, Integer>> pedidos);
+
+    void release(List<LineaPedido> lineasPedido);
+}
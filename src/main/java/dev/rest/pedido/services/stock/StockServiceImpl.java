@@ -0,0 +1,144 @@
+package dev.rest.pedido.services.stock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.config.websocket.NotificationTopic;
+import dev.rest.pedido.models.LineaPedido;
+import dev.rest.pedido.repositories.StockRepository;
+import dev.rest.pedido.services.stock.movements.StockMovement;
+import dev.rest.pedido.services.stock.movements.StockMovements;
+import dev.websockets.notifications.dto.StockNotificationDto;
+import dev.websockets.notifications.models.Notification;
+import dev.websockets.notifications.outbox.Outbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+@Service
+@Slf4j
+public class StockServiceImpl implements StockService {
+    private final StockRepository stockRepository;
+    private final Outbox outbox;
+    private final StockMovements stockMovements;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    public StockServiceImpl(StockRepository stockRepository, Outbox outbox, StockMovements stockMovements) {
+        this.stockRepository = stockRepository;
+        this.outbox = outbox;
+        this.stockMovements = stockMovements;
+    }
+
+    @Override
+    public List<Long> reserve(List<LineaPedido> lineasPedido) {
+        log.info("Reservando stock de {} líneas de pedido", lineasPedido.size());
+        return adjust(StockService.cantidadesPorFunko(lineasPedido));
+    }
+
+    // Las cantidades positivas se descuentan solo si hay stock (cantidad >= n) y las negativas
+    // devuelven stock, todo en un único batch ordenado por id. Si algún funko no tiene stock
+    // se deshacen los cambios ya aplicados y se devuelven los ids que han fallado.
+    @Override
+    public List<Long> adjust(Map<Long, Integer> cantidades) {
+        log.info("Ajustando stock de {} funkos", cantidades.size());
+        Map<Long, Integer> ordenadas = new TreeMap<>(cantidades);
+        int[] updated = stockRepository.decrementStock(ordenadas);
+        Map<Long, Integer> aplicadas = new TreeMap<>();
+        List<Long> sinStock = new ArrayList<>();
+        int i = 0;
+        for (var cantidad : ordenadas.entrySet()) {
+            if (updated[i++] > 0) {
+                aplicadas.put(cantidad.getKey(), cantidad.getValue());
+            } else if (cantidad.getValue() > 0) {
+                sinStock.add(cantidad.getKey());
+            }
+        }
+        if (!sinStock.isEmpty() && !aplicadas.isEmpty()) {
+            log.warn("No hay stock para los funkos {}, deshaciendo {} cambios", sinStock, aplicadas.size());
+            stockRepository.incrementStock(aplicadas);
+        } else {
+            publish(cambios(aplicadas));
+        }
+        return sinStock;
+    }
+
+    // Reserva varios pedidos a la vez, dentro de la transacción del llamante: se bloquean las filas de
+    // todos los funkos del lote, se reparte el stock por orden de llegada y se descuenta todo en un único
+    // batch. Devuelve las claves de los pedidos que no caben, que se quedan sin reservar.
+    @Override
+    public <K> Set<K> reserveAll(Map<K, Map<Long, Integer>> pedidos) {
+        log.info("Reservando stock de un lote de {} pedidos", pedidos.size());
+        Set<Long> ids = new TreeSet<>();
+        pedidos.values().forEach(cantidades -> ids.addAll(cantidades.keySet()));
+        Map<Long, Integer> disponible = stockRepository.lockStock(ids);
+        Map<Long, Integer> total = new TreeMap<>();
+        Set<K> sinStock = new LinkedHashSet<>();
+        pedidos.forEach((clave, cantidades) -> {
+            boolean cabe = cantidades.entrySet().stream()
+                    .allMatch(cantidad -> disponible.getOrDefault(cantidad.getKey(), 0) >= cantidad.getValue());
+            if (cabe) {
+                cantidades.forEach((idFunko, cantidad) -> {
+                    disponible.merge(idFunko, -cantidad, Integer::sum);
+                    total.merge(idFunko, cantidad, Integer::sum);
+                });
+            } else {
+                sinStock.add(clave);
+            }
+        });
+        total.values().removeIf(cantidad -> cantidad == 0);
+        if (!total.isEmpty()) {
+            for (int updated : stockRepository.decrementStock(total)) {
+                if (updated == 0) {
+                    throw new IllegalStateException("El stock ha cambiado con las filas bloqueadas");
+                }
+            }
+            publish(cambios(total));
+        }
+        return sinStock;
+    }
+
+    @Override
+    public void release(List<LineaPedido> lineasPedido) {
+        log.info("Liberando stock de {} líneas de pedido", lineasPedido.size());
+        var cantidades = StockService.cantidadesPorFunko(lineasPedido);
+        stockRepository.incrementStock(cantidades);
+        publish(cantidades);
+    }
+
+    // Cambios de stock que corresponden a unas cantidades reservadas
+    protected static Map<Long, Integer> cambios(Map<Long, Integer> cantidades) {
+        Map<Long, Integer> cambios = new TreeMap<>();
+        cantidades.forEach((idFunko, cantidad) -> cambios.put(idFunko, -cantidad));
+        return cambios;
+    }
+
+    // Los cambios ya aplicados se guardan en el historial de stock, en la misma transacción, y se notifican
+    protected void publish(Map<Long, Integer> cambios) {
+        stockMovements.record(cambios, StockMovement.Motivo.PEDIDO);
+        cambios.forEach(this::sendNotification);
+    }
+
+    // Los cambios de stock son incrementos: no llevan clave para que el dispatcher no los fusione
+    protected void sendNotification(Long idFunko, int cambio) {
+        try {
+            Notification<StockNotificationDto> notificacion = new Notification<>(
+                    "STOCK",
+                    Notification.Tipo.UPDATE,
+                    new StockNotificationDto(idFunko, cambio),
+                    LocalDateTime.now().toString()
+            );
+            outbox.publish(null, mapper.writeValueAsString(notificacion), new NotificationTopic(Notification.Tipo.UPDATE, idFunko, null));
+        } catch (JsonProcessingException e) {
+            log.error("Error al convertir la notificación de stock a JSON", e);
+        }
+    }
+}
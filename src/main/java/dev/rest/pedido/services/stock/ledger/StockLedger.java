@@ -0,0 +1,310 @@
+package dev.rest.pedido.services.stock.ledger;
+
+import dev.rest.pedido.repositories.StockRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Stock en memoria con escritura diferida a Postgres, para los funkos que concentran los pedidos.
+// Cada funko tiene un contador por franjas cargado de la base de datos la primera vez que se usa. Una reserva
+// sólo se confirma cuando está en el registro en disco; cada flush-interval la suma de los movimientos se
+// aplica a funkos en un batch, junto con la última secuencia aplicada. Al arrancar se aplica lo que hubiera
+// en el registro después de esa secuencia.
+// El stock en memoria es de este proceso: con el ledger activo sólo puede haber una instancia y todos los
+// cambios de stock tienen que pasar por StockService o, los del administrador, por set y remove.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stock.ledger.enabled", havingValue = "true")
+public class StockLedger {
+    private final StockRepository stockRepository;
+    private final StockLedgerCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockLedgerLog registro;
+    private final int stripes;
+    private final long flushInterval;
+    private final Map<Long, StripedCounter> contadores = new ConcurrentHashMap<>();
+    private final Timer escritura;
+    private final Counter volcados;
+    private final Counter sinStock;
+    private volatile long ultimoCheckpoint;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public StockLedger(StockRepository stockRepository,
+                       StockLedgerCheckpointRepository checkpointRepository,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${stock.ledger.directory:stock-ledger}") String directorio,
+                       @Value("${stock.ledger.segment-size:67108864}") long segmentSize,
+                       @Value("${stock.ledger.fsync:true}") boolean fsync,
+                       @Value("${stock.ledger.stripes:8}") int stripes,
+                       @Value("${stock.ledger.flush-interval:1000}") long flushInterval,
+                       MeterRegistry meterRegistry) {
+        this.stockRepository = stockRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.registro = new StockLedgerLog(Path.of(directorio), segmentSize, fsync);
+        this.stripes = stripes;
+        this.flushInterval = flushInterval;
+        Gauge.builder("stock.ledger.unflushed", registro, StockLedgerLog::pending)
+                .description("Funkos con movimientos de stock pendientes de aplicar en la base de datos")
+                .register(meterRegistry);
+        this.escritura = Timer.builder("stock.ledger.append")
+                .description("Tiempo hasta que un movimiento de stock está en disco")
+                .register(meterRegistry);
+        this.volcados = Counter.builder("stock.ledger.flushed").register(meterRegistry);
+        this.sinStock = Counter.builder("stock.ledger.rejected").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        ultimoCheckpoint = checkpointRepository.findById(StockLedgerCheckpoint.ID).map(StockLedgerCheckpoint::getSeq).orElse(0L);
+        StockLedgerLog.Recuperado recuperado = registro.recover(ultimoCheckpoint);
+        if (recuperado.seq() > ultimoCheckpoint) {
+            log.info("Aplicando {} movimientos de stock recuperados del registro (secuencia {} a {})",
+                    recuperado.deltas().size(), ultimoCheckpoint, recuperado.seq());
+            apply(recuperado.deltas(), recuperado.seq());
+        }
+        registro.open(ultimoCheckpoint);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-ledger-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        log.info("Ledger de stock iniciado: {} franjas por funko, volcado cada {} ms", stripes, flushInterval);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        registro.close();
+        flush();
+    }
+
+    // Igual que StockService.adjust: positivas descuentan, negativas devuelven, todo o nada.
+    // Devuelve los funkos sin stock suficiente.
+    public List<Long> adjust(Map<Long, Integer> cantidades) {
+        Map<Long, Integer> aplicadas = new TreeMap<>();
+        List<Long> fallidos = take(new TreeMap<>(cantidades), aplicadas);
+        if (fallidos.isEmpty()) {
+            record(aplicadas);
+        }
+        return fallidos;
+    }
+
+    // Reparte el stock entre varios pedidos por orden de llegada y registra el total de una vez
+    public <K> Set<K> reserveAll(Map<K, Map<Long, Integer>> pedidos) {
+        Map<Long, Integer> total = new TreeMap<>();
+        Set<K> rechazados = new LinkedHashSet<>();
+        pedidos.forEach((clave, cantidades) -> {
+            Map<Long, Integer> aplicadas = new TreeMap<>();
+            if (take(new TreeMap<>(cantidades), aplicadas).isEmpty()) {
+                aplicadas.forEach((idFunko, cantidad) -> total.merge(idFunko, cantidad, Integer::sum));
+            } else {
+                rechazados.add(clave);
+            }
+        });
+        total.values().removeIf(cantidad -> cantidad == 0);
+        record(total);
+        return rechazados;
+    }
+
+    // Fija el stock de un funko (ajuste del administrador) y devuelve el cambio aplicado. Se registra como un
+    // movimiento más, así el volcado lo suma a la fila igual que las reservas y no pisa las que estén pendientes.
+    public int set(Long idFunko, int cantidad) {
+        StripedCounter contador = contador(idFunko);
+        if (contador == null) {
+            throw new IllegalStateException("No existe el funko " + idFunko);
+        }
+        int cambio;
+        do {
+            cambio = cantidad - contador.sum();
+            if (cambio >= 0) {
+                contador.add(cambio);
+                break;
+            }
+        } while (!contador.tryTake(-cambio));
+        if (cambio != 0) {
+            record(new TreeMap<>(Map.of(idFunko, -cambio)));
+        }
+        return cambio;
+    }
+
+    // Al borrar un funko se olvida su contador cuando la transacción hace commit; los movimientos que queden
+    // en el registro no cambian ninguna fila al volcarse. Devuelve el stock que tenía.
+    public int remove(Long idFunko) {
+        int cantidad = stock(idFunko);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    contadores.remove(idFunko);
+                }
+            });
+        } else {
+            contadores.remove(idFunko);
+        }
+        return cantidad;
+    }
+
+    public int stock(Long idFunko) {
+        StripedCounter contador = contador(idFunko);
+        return contador != null ? contador.sum() : 0;
+    }
+
+    public void flush() {
+        StockLedgerLog.Lote lote = registro.drain();
+        if (lote.seq() <= ultimoCheckpoint) {
+            return;
+        }
+        try {
+            apply(lote.deltas(), lote.seq());
+            registro.deleteUpTo(lote.seq());
+            volcados.increment(lote.deltas().size());
+        } catch (RuntimeException e) {
+            registro.restore(lote.deltas());
+            log.error("Error aplicando {} movimientos de stock en la base de datos", lote.deltas().size(), e);
+        }
+    }
+
+    private void apply(Map<Long, Integer> deltas, long seq) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!deltas.isEmpty()) {
+                stockRepository.incrementStock(deltas);
+            }
+            checkpointRepository.save(new StockLedgerCheckpoint(StockLedgerCheckpoint.ID, seq));
+        });
+        ultimoCheckpoint = seq;
+    }
+
+    // Aplica en memoria en orden de id: primero los descuentos y, si todos tienen stock, las devoluciones.
+    // Si algún funko no tiene stock se deshace lo descontado y no se aplica nada.
+    private List<Long> take(Map<Long, Integer> cantidades, Map<Long, Integer> aplicadas) {
+        List<Long> fallidos = new ArrayList<>();
+        for (Map.Entry<Long, Integer> cantidad : cantidades.entrySet()) {
+            if (cantidad.getValue() <= 0) {
+                continue;
+            }
+            StripedCounter contador = contador(cantidad.getKey());
+            if (contador != null && contador.tryTake(cantidad.getValue())) {
+                aplicadas.put(cantidad.getKey(), cantidad.getValue());
+            } else {
+                fallidos.add(cantidad.getKey());
+            }
+        }
+        if (!fallidos.isEmpty()) {
+            sinStock.increment();
+            undo(aplicadas);
+            aplicadas.clear();
+            return fallidos;
+        }
+        for (Map.Entry<Long, Integer> cantidad : cantidades.entrySet()) {
+            StripedCounter contador = cantidad.getValue() < 0 ? contador(cantidad.getKey()) : null;
+            if (contador != null) {
+                contador.add(-cantidad.getValue());
+                aplicadas.put(cantidad.getKey(), cantidad.getValue());
+            }
+        }
+        return fallidos;
+    }
+
+    // Espera a que el movimiento esté en disco. Si hay una transacción en curso y acaba en rollback
+    // el movimiento se compensa, igual que se desharía el UPDATE en la base de datos.
+    private void record(Map<Long, Integer> aplicadas) {
+        if (aplicadas.isEmpty()) {
+            return;
+        }
+        append(aplicadas);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        compensate(aplicadas);
+                    }
+                }
+            });
+        }
+    }
+
+    private void compensate(Map<Long, Integer> aplicadas) {
+        Map<Long, Integer> inversas = new TreeMap<>();
+        aplicadas.forEach((idFunko, cantidad) -> inversas.put(idFunko, -cantidad));
+        try {
+            Map<Long, Integer> aplicadasInversas = new TreeMap<>();
+            List<Long> fallidos = take(inversas, aplicadasInversas);
+            if (!fallidos.isEmpty()) {
+                log.warn("No se puede compensar el stock devuelto de los funkos {}: ya se ha vendido", fallidos);
+            }
+            append(aplicadasInversas);
+        } catch (RuntimeException e) {
+            log.error("Error compensando movimientos de stock de una transacción deshecha", e);
+        }
+    }
+
+    private void append(Map<Long, Integer> aplicadas) {
+        if (aplicadas.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> deltas = new TreeMap<>();
+        aplicadas.forEach((idFunko, cantidad) -> deltas.put(idFunko, -cantidad));
+        long inicio = System.nanoTime();
+        try {
+            registro.append(deltas).get();
+        } catch (ExecutionException e) {
+            undo(aplicadas);
+            throw new IllegalStateException("No se ha podido registrar el movimiento de stock", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            undo(aplicadas);
+            throw new IllegalStateException("Interrumpido registrando el movimiento de stock", e);
+        } finally {
+            escritura.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Las devoluciones se deshacen con tryTake para no dejar ninguna franja en negativo
+    private void undo(Map<Long, Integer> aplicadas) {
+        aplicadas.forEach((idFunko, cantidad) -> {
+            StripedCounter contador = contadores.get(idFunko);
+            if (cantidad > 0) {
+                contador.add(cantidad);
+            } else if (!contador.tryTake(-cantidad)) {
+                log.warn("No se ha podido deshacer la devolución de {} unidades del funko {}", -cantidad, idFunko);
+            }
+        });
+    }
+
+    private StripedCounter contador(Long idFunko) {
+        return contadores.computeIfAbsent(idFunko, id -> stockRepository.findStock(id)
+                .map(cantidad -> new StripedCounter(stripes, cantidad))
+                .orElse(null));
+    }
+}
@@ -0,0 +1,25 @@
+package dev.rest.pedido.services.stock.ledger;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Última secuencia del registro de stock aplicada en funkos; se guarda en la misma transacción que los deltas
+@Entity
+@Data
+@Table(name = "stock_ledger_checkpoint")
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockLedgerCheckpoint {
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private long seq;
+}
@@ -0,0 +1,8 @@
+package dev.rest.pedido.services.stock.ledger;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockLedgerCheckpointRepository extends JpaRepository<StockLedgerCheckpoint, Integer> {
+}
@@ -0,0 +1,265 @@
+package dev.rest.pedido.services.stock.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Registro en disco de los movimientos de stock que todavía pueden no estar en Postgres.
+// Cada movimiento es un registro de tamaño fijo (secuencia, funko, delta, crc) en segmentos que se llaman
+// como su primera secuencia. Un único hilo escribe: junta todo lo que se ha pedido mientras hacía el
+// fsync anterior y lo escribe con un solo fsync (group commit), y hasta entonces no confirma a nadie.
+@Slf4j
+public class StockLedgerLog {
+    private static final int TAMANO_REGISTRO = 24;
+    private static final String PREFIJO = "stock-ledger-";
+    private static final String SUFIJO = ".log";
+
+    private final Path directorio;
+    private final long segmentSize;
+    private final boolean fsync;
+    private final BlockingQueue<Escritura> cola = new LinkedBlockingQueue<>();
+    private final Object lock = new Object();
+    private Map<Long, Integer> pendientes = new HashMap<>();
+    private long ultimaDurable;
+    private long ultima;
+    private FileChannel canal;
+    private volatile boolean running;
+    private Thread writer;
+
+    public StockLedgerLog(Path directorio, long segmentSize, boolean fsync) {
+        this.directorio = directorio;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+    }
+
+    // Suma por funko de los registros posteriores a checkpoint. Se para en el primer registro incompleto
+    // o con el crc mal: es la cola de una escritura que no llegó a confirmarse.
+    public Recuperado recover(long checkpoint) throws IOException {
+        Files.createDirectories(directorio);
+        Map<Long, Integer> deltas = new HashMap<>();
+        long maxima = checkpoint;
+        ByteBuffer registro = ByteBuffer.allocate(TAMANO_REGISTRO);
+        for (Path segmento : segmentos()) {
+            try (FileChannel lectura = FileChannel.open(segmento, StandardOpenOption.READ)) {
+                while (true) {
+                    registro.clear();
+                    while (registro.hasRemaining() && lectura.read(registro) >= 0) {
+                        // hasta completar el registro o llegar al final
+                    }
+                    if (registro.hasRemaining()) {
+                        break;
+                    }
+                    registro.flip();
+                    long seq = registro.getLong();
+                    long idFunko = registro.getLong();
+                    int delta = registro.getInt();
+                    int crc = registro.getInt();
+                    if (crc != crc(seq, idFunko, delta)) {
+                        log.warn("Registro de stock corrupto en {}, se descarta el resto del segmento", segmento.getFileName());
+                        break;
+                    }
+                    if (seq > checkpoint) {
+                        deltas.merge(idFunko, delta, Integer::sum);
+                        maxima = Math.max(maxima, seq);
+                    }
+                }
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        return new Recuperado(maxima, deltas);
+    }
+
+    // Los segmentos anteriores ya están aplicados en Postgres: se empieza uno nuevo tras la secuencia dada
+    public void open(long seq) throws IOException {
+        for (Path segmento : segmentos()) {
+            Files.delete(segmento);
+        }
+        ultima = seq;
+        ultimaDurable = seq;
+        canal = abrirSegmento(seq + 1);
+        running = true;
+        writer = new Thread(this::write, "stock-ledger-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void close() throws InterruptedException, IOException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (canal != null) {
+            canal.close();
+        }
+    }
+
+    // Se completa cuando los deltas están en disco
+    public CompletableFuture<Long> append(Map<Long, Integer> deltas) {
+        Escritura escritura = new Escritura(deltas, new CompletableFuture<>());
+        if (!running) {
+            escritura.hecho.completeExceptionally(new IllegalStateException("El registro de stock está cerrado"));
+            return escritura.hecho;
+        }
+        cola.add(escritura);
+        return escritura.hecho;
+    }
+
+    // Deltas ya en disco pendientes de aplicar en Postgres, junto con la última secuencia que incluyen
+    public Lote drain() {
+        synchronized (lock) {
+            Map<Long, Integer> deltas = pendientes;
+            pendientes = new HashMap<>();
+            deltas.values().removeIf(delta -> delta == 0);
+            return new Lote(ultimaDurable, deltas);
+        }
+    }
+
+    // El volcado ha fallado: los deltas vuelven a quedar pendientes
+    public void restore(Map<Long, Integer> deltas) {
+        synchronized (lock) {
+            deltas.forEach((idFunko, delta) -> pendientes.merge(idFunko, delta, Integer::sum));
+        }
+    }
+
+    public int pending() {
+        synchronized (lock) {
+            return pendientes.size();
+        }
+    }
+
+    // Borra los segmentos cuyos registros son todos <= seq; el segmento en uso nunca, porque no tiene siguiente
+    public void deleteUpTo(long seq) {
+        try {
+            List<Path> lista = segmentos();
+            for (int i = 0; i + 1 < lista.size(); i++) {
+                if (primeraSecuencia(lista.get(i + 1)) <= seq + 1) {
+                    Files.deleteIfExists(lista.get(i));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("No se han podido borrar los segmentos de stock ya aplicados", e);
+        }
+    }
+
+    private void write() {
+        while (running || !cola.isEmpty()) {
+            Escritura primera;
+            try {
+                primera = cola.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (primera == null) {
+                continue;
+            }
+            List<Escritura> lote = new ArrayList<>();
+            lote.add(primera);
+            cola.drainTo(lote);
+            long seq = ultima;
+            try {
+                if (canal.size() >= segmentSize) {
+                    canal.close();
+                    canal = abrirSegmento(ultima + 1);
+                }
+                int registros = lote.stream().mapToInt(escritura -> escritura.deltas.size()).sum();
+                ByteBuffer buffer = ByteBuffer.allocate(registros * TAMANO_REGISTRO);
+                Map<Long, Integer> escritos = new HashMap<>();
+                long[] secuencias = new long[lote.size()];
+                for (int i = 0; i < lote.size(); i++) {
+                    for (Map.Entry<Long, Integer> delta : lote.get(i).deltas.entrySet()) {
+                        seq++;
+                        buffer.putLong(seq).putLong(delta.getKey()).putInt(delta.getValue())
+                                .putInt(crc(seq, delta.getKey(), delta.getValue()));
+                        escritos.merge(delta.getKey(), delta.getValue(), Integer::sum);
+                    }
+                    secuencias[i] = seq;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+                if (fsync) {
+                    canal.force(false);
+                }
+                ultima = seq;
+                synchronized (lock) {
+                    escritos.forEach((idFunko, delta) -> pendientes.merge(idFunko, delta, Integer::sum));
+                    ultimaDurable = seq;
+                }
+                for (int i = 0; i < lote.size(); i++) {
+                    lote.get(i).hecho.complete(secuencias[i]);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Lo que haya llegado al disco se aplicará al recuperar: como mucho se pierde stock, nunca sobra.
+                // Se sigue en un segmento nuevo para no dejar registros buenos detrás de uno a medias.
+                log.error("Error escribiendo {} movimientos en el registro de stock", lote.size(), e);
+                lote.forEach(escritura -> escritura.hecho.completeExceptionally(e));
+                ultima = seq;
+                try {
+                    canal.close();
+                    canal = abrirSegmento(ultima + 1);
+                } catch (IOException ex) {
+                    log.error("No se ha podido abrir un segmento nuevo del registro de stock", ex);
+                }
+            }
+        }
+    }
+
+    private FileChannel abrirSegmento(long primera) throws IOException {
+        Path segmento = directorio.resolve(PREFIJO + String.format("%020d", primera) + SUFIJO);
+        return FileChannel.open(segmento, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segmentos() throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            return ficheros.filter(fichero -> {
+                        String nombre = fichero.getFileName().toString();
+                        return nombre.startsWith(PREFIJO) && nombre.endsWith(SUFIJO);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long primeraSecuencia(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length()));
+    }
+
+    private static int crc(long seq, long idFunko, int delta) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(20).putLong(seq).putLong(idFunko).putInt(delta).flip());
+        return (int) crc.getValue();
+    }
+
+    public record Lote(long seq, Map<Long, Integer> deltas) {
+    }
+
+    public record Recuperado(long seq, Map<Long, Integer> deltas) {
+    }
+
+    private record Escritura(Map<Long, Integer> deltas, CompletableFuture<Long> hecho) {
+    }
+}
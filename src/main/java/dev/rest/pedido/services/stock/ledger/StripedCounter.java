@@ -0,0 +1,71 @@
+package dev.rest.pedido.services.stock.ledger;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Stock de un funko repartido en franjas: cada hilo descuenta de la suya con CAS y sólo pasa a las demás
+// si no le llega, así los pedidos de un funko muy vendido no compiten todos por el mismo contador.
+// Ninguna franja baja nunca de cero, de modo que la suma tampoco.
+public class StripedCounter {
+    // Una franja por línea de caché (16 ints = 64 bytes) para que no se pisen entre núcleos
+    private static final int HUECO = 16;
+
+    private final AtomicIntegerArray franjas;
+    private final int mascara;
+
+    public StripedCounter(int stripes, int inicial) {
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        this.mascara = n - 1;
+        this.franjas = new AtomicIntegerArray(n * HUECO);
+        for (int i = 0; i < n; i++) {
+            franjas.set(i * HUECO, inicial / n + (i < inicial % n ? 1 : 0));
+        }
+    }
+
+    // Todo o nada: si entre todas las franjas no hay bastante se devuelve lo que se había cogido
+    public boolean tryTake(int cantidad) {
+        int inicio = franja();
+        int restante = cantidad;
+        int[] tomadas = new int[mascara + 1];
+        for (int k = 0; k <= mascara && restante > 0; k++) {
+            int f = (inicio + k) & mascara;
+            int i = f * HUECO;
+            int actual;
+            while ((actual = franjas.get(i)) > 0) {
+                int tomar = Math.min(actual, restante);
+                if (franjas.compareAndSet(i, actual, actual - tomar)) {
+                    tomadas[f] = tomar;
+                    restante -= tomar;
+                    break;
+                }
+            }
+        }
+        if (restante <= 0) {
+            return true;
+        }
+        for (int f = 0; f <= mascara; f++) {
+            if (tomadas[f] > 0) {
+                franjas.addAndGet(f * HUECO, tomadas[f]);
+            }
+        }
+        return false;
+    }
+
+    public void add(int cantidad) {
+        franjas.addAndGet(franja() * HUECO, cantidad);
+    }
+
+    public int sum() {
+        int total = 0;
+        for (int f = 0; f <= mascara; f++) {
+            total += franjas.get(f * HUECO);
+        }
+        return total;
+    }
+
+    private int franja() {
+        return Long.hashCode(Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) & mascara;
+    }
+}
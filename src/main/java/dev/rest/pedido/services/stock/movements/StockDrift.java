@@ -0,0 +1,5 @@
+package dev.rest.pedido.services.stock.movements;
+
+// Funko cuyo stock en la tabla funkos no coincide con la suma de sus movimientos
+public record StockDrift(Long idFunko, int cantidad, int calculado) {
+}
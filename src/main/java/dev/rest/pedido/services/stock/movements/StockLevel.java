@@ -0,0 +1,6 @@
+package dev.rest.pedido.services.stock.movements;
+
+import java.time.LocalDateTime;
+
+public record StockLevel(Long idFunko, int cantidad, LocalDateTime momento) {
+}
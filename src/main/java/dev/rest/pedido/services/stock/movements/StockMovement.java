@@ -0,0 +1,43 @@
+package dev.rest.pedido.services.stock.movements;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Cambio de stock de un funko. La tabla sólo crece: las filas se insertan en batch con StockMovementRepository
+// y nunca se actualizan ni se borran.
+@Builder
+@Entity
+@Data
+@Table(name = "stock_movements", indexes = {
+        @Index(name = "idx_stock_movements_funko", columnList = "id_funko, id"),
+        @Index(name = "idx_stock_movements_created_at", columnList = "created_at")
+})
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "id_funko", nullable = false)
+    private Long idFunko;
+
+    @Column(nullable = false)
+    private int delta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Motivo motivo;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Motivo {
+        ALTA, AJUSTE, BAJA, PEDIDO
+    }
+}
@@ -0,0 +1,146 @@
+package dev.rest.pedido.services.stock.movements;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public class StockMovementRepository {
+    private static final String INSERT_MOVEMENT = "INSERT INTO stock_movements (id_funko, delta, motivo, created_at) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_SNAPSHOT = "INSERT INTO stock_snapshots (id_funko, cantidad, last_movement_id, taken_at) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_BASELINE = "INSERT INTO stock_snapshots (id_funko, cantidad, last_movement_id, taken_at) " +
+            "SELECT f.id, f.cantidad, 0, ? FROM funkos f " +
+            "WHERE NOT EXISTS (SELECT 1 FROM stock_snapshots s WHERE s.id_funko = f.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM stock_movements m WHERE m.id_funko = f.id)";
+    private static final String SNAPSHOT_AT = "SELECT * FROM stock_snapshots WHERE id_funko = ? AND taken_at <= ? ORDER BY taken_at DESC, id DESC LIMIT 1";
+    private static final String SNAPSHOT_AFTER = "SELECT * FROM stock_snapshots WHERE id_funko = ? AND taken_at > ? ORDER BY taken_at, id LIMIT 1";
+    private static final String SUM_AFTER = "SELECT COALESCE(SUM(delta), 0) FROM stock_movements WHERE id_funko = ? AND id > ? AND created_at <= ?";
+    private static final String SUM_BEFORE = "SELECT COALESCE(SUM(delta), 0) FROM stock_movements WHERE id_funko = ? AND id <= ? AND created_at > ?";
+    private static final String SUM_UNTIL = "SELECT COALESCE(SUM(delta), 0) FROM stock_movements WHERE id_funko = ? AND created_at <= ?";
+    private static final String LAST_MOVEMENT_UNTIL = "SELECT COALESCE(MAX(id), 0) FROM stock_movements WHERE created_at <= ?";
+    private static final String LAST_SNAPSHOT_MOVEMENT = "SELECT COALESCE(MAX(last_movement_id), 0) FROM stock_snapshots";
+    private static final String SUM_BY_FUNKO = "SELECT id_funko, SUM(delta) AS delta FROM stock_movements WHERE id > ? AND id <= ? GROUP BY id_funko";
+    private static final String LATEST_SNAPSHOTS = "SELECT id_funko, cantidad FROM stock_snapshots " +
+            "WHERE id IN (SELECT MAX(id) FROM stock_snapshots WHERE id_funko IN (%s) GROUP BY id_funko)";
+    private static final String DELETE_SNAPSHOTS_BEFORE = "DELETE FROM stock_snapshots WHERE taken_at < ? " +
+            "AND id NOT IN (SELECT MAX(id) FROM stock_snapshots GROUP BY id_funko)";
+    private static final String FIND_DRIFT = "SELECT f.id, f.cantidad, COALESCE(s.cantidad, 0) + " +
+            "(SELECT COALESCE(SUM(m.delta), 0) FROM stock_movements m WHERE m.id_funko = f.id AND m.id > COALESCE(s.last_movement_id, 0)) AS calculado " +
+            "FROM funkos f " +
+            "LEFT JOIN (SELECT id_funko, MAX(id) AS id FROM stock_snapshots GROUP BY id_funko) u ON u.id_funko = f.id " +
+            "LEFT JOIN stock_snapshots s ON s.id = u.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public StockMovementRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertAll(Map<Long, Integer> deltas, StockMovement.Motivo motivo, LocalDateTime ahora) {
+        Timestamp createdAt = Timestamp.valueOf(ahora);
+        jdbcTemplate.batchUpdate(INSERT_MOVEMENT, deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getKey(), delta.getValue(), motivo.name(), createdAt})
+                .toList());
+    }
+
+    public void insertSnapshots(Map<Long, Integer> cantidades, long lastMovementId, LocalDateTime takenAt) {
+        Timestamp momento = Timestamp.valueOf(takenAt);
+        jdbcTemplate.batchUpdate(INSERT_SNAPSHOT, cantidades.entrySet().stream()
+                .map(cantidad -> new Object[]{cantidad.getKey(), cantidad.getValue(), lastMovementId, momento})
+                .toList());
+    }
+
+    // Punto de partida para los funkos que ya tenían stock antes de registrar movimientos
+    public int insertBaselines(LocalDateTime takenAt) {
+        return jdbcTemplate.update(INSERT_BASELINE, Timestamp.valueOf(takenAt));
+    }
+
+    public Optional<StockSnapshot> findSnapshotAtOrBefore(Long idFunko, LocalDateTime momento) {
+        return jdbcTemplate.query(SNAPSHOT_AT, this::toSnapshot, idFunko, Timestamp.valueOf(momento)).stream().findFirst();
+    }
+
+    public Optional<StockSnapshot> findSnapshotAfter(Long idFunko, LocalDateTime momento) {
+        return jdbcTemplate.query(SNAPSHOT_AFTER, this::toSnapshot, idFunko, Timestamp.valueOf(momento)).stream().findFirst();
+    }
+
+    // Movimientos que no están en la foto y ya se habían hecho en ese momento
+    public int sumAfter(Long idFunko, long lastMovementId, LocalDateTime momento) {
+        return jdbcTemplate.queryForObject(SUM_AFTER, Integer.class, idFunko, lastMovementId, Timestamp.valueOf(momento));
+    }
+
+    // Movimientos que están en la foto pero son posteriores a ese momento
+    public int sumBefore(Long idFunko, long lastMovementId, LocalDateTime momento) {
+        return jdbcTemplate.queryForObject(SUM_BEFORE, Integer.class, idFunko, lastMovementId, Timestamp.valueOf(momento));
+    }
+
+    public int sumUntil(Long idFunko, LocalDateTime momento) {
+        return jdbcTemplate.queryForObject(SUM_UNTIL, Integer.class, idFunko, Timestamp.valueOf(momento));
+    }
+
+    public long lastMovementUntil(LocalDateTime momento) {
+        return jdbcTemplate.queryForObject(LAST_MOVEMENT_UNTIL, Long.class, Timestamp.valueOf(momento));
+    }
+
+    public long lastSnapshotMovement() {
+        return jdbcTemplate.queryForObject(LAST_SNAPSHOT_MOVEMENT, Long.class);
+    }
+
+    public Map<Long, Integer> sumByFunko(long desde, long hasta) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        jdbcTemplate.query(SUM_BY_FUNKO, (RowCallbackHandler) rs -> deltas.put(rs.getLong("id_funko"), rs.getInt("delta")), desde, hasta);
+        return deltas;
+    }
+
+    public Map<Long, Integer> findLatestSnapshots(Collection<Long> ids) {
+        Map<Long, Integer> cantidades = new HashMap<>();
+        if (ids.isEmpty()) {
+            return cantidades;
+        }
+        String marcadores = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query(LATEST_SNAPSHOTS.formatted(marcadores),
+                (RowCallbackHandler) rs -> cantidades.put(rs.getLong("id_funko"), rs.getInt("cantidad")),
+                ids.toArray());
+        return cantidades;
+    }
+
+    // Siempre se queda la última foto de cada funko
+    public int deleteSnapshotsBefore(LocalDateTime limite) {
+        return jdbcTemplate.update(DELETE_SNAPSHOTS_BEFORE, Timestamp.valueOf(limite));
+    }
+
+    public List<StockDrift> findDrift() {
+        List<StockDrift> descuadres = new ArrayList<>();
+        jdbcTemplate.query(FIND_DRIFT, (RowCallbackHandler) rs -> {
+            int cantidad = rs.getInt("cantidad");
+            int calculado = rs.getInt("calculado");
+            if (cantidad != calculado) {
+                descuadres.add(new StockDrift(rs.getLong("id"), cantidad, calculado));
+            }
+        });
+        return descuadres;
+    }
+
+    private StockSnapshot toSnapshot(ResultSet rs, int rowNum) throws SQLException {
+        return StockSnapshot.builder()
+                .id(rs.getLong("id"))
+                .idFunko(rs.getLong("id_funko"))
+                .cantidad(rs.getInt("cantidad"))
+                .lastMovementId(rs.getLong("last_movement_id"))
+                .takenAt(rs.getTimestamp("taken_at").toLocalDateTime())
+                .build();
+    }
+}
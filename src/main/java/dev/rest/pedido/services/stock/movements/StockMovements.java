@@ -0,0 +1,149 @@
+package dev.rest.pedido.services.stock.movements;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Historial de stock: cada cambio de funkos.cantidad se guarda también como movimiento en la misma transacción.
+// El stock en un momento dado es la última foto anterior más los movimientos que no incluye. Cada
+// snapshot-interval se hace una foto nueva de los funkos que se han movido, así la cola que hay que sumar
+// es corta. La foto sólo cubre movimientos con más de snapshot-lag, para no saltarse los de transacciones
+// que todavía no han hecho commit; las fotos de más de snapshot-retention se borran salvo la última de
+// cada funko, y los movimientos se quedan siempre.
+@Slf4j
+@Component
+public class StockMovements {
+    private final StockMovementRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final long snapshotInterval;
+    private final Duration snapshotLag;
+    private final Duration snapshotRetention;
+    private final Counter registrados;
+    private final Counter fotos;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public StockMovements(StockMovementRepository repository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${stock.movements.snapshot-interval:60000}") long snapshotInterval,
+                          @Value("${stock.movements.snapshot-lag:60000}") long snapshotLag,
+                          @Value("${stock.movements.snapshot-retention:2592000000}") long snapshotRetention,
+                          MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotLag = Duration.ofMillis(snapshotLag);
+        this.snapshotRetention = Duration.ofMillis(snapshotRetention);
+        this.registrados = Counter.builder("stock.movements.recorded").register(meterRegistry);
+        this.fotos = Counter.builder("stock.movements.snapshots").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            Integer iniciales = transactionTemplate.execute(status -> repository.insertBaselines(LocalDateTime.now()));
+            if (iniciales != null && iniciales > 0) {
+                log.info("Guardada la foto inicial del stock de {} funkos", iniciales);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error guardando la foto inicial del stock", e);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compact, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // Se llama dentro de la transacción que cambia el stock: o se guardan los dos o ninguno
+    public void record(Map<Long, Integer> deltas, StockMovement.Motivo motivo) {
+        Map<Long, Integer> movimientos = new TreeMap<>(deltas);
+        movimientos.values().removeIf(delta -> delta == 0);
+        if (movimientos.isEmpty()) {
+            return;
+        }
+        repository.insertAll(movimientos, motivo, LocalDateTime.now());
+        registrados.increment(movimientos.size());
+    }
+
+    public void record(Long idFunko, int delta, StockMovement.Motivo motivo) {
+        record(Map.of(idFunko, delta), motivo);
+    }
+
+    public StockLevel stockAt(Long idFunko, LocalDateTime momento) {
+        var anterior = repository.findSnapshotAtOrBefore(idFunko, momento);
+        if (anterior.isPresent()) {
+            int cola = repository.sumAfter(idFunko, anterior.get().getLastMovementId(), momento);
+            return new StockLevel(idFunko, anterior.get().getCantidad() + cola, momento);
+        }
+        // Antes de la primera foto que queda: se deshacen desde ella los movimientos posteriores
+        var posterior = repository.findSnapshotAfter(idFunko, momento);
+        if (posterior.isPresent()) {
+            int deshechos = repository.sumBefore(idFunko, posterior.get().getLastMovementId(), momento);
+            return new StockLevel(idFunko, posterior.get().getCantidad() - deshechos, momento);
+        }
+        return new StockLevel(idFunko, repository.sumUntil(idFunko, momento), momento);
+    }
+
+    // Funkos cuyo stock no cuadra con sus movimientos. Con el ledger de stock activo la tabla funkos va
+    // por detrás hasta el siguiente volcado, así que puede haber descuadres de paso.
+    public List<StockDrift> drift() {
+        List<StockDrift> descuadres = repository.findDrift();
+        if (!descuadres.isEmpty()) {
+            log.warn("Stock descuadrado en {} funkos", descuadres.size());
+        }
+        return descuadres;
+    }
+
+    public void compact() {
+        try {
+            Integer tomadas = transactionTemplate.execute(status -> {
+                LocalDateTime corte = LocalDateTime.now().minus(snapshotLag);
+                long hasta = repository.lastMovementUntil(corte);
+                long desde = repository.lastSnapshotMovement();
+                int nuevas = 0;
+                if (hasta > desde) {
+                    Map<Long, Integer> deltas = repository.sumByFunko(desde, hasta);
+                    Map<Long, Integer> anteriores = repository.findLatestSnapshots(deltas.keySet());
+                    Map<Long, Integer> cantidades = new TreeMap<>();
+                    deltas.forEach((idFunko, delta) -> cantidades.put(idFunko, anteriores.getOrDefault(idFunko, 0) + delta));
+                    repository.insertSnapshots(cantidades, hasta, corte);
+                    nuevas = cantidades.size();
+                }
+                int borradas = repository.deleteSnapshotsBefore(LocalDateTime.now().minus(snapshotRetention));
+                if (borradas > 0) {
+                    log.info("Borradas {} fotos de stock antiguas", borradas);
+                }
+                return nuevas;
+            });
+            if (tomadas != null && tomadas > 0) {
+                fotos.increment(tomadas);
+                log.debug("Fotos de stock de {} funkos", tomadas);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error haciendo las fotos de stock", e);
+        }
+    }
+}
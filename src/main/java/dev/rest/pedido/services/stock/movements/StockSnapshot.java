@@ -0,0 +1,34 @@
+package dev.rest.pedido.services.stock.movements;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Stock de un funko sumando todos los movimientos hasta lastMovementId, que son los de antes de takenAt
+@Builder
+@Entity
+@Data
+@Table(name = "stock_snapshots", indexes = @Index(name = "idx_stock_snapshots_funko", columnList = "id_funko, taken_at"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "id_funko", nullable = false)
+    private Long idFunko;
+
+    @Column(nullable = false)
+    private int cantidad;
+
+    @Column(name = "last_movement_id", nullable = false)
+    private long lastMovementId;
+
+    @Column(name = "taken_at", nullable = false)
+    private LocalDateTime takenAt;
+}
@@ -59,7 +59,7 @@ public class UsersServiceImpl implements UsersService {
     }
 
     @Override
-    @Cacheable(key = "#id")
+    @Cacheable(key = "#id", sync = true)
     public UserInfoResponse findById(Long id, Pageable pageable) {
         log.info("Buscando usuario con ID: " + id);
         var user = usersRepository.findById(id).orElseThrow(() -> new UserNotFound(id));
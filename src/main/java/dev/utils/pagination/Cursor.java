@@ -0,0 +1,57 @@
+package dev.utils.pagination;
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+public record Cursor(
+        String sortBy,
+        Sort.Direction direction,
+        String id,
+        String value,
+        boolean backward
+) {
+    private static final String SEPARATOR = "|";
+
+    public static Cursor first(String sortBy, String direction) {
+        return new Cursor(sortBy, Sort.Direction.fromString(direction), null, null, false);
+    }
+
+    // Cada módulo pasa su excepción de petición incorrecta, así un cursor roto es un 400 de ese dominio
+    public static Cursor decode(String token, Function<String, ? extends RuntimeException> error) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|", 5);
+            if (parts.length < 4 || !parts[0].equals("n") && !parts[0].equals("p")) {
+                throw error.apply("Cursor de paginación no válido");
+            }
+            String value = parts.length == 5 ? parts[4] : null;
+            return new Cursor(parts[1], Sort.Direction.valueOf(parts[2]), parts[3], value, parts[0].equals("p"));
+        } catch (IllegalArgumentException e) {
+            throw error.apply("Cursor de paginación no válido");
+        }
+    }
+
+    // El id va como texto para que sirva igual con ids numéricos que con ObjectId
+    public Cursor next(Object id, String value) {
+        return new Cursor(sortBy, direction, String.valueOf(id), value, false);
+    }
+
+    public Cursor previous(Object id, String value) {
+        return new Cursor(sortBy, direction, String.valueOf(id), value, true);
+    }
+
+    public boolean isFirst() {
+        return id == null;
+    }
+
+    // Un valor null no lleva la última parte, para no confundirlo con el texto "null"
+    public String encode() {
+        String raw = String.join(SEPARATOR, backward ? "p" : "n", sortBy, direction.name(), id);
+        if (value != null) {
+            raw += SEPARATOR + value;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,26 @@
+package dev.utils.pagination;
+
+import java.util.List;
+import java.util.function.Function;
+
+public record CursorPage<T>(
+        List<T> content,
+        int size,
+        String nextCursor,
+        String prevCursor
+) {
+    // Las páginas por cursor son para recorrer colecciones grandes: se piden muchas páginas, no una enorme
+    public static final int MAX_SIZE = 100;
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return prevCursor != null;
+    }
+
+    public <R> CursorPage<R> map(Function<? super T, ? extends R> converter) {
+        return new CursorPage<>(content.stream().<R>map(converter).toList(), size, nextCursor, prevCursor);
+    }
+}
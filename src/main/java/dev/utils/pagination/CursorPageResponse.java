@@ -0,0 +1,31 @@
+package dev.utils.pagination;
+
+import java.util.List;
+
+public record CursorPageResponse<T>(
+        List<T> content,
+        int pageSize,
+        int totalPageElements,
+        boolean empty,
+        boolean hasNext,
+        boolean hasPrevious,
+        String nextCursor,
+        String prevCursor,
+        String sortBy,
+        String direction
+) {
+    public static <T> CursorPageResponse<T> of(CursorPage<T> page, String sortBy, String direction) {
+        return new CursorPageResponse<>(
+                page.content(),
+                page.size(),
+                page.content().size(),
+                page.content().isEmpty(),
+                page.hasNext(),
+                page.hasPrevious(),
+                page.nextCursor(),
+                page.prevCursor(),
+                sortBy,
+                direction
+        );
+    }
+}
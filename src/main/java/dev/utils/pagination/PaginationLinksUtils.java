@@ -37,11 +37,36 @@ public class PaginationLinksUtils {
         return linkHeader.toString();
     }
 
+    public String createLinkHeader(CursorPage<?> page, UriComponentsBuilder uriBuilder) {
+        final StringBuilder linkHeader = new StringBuilder();
+
+        if (page.hasNext()) {
+            String uri = constructUri(page.nextCursor(), page.size(), uriBuilder);
+            linkHeader.append(buildLinkHeader(uri, "next"));
+        }
+
+        if (page.hasPrevious()) {
+            String uri = constructUri(page.prevCursor(), page.size(), uriBuilder);
+            appendCommaIfNecessary(linkHeader);
+            linkHeader.append(buildLinkHeader(uri, "prev"));
+
+            uri = constructUri("", page.size(), uriBuilder);
+            appendCommaIfNecessary(linkHeader);
+            linkHeader.append(buildLinkHeader(uri, "first"));
+        }
+
+        return linkHeader.toString();
+    }
+
     private String constructUri(int newPageNumber, int size, UriComponentsBuilder uriBuilder) {
         return uriBuilder.replaceQueryParam("page", newPageNumber).replaceQueryParam("size", size).build().encode().toUriString();
     }
 
 
+    private String constructUri(String cursor, int size, UriComponentsBuilder uriBuilder) {
+        return uriBuilder.replaceQueryParam("cursor", cursor).replaceQueryParam("size", size).build().encode().toUriString();
+    }
+
     private String buildLinkHeader(final String uri, final String rel) {
         return "<" + uri + ">; rel=\"" + rel + "\"";
     }
@@ -0,0 +1,296 @@
+package dev.websockets.notifications.dispatcher;
+
+import dev.config.websocket.NotificationTopic;
+import dev.config.websocket.PendingNotification;
+import dev.config.websocket.WebSocketSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Cola acotada de notificaciones pendientes de enviar por websocket, atendida por un número fijo
+// de workers (uno por defecto, así se conserva el orden de los eventos).
+// Con una ventana de lote (batch.window-ms > 0) cada worker espera hasta esa ventana o hasta batch.max-events
+// notificaciones, se queda con la última de cada clave y las envía juntas en un solo frame.
+// dispatch devuelve un future que se completa cuando la notificación se ha enviado (o la ha sustituido otra
+// más reciente de su clave que ya se ha enviado) y falla si se descarta o si el envío da error.
+@Slf4j
+@Component
+public class NotificationDispatcher {
+    private final int capacidad;
+    private final OverflowPolicy overflowPolicy;
+    private final int workers;
+    private final boolean virtualThreads;
+    private final long batchWindowNanos;
+    private final int batchMaxEvents;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition noVacia = lock.newCondition();
+    private final Condition noLlena = lock.newCondition();
+    private final Deque<Entrega> cola = new ArrayDeque<>();
+    private final Map<Object, Entrega> pendientesPorClave = new HashMap<>();
+    private volatile boolean running = true;
+    private ExecutorService executor;
+
+    private final Timer latencia;
+    private final Counter descartadas;
+    private final Counter coalescidas;
+    private final Counter errores;
+    private final Counter lotes;
+
+    @Autowired
+    public NotificationDispatcher(@Value("${notifications.dispatcher.capacity:1000}") int capacidad,
+                                  @Value("${notifications.dispatcher.overflow:BLOCK}") OverflowPolicy overflowPolicy,
+                                  @Value("${notifications.dispatcher.workers:1}") int workers,
+                                  @Value("${notifications.dispatcher.virtual-threads:false}") boolean virtualThreads,
+                                  @Value("${notifications.dispatcher.batch.window-ms:0}") long batchWindowMs,
+                                  @Value("${notifications.dispatcher.batch.max-events:500}") int batchMaxEvents,
+                                  MeterRegistry meterRegistry) {
+        this.capacidad = capacidad;
+        this.overflowPolicy = overflowPolicy;
+        this.workers = workers;
+        this.virtualThreads = virtualThreads;
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+        this.batchMaxEvents = Math.max(1, batchMaxEvents);
+        Gauge.builder("notifications.queue.depth", this, NotificationDispatcher::queueDepth)
+                .description("Notificaciones pendientes de enviar")
+                .register(meterRegistry);
+        this.latencia = Timer.builder("notifications.dispatch.latency")
+                .description("Tiempo desde que se encola una notificación hasta que se envía")
+                .register(meterRegistry);
+        this.descartadas = Counter.builder("notifications.dropped").register(meterRegistry);
+        this.coalescidas = Counter.builder("notifications.coalesced").register(meterRegistry);
+        this.errores = Counter.builder("notifications.errors").register(meterRegistry);
+        this.lotes = Counter.builder("notifications.batches").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = createExecutor();
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::work);
+        }
+        log.info("Dispatcher de notificaciones iniciado: capacidad {}, política {}, {} workers{}",
+                capacidad, overflowPolicy, workers, virtualThreads ? " virtuales" : "");
+    }
+
+    // La clave identifica lo que describe la notificación (p. ej. FUNKOS:1) y sólo se usa con COALESCE
+    public CompletableFuture<Void> dispatch(Object key, String message, WebSocketSender sender) {
+        return dispatch(key, message, null, sender);
+    }
+
+    // Con topic el sender sólo entrega la notificación a las sesiones suscritas a ella
+    public CompletableFuture<Void> dispatch(Object key, String message, NotificationTopic topic, WebSocketSender sender) {
+        lock.lock();
+        try {
+            if (overflowPolicy == OverflowPolicy.COALESCE && key != null) {
+                Entrega pendiente = pendientesPorClave.get(key);
+                if (pendiente != null) {
+                    pendiente.message = message;
+                    pendiente.topic = topic;
+                    pendiente.sender = sender;
+                    coalescidas.increment();
+                    return pendiente.enviada;
+                }
+            }
+            while (cola.size() >= capacidad) {
+                if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    Entrega descartada = cola.pollFirst();
+                    pendientesPorClave.remove(descartada.key, descartada);
+                    descartadas.increment();
+                    descartada.enviada.completeExceptionally(new IllegalStateException("Notificación descartada por cola llena"));
+                    log.warn("Cola de notificaciones llena, se descarta la notificación {}", descartada.key);
+                } else {
+                    noLlena.awaitUninterruptibly();
+                }
+            }
+            Entrega entrega = new Entrega(key, message, topic, sender);
+            cola.addLast(entrega);
+            if (key != null) {
+                pendientesPorClave.put(key, entrega);
+            }
+            noVacia.signal();
+            return entrega.enviada;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return cola.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Se intenta vaciar la cola antes de parar los workers
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        lock.lock();
+        try {
+            noVacia.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("No se han podido enviar {} notificaciones pendientes", queueDepth());
+            executor.shutdownNow();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            List<Entrega> lote = new ArrayList<>();
+            lock.lock();
+            try {
+                while (cola.isEmpty()) {
+                    if (!running) {
+                        return;
+                    }
+                    noVacia.awaitUninterruptibly();
+                }
+                if (batchWindowNanos > 0) {
+                    long restante = batchWindowNanos;
+                    while (running && cola.size() < batchMaxEvents && restante > 0) {
+                        try {
+                            restante = noVacia.awaitNanos(restante);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+                int maximo = batchWindowNanos > 0 ? batchMaxEvents : 1;
+                while (!cola.isEmpty() && lote.size() < maximo) {
+                    Entrega entrega = cola.pollFirst();
+                    pendientesPorClave.remove(entrega.key, entrega);
+                    lote.add(entrega);
+                }
+                noLlena.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (lote.size() == 1) {
+                send(lote.get(0));
+            } else {
+                send(lote);
+            }
+        }
+    }
+
+    private void send(Entrega entrega) {
+        try {
+            if (entrega.topic != null) {
+                entrega.sender.sendMessage(entrega.message, entrega.topic);
+            } else {
+                entrega.sender.sendMessage(entrega.message);
+            }
+            entrega.enviada.complete(null);
+        } catch (Exception e) {
+            errores.increment();
+            entrega.enviada.completeExceptionally(e);
+            log.error("Error al enviar el mensaje a través del servicio WebSocket", e);
+        } finally {
+            latencia.record(System.nanoTime() - entrega.encolada, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Dentro del lote sólo se envía la última notificación de cada clave, en la posición de la última
+    private void send(List<Entrega> lote) {
+        Map<Object, Entrega> ultimas = new LinkedHashMap<>();
+        for (Entrega entrega : lote) {
+            Object clave = entrega.key != null ? entrega.key : entrega;
+            if (ultimas.remove(clave) != null) {
+                coalescidas.increment();
+            }
+            ultimas.put(clave, entrega);
+        }
+        Map<WebSocketSender, List<PendingNotification>> porSender = new LinkedHashMap<>();
+        for (Entrega entrega : ultimas.values()) {
+            porSender.computeIfAbsent(entrega.sender, k -> new ArrayList<>())
+                    .add(new PendingNotification(entrega.message, entrega.topic));
+        }
+        Exception error = null;
+        try {
+            for (Map.Entry<WebSocketSender, List<PendingNotification>> envio : porSender.entrySet()) {
+                envio.getKey().sendMessages(envio.getValue());
+                lotes.increment();
+            }
+        } catch (Exception e) {
+            error = e;
+            errores.increment();
+            log.error("Error al enviar el lote de mensajes a través del servicio WebSocket", e);
+        } finally {
+            long ahora = System.nanoTime();
+            lote.forEach(entrega -> latencia.record(ahora - entrega.encolada, TimeUnit.NANOSECONDS));
+        }
+        // Las sustituidas dentro del lote cuentan como enviadas con la que las sustituye
+        for (Entrega entrega : lote) {
+            if (error == null) {
+                entrega.enviada.complete(null);
+            } else {
+                entrega.enviada.completeExceptionally(error);
+            }
+        }
+    }
+
+    // Los hilos virtuales necesitan Java 21; con una JVM anterior se usan hilos de plataforma
+    private ExecutorService createExecutor() {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Los hilos virtuales no están disponibles en esta JVM, se usan hilos de plataforma");
+            }
+        }
+        AtomicInteger contador = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "notification-dispatcher-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(workers, threadFactory);
+    }
+
+    private static final class Entrega {
+        private final Object key;
+        private final long encolada = System.nanoTime();
+        private final CompletableFuture<Void> enviada = new CompletableFuture<>();
+        private String message;
+        private NotificationTopic topic;
+        private WebSocketSender sender;
+
+        private Entrega(Object key, String message, NotificationTopic topic, WebSocketSender sender) {
+            this.key = key;
+            this.message = message;
+            this.topic = topic;
+            this.sender = sender;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package dev.websockets.notifications.dispatcher;
+
+public enum OverflowPolicy {
+    // el productor espera a que haya hueco
+    BLOCK,
+    // se descarta la notificación más antigua de la cola
+    DROP_OLDEST,
+    // una notificación pendiente de la misma clave se sustituye por la nueva; si no hay ninguna y la cola está llena, espera
+    COALESCE
+}
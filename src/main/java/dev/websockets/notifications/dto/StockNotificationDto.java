@@ -0,0 +1,9 @@
+package dev.websockets.notifications.dto;
+
+// cambio < 0 cuando se reserva stock y > 0 cuando se devuelve
+public record StockNotificationDto(
+        Long idFunko,
+
+        Integer cambio
+) {
+}
@@ -0,0 +1,42 @@
+package dev.websockets.notifications.outbox;
+
+import dev.config.websocket.NotificationTopic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Las notificaciones se guardan en la tabla outbox dentro de la transacción del cambio: si hace rollback
+// no se envía nada y si el nodo cae antes de enviarlas, el relay las recoge igualmente.
+@Component
+public class Outbox {
+    private final OutboxRepository outboxRepository;
+    private final OutboxRelay outboxRelay;
+
+    @Autowired
+    public Outbox(OutboxRepository outboxRepository, OutboxRelay outboxRelay) {
+        this.outboxRepository = outboxRepository;
+        this.outboxRelay = outboxRelay;
+    }
+
+    @Transactional
+    public void publish(String key, String message, NotificationTopic topic) {
+        outboxRepository.save(OutboxEvent.builder()
+                .eventKey(key)
+                .payload(message)
+                .tipo(topic != null ? topic.type() : null)
+                .entityId(topic != null ? topic.id() : null)
+                .categoria(topic != null ? topic.categoria() : null)
+                .build());
+        // Tras el commit se avisa al relay para no esperar a la siguiente pasada
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outboxRelay.wakeUp();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package dev.websockets.notifications.outbox;
+
+import dev.websockets.notifications.models.Notification;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Notificación guardada en la misma transacción que el cambio que describe; se purga por antigüedad
+@Builder
+@Entity
+@Data
+@Table(name = "outbox", indexes = @Index(name = "idx_outbox_created_at", columnList = "created_at"))
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_key")
+    private String eventKey;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column
+    private Notification.Tipo tipo;
+
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column
+    private String categoria;
+
+    @Column(name = "created_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
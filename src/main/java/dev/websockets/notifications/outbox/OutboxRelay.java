@@ -0,0 +1,218 @@
+package dev.websockets.notifications.outbox;
+
+import dev.config.websocket.NotificationTopic;
+import dev.config.websocket.WebSocketHandler;
+import dev.websockets.notifications.dispatcher.NotificationDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lleva las filas del outbox al dispatcher de notificaciones (websocket y SSE) por lotes, en orden de id.
+// Las sesiones son de cada nodo, así que todas las réplicas leen todas las filas: cada una guarda en memoria
+// hasta qué id ha enviado y sólo avanza cuando el dispatcher confirma el envío; si falla o se descarta,
+// la siguiente pasada repite desde ahí (entrega al menos una vez a las sesiones del nodo). Al arrancar se
+// empieza por el final, porque el nodo aún no tiene sesiones a las que enviar lo anterior.
+// Un id que falta puede ser una transacción que todavía no ha hecho commit: se salta cuando han pasado gap-wait
+// desde que el relay vio el hueco por primera vez, no desde que se escribió la fila siguiente.
+// Las filas no las borra el relay sino la purga, cuando tienen más de retention.
+@Slf4j
+@Component
+public class OutboxRelay {
+    private final OutboxRepository outboxRepository;
+    private final NotificationDispatcher notificationDispatcher;
+    private final WebSocketHandler webSocketFunkosHandler;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long interval;
+    private final long gapWait;
+    private final long sendTimeout;
+    private final long retention;
+    private final long purgeInterval;
+    private final AtomicLong retrasoMaximo = new AtomicLong();
+    // Primer id de cada hueco y cuándo se vio; sólo lo toca el hilo del relay
+    private final Map<Long, Long> huecos = new HashMap<>();
+    private final Timer retraso;
+    private final Counter enviadas;
+    private final Counter purgadas;
+    private volatile long posicion = -1;
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public OutboxRelay(OutboxRepository outboxRepository,
+                       NotificationDispatcher notificationDispatcher,
+                       WebSocketHandler webSocketFunkosHandler,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.interval:1000}") long interval,
+                       @Value("${outbox.relay.gap-wait:5000}") long gapWait,
+                       @Value("${outbox.relay.send-timeout:30000}") long sendTimeout,
+                       @Value("${outbox.retention:3600000}") long retention,
+                       @Value("${outbox.purge-interval:60000}") long purgeInterval,
+                       MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.webSocketFunkosHandler = webSocketFunkosHandler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.gapWait = gapWait;
+        this.sendTimeout = sendTimeout;
+        this.retention = retention;
+        this.purgeInterval = purgeInterval;
+        this.retraso = Timer.builder("outbox.relay.lag")
+                .description("Tiempo desde que se escribe una fila del outbox hasta que se envía")
+                .register(meterRegistry);
+        this.enviadas = Counter.builder("outbox.relayed").register(meterRegistry);
+        this.purgadas = Counter.builder("outbox.purged").register(meterRegistry);
+        Gauge.builder("outbox.relay.oldest", retrasoMaximo, AtomicLong::get)
+                .description("Antigüedad en ms de la fila más antigua del último lote")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::relay, interval, interval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::purge, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+    }
+
+    // Un único hilo hace todos los envíos, así que el orden del outbox se respeta
+    public void wakeUp() {
+        try {
+            scheduler.execute(this::relay);
+        } catch (RejectedExecutionException e) {
+            log.debug("Relay del outbox parado, no se atiende el aviso");
+        }
+    }
+
+    public int relay() {
+        int total = 0;
+        try {
+            if (posicion < 0) {
+                posicion = outboxRepository.findMaxId();
+                log.info("Relay del outbox empezando después del id {}", posicion);
+            }
+            int enviadasLote;
+            do {
+                enviadasLote = relayBatch();
+                total += enviadasLote;
+            } while (enviadasLote == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Error enviando las notificaciones del outbox, se reintentará", e);
+        }
+        return total;
+    }
+
+    public int purge() {
+        try {
+            LocalDateTime limite = LocalDateTime.now().minus(Duration.ofMillis(retention));
+            Integer borradas = transactionTemplate.execute(status -> outboxRepository.deleteCreatedBefore(limite));
+            int n = borradas != null ? borradas : 0;
+            if (n > 0) {
+                purgadas.increment(n);
+                log.debug("Purgadas {} filas del outbox", n);
+            }
+            return n;
+        } catch (RuntimeException e) {
+            log.error("Error purgando el outbox", e);
+            return 0;
+        }
+    }
+
+    public long position() {
+        return posicion;
+    }
+
+    private int relayBatch() {
+        List<OutboxEvent> siguientes = outboxRepository.findAfter(posicion, PageRequest.of(0, batchSize));
+        if (siguientes.isEmpty()) {
+            retrasoMaximo.set(0);
+            return 0;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+        retrasoMaximo.set(Duration.between(siguientes.get(0).getCreatedAt(), ahora).toMillis());
+
+        List<OutboxEvent> lote = new ArrayList<>();
+        long esperado = posicion + 1;
+        long instante = System.currentTimeMillis();
+        for (OutboxEvent evento : siguientes) {
+            if (evento.getId() != esperado) {
+                long vistoEn = huecos.computeIfAbsent(esperado, id -> instante);
+                if (instante - vistoEn < gapWait) {
+                    break;
+                }
+                log.warn("Saltando los ids {} a {} del outbox tras esperarlos {} ms", esperado, evento.getId() - 1, instante - vistoEn);
+            }
+            lote.add(evento);
+            esperado = evento.getId() + 1;
+        }
+
+        List<CompletableFuture<Void>> envios = new ArrayList<>(lote.size());
+        for (OutboxEvent evento : lote) {
+            NotificationTopic topic = evento.getTipo() != null
+                    ? new NotificationTopic(evento.getTipo(), evento.getEntityId(), evento.getCategoria())
+                    : null;
+            envios.add(notificationDispatcher.dispatch(evento.getEventKey(), evento.getPayload(), topic, webSocketFunkosHandler));
+        }
+
+        // Se avanza hasta la última fila enviada sin fallos antes que ella
+        int n = 0;
+        for (int i = 0; i < lote.size(); i++) {
+            OutboxEvent evento = lote.get(i);
+            try {
+                envios.get(i).get(sendTimeout, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Notificación {} del outbox sin enviar, se repetirá desde ahí", evento.getId(), e);
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            posicion = evento.getId();
+            retraso.record(Duration.between(evento.getCreatedAt(), LocalDateTime.now()));
+            n++;
+        }
+        long enviadoHasta = posicion;
+        huecos.keySet().removeIf(id -> id <= enviadoHasta);
+        if (n > 0) {
+            enviadas.increment(n);
+            log.debug("Enviadas {} notificaciones del outbox", n);
+        }
+        return n;
+    }
+}
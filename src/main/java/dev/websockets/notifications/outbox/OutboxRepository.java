@@ -0,0 +1,26 @@
+package dev.websockets.notifications.outbox;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Cada réplica lee todas las filas desde su propia posición: el relay no bloquea ni borra nada
+    @Query("SELECT e FROM OutboxEvent e WHERE e.id > :desde ORDER BY e.id")
+    List<OutboxEvent> findAfter(@Param("desde") long desde, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM OutboxEvent e")
+    long findMaxId();
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.createdAt < :limite")
+    int deleteCreatedBefore(@Param("limite") LocalDateTime limite);
+}
@@ -6,6 +6,7 @@ import dev.rest.categoria.mappers.CategoriaMapper;
 import dev.rest.categoria.models.Categoria;
 import dev.rest.categoria.repositories.CategoriaRepository;
 import dev.rest.categoria.services.CategoriaServiceImpl;
+import dev.rest.funkos.services.search.FunkoIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -34,6 +35,8 @@ class CategoriaServiceImplTest {
     private CategoriaRepository categoriaRepository;
     @Mock
     private CategoriaMapper categoriaMapper;
+    @Mock
+    private FunkoIndex funkoIndex;
     @InjectMocks
     private CategoriaServiceImpl categoriaService;
     @Captor
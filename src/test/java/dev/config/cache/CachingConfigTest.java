@@ -0,0 +1,72 @@
+package dev.config.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingConfigTest {
+
+    private final CachesProperties properties = new CachesProperties(
+            new CachesProperties.Spec(100L, Duration.ofMinutes(10)),
+            Map.of("pedidos", new CachesProperties.Spec(10L, null)),
+            null
+    );
+    private final CacheManager cacheManager = new CachingConfig().cacheManager(properties, new LoopbackInvalidationBus(), Optional.empty(), Optional.empty());
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(Cache cache) {
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+    }
+
+    @Test
+    void specUsesDefaults() {
+        assertAll(
+                () -> assertEquals(10L, properties.spec("pedidos").maxSize()),
+                () -> assertEquals(Duration.ofMinutes(10), properties.spec("pedidos").ttl()),
+                () -> assertEquals(100L, properties.spec("otra").maxSize())
+        );
+    }
+
+    @Test
+    void clusterCaches() {
+        assertAll(
+                () -> assertInstanceOf(TwoLevelCache.class, cacheManager.getCache("funkos")),
+                () -> assertFalse(cacheManager.getCache("pedidos") instanceof TwoLevelCache)
+        );
+    }
+
+    @Test
+    void cacheIsBounded() {
+        Cache pedidos = cacheManager.getCache("pedidos");
+        for (int i = 0; i < 1000; i++) {
+            pedidos.put(i, "pedido " + i);
+        }
+        nativeCache(pedidos).cleanUp();
+
+        assertAll(
+                () -> assertTrue(nativeCache(pedidos).estimatedSize() <= 10),
+                () -> assertTrue(nativeCache(pedidos).stats().evictionCount() >= 990)
+        );
+    }
+
+    @Test
+    void cacheRecordsStats() {
+        Cache funkos = cacheManager.getCache("funkos");
+        funkos.put(1L, "funko");
+        funkos.get(1L);
+        funkos.get(2L);
+
+        CacheStats stats = nativeCache(funkos).stats();
+        assertAll(
+                () -> assertEquals(1, stats.hitCount()),
+                () -> assertEquals(1, stats.missCount())
+        );
+    }
+}
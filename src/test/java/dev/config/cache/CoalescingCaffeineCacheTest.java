@@ -0,0 +1,117 @@
+package dev.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingCaffeineCacheTest {
+    private static final int HILOS = 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CoalescingCaffeineCache cache = new CoalescingCaffeineCache("funkos",
+            Caffeine.newBuilder().recordStats().build(), true, meterRegistry);
+
+    @Test
+    void concurrentLoadsAreCoalesced() throws Exception {
+        AtomicInteger lecturas = new AtomicInteger();
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        try {
+            Future<String> primera = executor.submit(() -> cache.get(1L, () -> {
+                lecturas.incrementAndGet();
+                cargando.countDown();
+                liberar.await();
+                return "funko";
+            }));
+            cargando.await();
+
+            List<Future<String>> resto = new ArrayList<>();
+            for (int i = 1; i < HILOS; i++) {
+                resto.add(executor.submit(() -> cache.get(1L, () -> {
+                    lecturas.incrementAndGet();
+                    return "otro";
+                })));
+            }
+            Thread.sleep(200);
+            liberar.countDown();
+
+            assertEquals("funko", primera.get(5, TimeUnit.SECONDS));
+            for (Future<String> future : resto) {
+                assertEquals("funko", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertAll(
+                () -> assertEquals(1, lecturas.get()),
+                () -> assertEquals(1, cache.loads()),
+                () -> assertEquals(HILOS - 1, cache.coalesced()),
+                () -> assertEquals(HILOS - 1, meterRegistry.get("cache.loads.coalesced").tag("cache", "funkos").counter().count())
+        );
+    }
+
+    @Test
+    void evictDuringLoadIsNotLost() throws Exception {
+        CountDownLatch cargando = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> carga = executor.submit(() -> cache.get(1L, () -> {
+                cargando.countDown();
+                liberar.await();
+                return "viejo";
+            }));
+            cargando.await();
+            // El evict espera a que termine la carga y después la descarta
+            Future<?> evict = executor.submit(() -> cache.evict(1L));
+            Thread.sleep(100);
+            liberar.countDown();
+
+            assertEquals("viejo", carga.get(5, TimeUnit.SECONDS));
+            evict.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void sequentialLoadsAreNotCoalesced() {
+        assertEquals("a", cache.get(1L, () -> "a"));
+        cache.evict(1L);
+        assertEquals("b", cache.get(1L, () -> "b"));
+
+        assertAll(
+                () -> assertEquals(2, cache.loads()),
+                () -> assertEquals(0, cache.coalesced())
+        );
+    }
+
+    @Test
+    void exceptionIsPropagated() {
+        Cache.ValueRetrievalException error = assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get(1L, () -> {
+                    throw new IllegalArgumentException("no existe");
+                }));
+
+        assertAll(
+                () -> assertInstanceOf(IllegalArgumentException.class, error.getCause()),
+                () -> assertEquals("ok", cache.get(1L, () -> "ok"))
+        );
+    }
+}
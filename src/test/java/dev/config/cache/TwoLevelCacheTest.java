@@ -0,0 +1,105 @@
+package dev.config.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Dos contextos en la misma JVM hacen de dos réplicas unidas por el LoopbackInvalidationBus
+class TwoLevelCacheTest {
+    private static final Map<Long, Double> BASE_DE_DATOS = new ConcurrentHashMap<>();
+    private static final Map<String, Cache> COMPARTIDA = new ConcurrentHashMap<>();
+    private static final AtomicInteger LECTURAS = new AtomicInteger();
+
+    public static class PrecioService {
+        @Cacheable(cacheNames = "funkos", key = "#id", sync = true)
+        public Double findPrecio(Long id) {
+            LECTURAS.incrementAndGet();
+            return BASE_DE_DATOS.get(id);
+        }
+
+        @CachePut(cacheNames = "funkos", key = "#id")
+        public Double updatePrecio(Long id, Double precio) {
+            BASE_DE_DATOS.put(id, precio);
+            return precio;
+        }
+    }
+
+    @Configuration
+    @EnableCaching
+    @Import({CachingConfig.class, LoopbackInvalidationBus.class})
+    static class Nodo {
+        @Bean
+        public PrecioService precioService() {
+            return new PrecioService();
+        }
+    }
+
+    @Configuration
+    @Import(Nodo.class)
+    static class NodoConCompartida {
+        @Bean
+        public SharedCacheProvider sharedCacheProvider() {
+            return name -> COMPARTIDA.computeIfAbsent(name, ConcurrentMapCache::new);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        BASE_DE_DATOS.clear();
+        COMPARTIDA.clear();
+        LECTURAS.set(0);
+        BASE_DE_DATOS.put(1L, 10.0);
+    }
+
+    @Test
+    void updateEvictsOtherNodes() {
+        try (var nodoA = new AnnotationConfigApplicationContext(Nodo.class);
+             var nodoB = new AnnotationConfigApplicationContext(Nodo.class)) {
+            PrecioService a = nodoA.getBean(PrecioService.class);
+            PrecioService b = nodoB.getBean(PrecioService.class);
+
+            assertEquals(10.0, a.findPrecio(1L));
+            assertEquals(10.0, b.findPrecio(1L));
+            assertEquals(10.0, b.findPrecio(1L));
+            a.updatePrecio(1L, 20.0);
+
+            assertAll(
+                    () -> assertEquals(20.0, b.findPrecio(1L)),
+                    () -> assertEquals(20.0, a.findPrecio(1L)),
+                    () -> assertEquals(3, LECTURAS.get())
+            );
+        }
+    }
+
+    @Test
+    void updateWithSharedCache() {
+        try (var nodoA = new AnnotationConfigApplicationContext(NodoConCompartida.class);
+             var nodoB = new AnnotationConfigApplicationContext(NodoConCompartida.class)) {
+            PrecioService a = nodoA.getBean(PrecioService.class);
+            PrecioService b = nodoB.getBean(PrecioService.class);
+
+            assertEquals(10.0, a.findPrecio(1L));
+            assertEquals(10.0, b.findPrecio(1L));
+            a.updatePrecio(1L, 20.0);
+
+            assertAll(
+                    () -> assertEquals(20.0, b.findPrecio(1L)),
+                    () -> assertEquals(1, LECTURAS.get())
+            );
+        }
+    }
+}
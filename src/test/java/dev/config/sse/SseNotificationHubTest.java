@@ -0,0 +1,82 @@
+package dev.config.sse;
+
+import dev.config.websocket.NotificationReplayBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseNotificationHubTest {
+
+    private final CountDownLatch bloqueo = new CountDownLatch(1);
+    private final CountDownLatch enviando = new CountDownLatch(1);
+    private SseNotificationHub hub;
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+        assertTrue(condicion.getAsBoolean());
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Un único hilo de envío: sin el vigilante el suscriptor atascado lo bloquearía para todos
+        hub = new SseNotificationHub(new NotificationReplayBuffer(100), Executors.newScheduledThreadPool(1),
+                Executors.newSingleThreadScheduledExecutor(), 16, 60_000, 0, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bloqueo.countDown();
+        hub.close();
+    }
+
+    @Test
+    void stalledSubscriberIsClosedWithoutStoppingTheOthers() throws InterruptedException {
+        SseEmitter atascado = new SseEmitter(60_000L) {
+            @Override
+            public void send(Set<DataWithMediaType> datos) {
+                enviando.countDown();
+                // Como una escritura en un socket que el cliente no lee: ni siquiera responde a la interrupción
+                while (true) {
+                    try {
+                        bloqueo.await();
+                        return;
+                    } catch (InterruptedException e) {
+                        // se sigue esperando
+                    }
+                }
+            }
+        };
+        List<Set<DataWithMediaType>> recibidos = new CopyOnWriteArrayList<>();
+        SseEmitter normal = new SseEmitter(60_000L) {
+            @Override
+            public void send(Set<DataWithMediaType> datos) {
+                recibidos.add(datos);
+            }
+        };
+
+        hub.subscribe(atascado, null);
+        hub.onNotifications(List.of(new NotificationReplayBuffer.Entry(1, null, "{\"id\":1}")));
+        assertTrue(enviando.await(5, TimeUnit.SECONDS));
+
+        hub.subscribe(normal, null);
+        hub.onNotifications(List.of(new NotificationReplayBuffer.Entry(2, null, "{\"id\":2}")));
+
+        esperar(() -> recibidos.size() == 1);
+        assertEquals(1, hub.size());
+    }
+}
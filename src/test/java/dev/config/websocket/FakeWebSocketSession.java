@@ -0,0 +1,131 @@
+package dev.config.websocket;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+// Sesión en memoria para los tests del fan-out; con un latch, cada envío espera a que se libere
+class FakeWebSocketSession implements WebSocketSession {
+    private final String id;
+    private final CountDownLatch bloqueo;
+    private final long retardoMs;
+    private final Map<String, Object> attributes = new HashMap<>();
+    final List<WebSocketMessage<?>> recibidos = new CopyOnWriteArrayList<>();
+    volatile boolean open = true;
+    volatile CloseStatus closeStatus;
+
+    FakeWebSocketSession(String id) {
+        this(id, null, 0);
+    }
+
+    FakeWebSocketSession(String id, CountDownLatch bloqueo, long retardoMs) {
+        this.id = id;
+        this.bloqueo = bloqueo;
+        this.retardoMs = retardoMs;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        try {
+            if (bloqueo != null) {
+                bloqueo.await();
+            }
+            if (retardoMs > 0) {
+                Thread.sleep(retardoMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        recibidos.add(message);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return URI.create("ws://localhost/ws/funkos");
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return new HttpHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return List.of();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+        open = false;
+        closeStatus = status;
+    }
+}
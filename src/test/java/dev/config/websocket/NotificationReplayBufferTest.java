@@ -0,0 +1,68 @@
+package dev.config.websocket;
+
+import dev.websockets.notifications.models.Notification;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationReplayBufferTest {
+    private static final long INICIO = 1_000_000;
+
+    private final NotificationTopic topic = new NotificationTopic(Notification.Tipo.UPDATE, 1L, "Marvel");
+
+    @Test
+    void appendAddsSequence() {
+        NotificationReplayBuffer replay = new NotificationReplayBuffer(4, INICIO);
+
+        NotificationReplayBuffer.Entry entry = replay.append("{\"entity\":\"FUNKOS\"}", topic);
+
+        assertAll(
+                () -> assertEquals(INICIO + 1, entry.seq()),
+                () -> assertEquals("{\"seq\":" + (INICIO + 1) + ",\"entity\":\"FUNKOS\"}", entry.message()),
+                () -> assertEquals(INICIO + 1, replay.lastSeq())
+        );
+    }
+
+    @Test
+    void sinceReturnsOnlyMissedEvents() {
+        NotificationReplayBuffer replay = new NotificationReplayBuffer(4, INICIO);
+        for (int i = 0; i < 3; i++) {
+            replay.append("{\"n\":" + i + "}", topic);
+        }
+
+        assertAll(
+                () -> assertEquals(List.of(INICIO + 2, INICIO + 3), seqs(replay, INICIO + 1)),
+                () -> assertEquals(List.of(), seqs(replay, INICIO + 3)),
+                () -> assertTrue(replay.since(INICIO + 4).isEmpty())
+        );
+    }
+
+    @Test
+    void gapTooLargeRequiresResync() {
+        NotificationReplayBuffer replay = new NotificationReplayBuffer(4, INICIO);
+        for (int i = 0; i < 10; i++) {
+            replay.append("{\"n\":" + i + "}", topic);
+        }
+
+        assertAll(
+                () -> assertEquals(List.of(INICIO + 7, INICIO + 8, INICIO + 9, INICIO + 10), seqs(replay, INICIO + 6)),
+                () -> assertTrue(replay.since(INICIO + 5).isEmpty()),
+                () -> assertTrue(replay.since(INICIO - 10).isEmpty())
+        );
+    }
+
+    @Test
+    void clientFromPreviousRunGetsEverythingSinceStartup() {
+        NotificationReplayBuffer replay = new NotificationReplayBuffer(4, INICIO);
+        replay.append("{\"n\":0}", topic);
+        replay.append("{\"n\":1}", topic);
+
+        assertEquals(List.of(INICIO + 1, INICIO + 2), seqs(replay, INICIO - 500));
+    }
+
+    private static List<Long> seqs(NotificationReplayBuffer replay, long lastSeq) {
+        return replay.since(lastSeq).orElseThrow().stream().map(NotificationReplayBuffer.Entry::seq).toList();
+    }
+}
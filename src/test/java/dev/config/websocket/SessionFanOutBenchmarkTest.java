@@ -0,0 +1,63 @@
+package dev.config.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+// Benchmark manual, no se ejecuta en el build: ./gradlew test -Dbenchmark=true --tests '*SessionFanOutBenchmarkTest'
+// 10.000 sesiones, el 1% lentas (20 ms por envío). Se mide cuánto tardan en recibir el mensaje las rápidas.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SessionFanOutBenchmarkTest {
+    private static final int SESIONES = 10_000;
+    private static final int MENSAJES = 20;
+    private static final String PAYLOAD = "{\"entity\":\"FUNKOS\",\"type\":\"UPDATE\",\"data\":{\"id\":1,\"nombre\":\"Funko\",\"precio\":19.99}}";
+
+    private static List<FakeWebSocketSession> sesiones() {
+        List<FakeWebSocketSession> sesiones = new ArrayList<>(SESIONES);
+        for (int i = 0; i < SESIONES; i++) {
+            sesiones.add(new FakeWebSocketSession(String.valueOf(i), null, i % 100 == 0 ? 20 : 0));
+        }
+        return sesiones;
+    }
+
+    private static boolean rapidasCompletas(List<FakeWebSocketSession> sesiones, int mensajes) {
+        for (int i = 0; i < sesiones.size(); i++) {
+            if (i % 100 != 0 && sesiones.get(i).recibidos.size() < mensajes) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void serialVsFanOut() throws Exception {
+        List<FakeWebSocketSession> serial = sesiones();
+        long inicio = System.nanoTime();
+        for (int m = 0; m < MENSAJES; m++) {
+            for (FakeWebSocketSession session : serial) {
+                session.sendMessage(new TextMessage(PAYLOAD));
+            }
+        }
+        double serialMs = (System.nanoTime() - inicio) / 1e6;
+
+        List<FakeWebSocketSession> paralelas = sesiones();
+        SessionFanOut fanOut = new SessionFanOut(Executors.newFixedThreadPool(8), 5000, 512 * 1024, SlowConsumerPolicy.DROP);
+        paralelas.forEach(fanOut::register);
+        inicio = System.nanoTime();
+        for (int m = 0; m < MENSAJES; m++) {
+            fanOut.broadcast(PAYLOAD);
+        }
+        while (!rapidasCompletas(paralelas, MENSAJES)) {
+            Thread.sleep(1);
+        }
+        double fanOutMs = (System.nanoTime() - inicio) / 1e6;
+        fanOut.close();
+
+        System.out.printf("%d sesiones x %d mensajes: bucle serie %.0f ms, fan-out (sesiones rápidas servidas) %.0f ms%n",
+                SESIONES, MENSAJES, serialMs, fanOutMs);
+    }
+}
@@ -0,0 +1,110 @@
+package dev.config.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionFanOutTest {
+
+    private final CountDownLatch bloqueo = new CountDownLatch(1);
+    private SessionFanOut fanOut;
+
+    private SessionFanOut fanOut(int bufferSizeLimit, SlowConsumerPolicy policy) {
+        fanOut = new SessionFanOut(Executors.newFixedThreadPool(4), 5000, bufferSizeLimit, policy);
+        return fanOut;
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+        assertTrue(condicion.getAsBoolean());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        bloqueo.countDown();
+        fanOut.close();
+    }
+
+    @Test
+    void broadcastEncodesOnce() throws InterruptedException {
+        fanOut(1024, SlowConsumerPolicy.DROP);
+        List<FakeWebSocketSession> sesiones = List.of(new FakeWebSocketSession("1"), new FakeWebSocketSession("2"), new FakeWebSocketSession("3"));
+        sesiones.forEach(fanOut::register);
+
+        fanOut.broadcast("{\"type\":\"UPDATE\"}");
+        esperar(() -> sesiones.stream().allMatch(s -> s.recibidos.size() == 1));
+
+        assertAll(
+                () -> assertEquals("{\"type\":\"UPDATE\"}", sesiones.get(0).recibidos.get(0).getPayload()),
+                () -> assertSame(sesiones.get(0).recibidos.get(0), sesiones.get(1).recibidos.get(0)),
+                () -> assertSame(sesiones.get(0).recibidos.get(0), sesiones.get(2).recibidos.get(0))
+        );
+    }
+
+    @Test
+    void slowConsumerDoesNotStallOthers() throws InterruptedException {
+        fanOut(1024, SlowConsumerPolicy.DROP);
+        FakeWebSocketSession lenta = new FakeWebSocketSession("lenta", bloqueo, 0);
+        FakeWebSocketSession rapida = new FakeWebSocketSession("rapida");
+        fanOut.register(lenta);
+        fanOut.register(rapida);
+
+        fanOut.broadcast("m1");
+        fanOut.broadcast("m2");
+        esperar(() -> rapida.recibidos.size() == 2);
+
+        assertTrue(lenta.recibidos.isEmpty());
+        bloqueo.countDown();
+        esperar(() -> lenta.recibidos.size() == 2);
+    }
+
+    @Test
+    void dropKeepsSessionOpen() throws InterruptedException {
+        fanOut(1, SlowConsumerPolicy.DROP);
+        FakeWebSocketSession lenta = new FakeWebSocketSession("lenta", bloqueo, 0);
+        fanOut.register(lenta);
+
+        fanOut.broadcast("m1");
+        esperar(() -> fanOut.size() == 1);
+        Thread.sleep(50);
+        fanOut.broadcast("m2");
+        fanOut.broadcast("m3");
+        Thread.sleep(50);
+        bloqueo.countDown();
+        esperar(() -> !lenta.recibidos.isEmpty());
+        Thread.sleep(50);
+
+        assertAll(
+                () -> assertTrue(lenta.isOpen()),
+                () -> assertEquals(1, fanOut.size()),
+                () -> assertTrue(lenta.recibidos.size() < 3)
+        );
+    }
+
+    @Test
+    void disconnectClosesSlowSession() throws InterruptedException {
+        fanOut(1, SlowConsumerPolicy.DISCONNECT);
+        FakeWebSocketSession lenta = new FakeWebSocketSession("lenta", bloqueo, 0);
+        fanOut.register(lenta);
+
+        fanOut.broadcast("m1");
+        Thread.sleep(50);
+        fanOut.broadcast("m2");
+        esperar(() -> !lenta.isOpen());
+
+        assertAll(
+                () -> assertEquals(CloseStatus.SESSION_NOT_RELIABLE, lenta.closeStatus),
+                () -> assertEquals(0, fanOut.size())
+        );
+    }
+}
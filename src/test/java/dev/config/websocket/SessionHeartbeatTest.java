@@ -0,0 +1,123 @@
+package dev.config.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionHeartbeatTest {
+    private static final long SEGUNDO = TimeUnit.SECONDS.toNanos(1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong reloj = new AtomicLong();
+    private final SessionFanOut fanOut = new SessionFanOut(Executors.newSingleThreadExecutor(), 5000, 1024, SlowConsumerPolicy.DROP);
+
+    private SessionHeartbeat heartbeat(long idleTimeoutMs) {
+        return new SessionHeartbeat(fanOut, 25_000, 10_000, idleTimeoutMs, meterRegistry, reloj::get);
+    }
+
+    private FakeWebSocketSession conectar(SessionHeartbeat heartbeat, String id) {
+        FakeWebSocketSession session = new FakeWebSocketSession(id);
+        fanOut.register(session);
+        heartbeat.register(id);
+        return session;
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+        assertTrue(condicion.getAsBoolean());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        fanOut.close();
+    }
+
+    @Test
+    void pingOnlyAfterInterval() throws InterruptedException {
+        SessionHeartbeat heartbeat = heartbeat(0);
+        FakeWebSocketSession session = conectar(heartbeat, "1");
+
+        reloj.set(24 * SEGUNDO);
+        heartbeat.check();
+        reloj.set(25 * SEGUNDO);
+        heartbeat.check();
+        heartbeat.check();
+        esperar(() -> session.recibidos.size() == 1);
+
+        assertAll(
+                () -> assertInstanceOf(PingMessage.class, session.recibidos.get(0)),
+                () -> assertEquals(1, meterRegistry.get("websocket.pings").counter().count())
+        );
+    }
+
+    @Test
+    void pongKeepsSessionAlive() throws InterruptedException {
+        SessionHeartbeat heartbeat = heartbeat(0);
+        FakeWebSocketSession session = conectar(heartbeat, "1");
+
+        reloj.set(25 * SEGUNDO);
+        heartbeat.check();
+        reloj.set(26 * SEGUNDO);
+        heartbeat.pong("1");
+        reloj.set(40 * SEGUNDO);
+        heartbeat.check();
+
+        assertAll(
+                () -> assertTrue(session.isOpen()),
+                () -> assertEquals(1, heartbeat.size()),
+                () -> assertEquals(0, meterRegistry.get("websocket.sessions.timedout").counter().count())
+        );
+    }
+
+    @Test
+    void missingPongClosesSession() throws InterruptedException {
+        SessionHeartbeat heartbeat = heartbeat(0);
+        FakeWebSocketSession muerta = conectar(heartbeat, "muerta");
+
+        reloj.set(25 * SEGUNDO);
+        heartbeat.check();
+        reloj.set(36 * SEGUNDO);
+        heartbeat.check();
+        esperar(() -> !muerta.isOpen());
+
+        assertAll(
+                () -> assertEquals(CloseStatus.SESSION_NOT_RELIABLE, muerta.closeStatus),
+                () -> assertEquals(0, heartbeat.size()),
+                () -> assertEquals(0, fanOut.size()),
+                () -> assertEquals(1, meterRegistry.get("websocket.sessions.timedout").counter().count())
+        );
+    }
+
+    @Test
+    void idleSessionIsEvicted() throws InterruptedException {
+        SessionHeartbeat heartbeat = heartbeat(60_000);
+        FakeWebSocketSession inactiva = conectar(heartbeat, "inactiva");
+        FakeWebSocketSession activa = conectar(heartbeat, "activa");
+
+        reloj.set(50 * SEGUNDO);
+        heartbeat.activity("activa");
+        heartbeat.pong("inactiva");
+        reloj.set(61 * SEGUNDO);
+        heartbeat.check();
+        esperar(() -> !inactiva.isOpen());
+
+        assertAll(
+                () -> assertEquals(CloseStatus.GOING_AWAY, inactiva.closeStatus),
+                () -> assertTrue(activa.isOpen()),
+                () -> assertEquals(1, meterRegistry.get("websocket.sessions.evicted").counter().count()),
+                () -> assertEquals(1.0, meterRegistry.get("websocket.sessions.live").gauge().value())
+        );
+    }
+}
@@ -0,0 +1,64 @@
+package dev.config.websocket;
+
+import dev.websockets.notifications.models.Notification;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriptionIndexTest {
+
+    private final SubscriptionIndex index = new SubscriptionIndex();
+
+    @Test
+    void newSessionsReceiveEverything() {
+        index.register("1");
+        index.register("2");
+
+        assertEquals(Set.of("1", "2"), index.match(new NotificationTopic(Notification.Tipo.CREATE, 7L, "Marvel")));
+    }
+
+    @Test
+    void matchByIdAndCategoria() {
+        index.register("todo");
+        index.subscribe("marvel", new Subscription(Set.of("Marvel"), null, null));
+        index.subscribe("funko7", new Subscription(null, Set.of(7L), null));
+        index.subscribe("borrados", new Subscription(null, null, Set.of(Notification.Tipo.DELETE)));
+
+        assertAll(
+                () -> assertEquals(Set.of("todo", "marvel", "funko7"), index.match(new NotificationTopic(Notification.Tipo.UPDATE, 7L, "MARVEL"))),
+                () -> assertEquals(Set.of("todo", "marvel"), index.match(new NotificationTopic(Notification.Tipo.UPDATE, 8L, "Marvel"))),
+                () -> assertEquals(Set.of("todo", "borrados"), index.match(new NotificationTopic(Notification.Tipo.DELETE, 9L, "Disney"))),
+                () -> assertEquals(Set.of("todo"), index.match(new NotificationTopic(Notification.Tipo.CREATE, 9L, null)))
+        );
+    }
+
+    @Test
+    void typesAreCombinedWithEntityFilters() {
+        index.subscribe("1", new Subscription(Set.of("Marvel"), null, Set.of(Notification.Tipo.DELETE)));
+
+        assertAll(
+                () -> assertEquals(Set.of(), index.match(new NotificationTopic(Notification.Tipo.UPDATE, 1L, "Marvel"))),
+                () -> assertEquals(Set.of("1"), index.match(new NotificationTopic(Notification.Tipo.DELETE, 1L, "Marvel")))
+        );
+    }
+
+    @Test
+    void resubscribeAndRemove() {
+        index.subscribe("1", new Subscription(Set.of("Marvel"), null, null));
+        index.subscribe("1", new Subscription(Set.of("Disney"), null, null));
+
+        assertAll(
+                () -> assertEquals(Set.of(), index.match(new NotificationTopic(Notification.Tipo.UPDATE, 1L, "Marvel"))),
+                () -> assertEquals(Set.of("1"), index.match(new NotificationTopic(Notification.Tipo.UPDATE, 1L, "Disney")))
+        );
+
+        index.remove("1");
+
+        assertAll(
+                () -> assertNull(index.get("1")),
+                () -> assertEquals(Set.of(), index.match(new NotificationTopic(Notification.Tipo.UPDATE, 1L, "Disney")))
+        );
+    }
+}
@@ -3,6 +3,7 @@ package dev.funkos.controllers;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import dev.config.websocket.NotificationReplayBuffer;
 import dev.rest.categoria.models.Categoria;
 import dev.rest.funkos.dto.FunkoCreateDto;
 import dev.rest.funkos.dto.FunkoResponseDto;
@@ -105,6 +106,8 @@ class FunkoControllerTest {
     FunkoServiceImpl funkoService;
     @Autowired
     MockMvc mockMvc;
+    @Autowired
+    NotificationReplayBuffer funkosReplay;
 
     @Autowired
     public FunkoControllerTest(FunkoServiceImpl funkoService) {
@@ -538,4 +541,28 @@ class FunkoControllerTest {
         verify(funkoService, times(1)).deleteById(anyLong());
     }
 
-}
\ No newline at end of file
+    @Test
+    void getFunkoEventsResumesFromLastEventId() throws Exception {
+        long ultima = funkosReplay.lastSeq();
+        funkosReplay.append("{\"entity\":\"FUNKOS\",\"type\":\"UPDATE\"}", null);
+
+        MockHttpServletResponse response = mockMvc.perform(
+                get(myEndpoint + "/events")
+                        .header("Last-Event-ID", ultima)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+        ).andReturn().getResponse();
+
+        long limite = System.currentTimeMillis() + 5000;
+        while (!response.getContentAsString().contains("\"type\":\"UPDATE\"") && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+        String eventos = response.getContentAsString();
+
+        assertAll(
+                () -> assertEquals(200, response.getStatus()),
+                () -> assertTrue(eventos.contains("id:" + (ultima + 1))),
+                () -> assertTrue(eventos.contains("event:funko")),
+                () -> assertTrue(eventos.contains("data:{\"seq\":" + (ultima + 1) + ",\"entity\":\"FUNKOS\",\"type\":\"UPDATE\"}"))
+        );
+    }
+}
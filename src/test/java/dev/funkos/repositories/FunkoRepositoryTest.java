@@ -1,8 +1,11 @@
 package dev.funkos.repositories;
 
 import dev.rest.categoria.models.Categoria;
+import dev.rest.funkos.exceptions.FunkoBadRequest;
 import dev.rest.funkos.models.Funko;
 import dev.rest.funkos.repositories.FunkoRepository;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,8 +15,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
-import static org.junit.jupiter.api.Assertions.assertAll;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
 class FunkoRepositoryTest {
@@ -110,4 +112,65 @@ class FunkoRepositoryTest {
             );
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllByCursor() {
+        var primera = funkoRepository.findAll(null, Cursor.first("nombre", "asc"), 1);
+        var segunda = funkoRepository.findAll(null, Cursor.decode(primera.nextCursor(), FunkoBadRequest::new), 1);
+        var anterior = funkoRepository.findAll(null, Cursor.decode(segunda.prevCursor(), FunkoBadRequest::new), 1);
+
+        assertAll(
+                () -> assertEquals(funko1.getNombre(), primera.content().get(0).getNombre()),
+                () -> assertTrue(primera.hasNext()),
+                () -> assertFalse(primera.hasPrevious()),
+                () -> assertEquals(funko2.getNombre(), segunda.content().get(0).getNombre()),
+                () -> assertFalse(segunda.hasNext()),
+                () -> assertTrue(segunda.hasPrevious()),
+                () -> assertEquals(funko1.getNombre(), anterior.content().get(0).getNombre()),
+                () -> assertTrue(anterior.hasNext()),
+                () -> assertFalse(anterior.hasPrevious())
+        );
+    }
+
+    @Test
+    void findAllByCursorDescending() {
+        var primera = funkoRepository.findAll(null, Cursor.first("precio", "desc"), 1);
+        var segunda = funkoRepository.findAll(null, Cursor.decode(primera.nextCursor(), FunkoBadRequest::new), 1);
+
+        assertAll(
+                () -> assertEquals(funko2.getNombre(), primera.content().get(0).getNombre()),
+                () -> assertEquals(funko1.getNombre(), segunda.content().get(0).getNombre()),
+                () -> assertFalse(segunda.hasNext())
+        );
+    }
+
+    @Test
+    void findAllByCursorWithNullSortValues() {
+        entityManager.merge(Funko.builder().id(3L).nombre("Funko 3").precio(300.0).cantidad(null).rutaImagen("ruta3")
+                .categoria(categoria).build());
+        entityManager.flush();
+
+        var primera = funkoRepository.findAll(null, Cursor.first("cantidad", "asc"), 2);
+        var segunda = funkoRepository.findAll(null, Cursor.decode(primera.nextCursor(), FunkoBadRequest::new), 2);
+        var descendente = funkoRepository.findAll(null, Cursor.first("cantidad", "desc"), 1);
+        var siguiente = funkoRepository.findAll(null, Cursor.decode(descendente.nextCursor(), FunkoBadRequest::new), 1);
+
+        assertAll(
+                () -> assertEquals(2, primera.content().size()),
+                () -> assertEquals("Funko 3", segunda.content().get(0).getNombre()),
+                () -> assertFalse(segunda.hasNext()),
+                () -> assertEquals("Funko 3", descendente.content().get(0).getNombre()),
+                () -> assertEquals("Funko 2", siguiente.content().get(0).getNombre())
+        );
+    }
+
+    @Test
+    void findAllByCursorRejectsInvalidCursorAndSize() {
+        assertAll(
+                () -> assertThrows(FunkoBadRequest.class, () -> Cursor.decode("no-es-un-cursor", FunkoBadRequest::new)),
+                () -> assertThrows(FunkoBadRequest.class, () -> funkoRepository.findAll(null, Cursor.first("id", "asc"), 0)),
+                () -> assertThrows(FunkoBadRequest.class, () -> funkoRepository.findAll(null, Cursor.first("id", "asc"), -1)),
+                () -> assertThrows(FunkoBadRequest.class, () -> funkoRepository.findAll(null, Cursor.first("id", "asc"), CursorPage.MAX_SIZE + 1))
+        );
+    }
+}
@@ -12,7 +12,15 @@ import dev.rest.funkos.mappers.FunkoMapper;
 import dev.rest.funkos.models.Funko;
 import dev.rest.funkos.repositories.FunkoRepository;
 import dev.rest.funkos.services.FunkoServiceImpl;
+import dev.rest.funkos.services.search.FunkoIndex;
+import dev.rest.funkos.services.search.FunkoSearch;
+import dev.rest.pedido.services.stock.ledger.StockLedger;
+import dev.rest.pedido.services.stock.movements.StockMovement;
+import dev.rest.pedido.services.stock.movements.StockMovements;
 import dev.rest.storage.services.StorageService;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
+import dev.websockets.notifications.outbox.Outbox;
 import dev.websockets.notifications.mapper.FunkoNotificationMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -21,6 +29,7 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.web.multipart.MultipartFile;
@@ -92,6 +101,16 @@ class FunkoServiceImplTest {
     private CategoriaRepository categoriaRepository;
     @Mock
     private StorageService storageService;
+    @Mock
+    private FunkoSearch funkoSearch;
+    @Mock
+    private FunkoIndex funkoIndex;
+    @Mock
+    private Outbox outbox;
+    @Mock
+    private StockMovements stockMovements;
+    @Mock
+    private ObjectProvider<StockLedger> stockLedger;
 
     @InjectMocks
     private FunkoServiceImpl funkoService;
@@ -190,6 +209,49 @@ class FunkoServiceImplTest {
         verify(funkoMapper, times(1)).toFunkoDto(any(Funko.class));
     }
 
+    @Test
+    void findAllFromIndex() {
+        Pageable pageable = PageRequest.of(0, 2, Sort.by("precio").descending());
+        Page<Long> ids = new PageImpl<>(List.of(2L, 1L), pageable, 5);
+
+        when(funkoIndex.search(Optional.empty(), Optional.of("funko"), Optional.empty(), pageable)).thenReturn(Optional.of(ids));
+        when(funkoRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(funko1, funko2));
+        when(funkoMapper.toFunkoDto(funko1)).thenReturn(funkoResponseDto1);
+        when(funkoMapper.toFunkoDto(funko2)).thenReturn(funkoResponseDto2);
+
+        Page<FunkoResponseDto> funkoActual = funkoService.findAll(Optional.empty(), Optional.of("funko"), Optional.empty(), pageable);
+
+        assertAll("findAllFromIndex",
+                () -> assertEquals(List.of(funkoResponseDto2, funkoResponseDto1), funkoActual.getContent()),
+                () -> assertEquals(5, funkoActual.getTotalElements())
+        );
+
+        verify(funkoRepository, times(1)).findAllById(List.of(2L, 1L));
+        verify(funkoRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
+    @Test
+    void findAllByCursor() {
+        Cursor cursor = Cursor.first("id", "asc");
+        CursorPage<Funko> expectedPage = new CursorPage<>(List.of(funko1, funko2), 2, "siguiente", null);
+
+        when(funkoRepository.findAll(any(Specification.class), eq(cursor), eq(2))).thenReturn(expectedPage);
+        when(funkoMapper.toFunkoDto(funko1)).thenReturn(funkoResponseDto1);
+        when(funkoMapper.toFunkoDto(funko2)).thenReturn(funkoResponseDto2);
+
+        CursorPage<FunkoResponseDto> funkoActual = funkoService.findAll(Optional.empty(), Optional.empty(), Optional.empty(), cursor, 2);
+
+        assertAll(
+                () -> assertEquals(List.of(funkoResponseDto1, funkoResponseDto2), funkoActual.content()),
+                () -> assertTrue(funkoActual.hasNext()),
+                () -> assertFalse(funkoActual.hasPrevious()),
+                () -> assertEquals("siguiente", funkoActual.nextCursor())
+        );
+
+        verify(funkoRepository, times(1)).findAll(any(Specification.class), eq(cursor), eq(2));
+        verify(funkoRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+    }
+
     @Test
     void findById() {
         Long id = 1L;
@@ -252,6 +314,7 @@ class FunkoServiceImplTest {
         verify(categoriaRepository, times(1)).findByNameContainingIgnoreCase(funkoCreateDto.categoria());
         verify(funkoRepository, times(1)).save(funkoCaptor.capture());
         verify(funkoMapper, times(1)).toFunko(funkoCreateDto, categoria1);
+        verify(stockMovements, times(1)).record(1L, 10, StockMovement.Motivo.ALTA);
 
     }
 
@@ -306,6 +369,52 @@ class FunkoServiceImplTest {
         funkoService.deleteById(id);
 
         verify(funkoRepository, times(1)).deleteById(id);
+        verify(outbox, times(1)).publish(eq("FUNKOS:1"), anyString(), any());
+        verify(stockMovements, times(1)).record(1L, -10, StockMovement.Motivo.BAJA);
+    }
+
+    @Test
+    void updateWithLedger() {
+        Long id = 1L;
+        StockLedger ledger = mock(StockLedger.class);
+        FunkoUpdateDto funkoUpdateDto = new FunkoUpdateDto(null, null, 25, null, null);
+        Funko funkoNuevo = Funko.builder().id(1L).nombre("Funko 1").precio(100.0).cantidad(25).rutaImagen("ruta1").categoria(categoria1).build();
+
+        when(stockLedger.getIfAvailable()).thenReturn(ledger);
+        when(ledger.set(id, 25)).thenReturn(17);
+        when(ledger.stock(id)).thenReturn(25);
+        when(funkoRepository.findById(id)).thenReturn(Optional.of(funko1));
+        when(funkoMapper.toFunko(funkoUpdateDto, funko1, categoria1)).thenReturn(funkoNuevo);
+        when(funkoRepository.save(any(Funko.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(funkoMapper.toFunkoDto(any(Funko.class))).thenAnswer(invocation -> {
+            Funko funko = invocation.getArgument(0);
+            return new FunkoResponseDto(funko.getId(), funko.getNombre(), funko.getPrecio(), funko.getCantidad(),
+                    funko.getRutaImagen(), funko.getFechaCreacion(), funko.getFechaActualizacion(), funko.getCategoria());
+        });
+
+        FunkoResponseDto funkoActual = funkoService.update(funkoUpdateDto, id);
+
+        // La fila se guarda con la cantidad que tenía; la nueva la lleva el ledger
+        verify(funkoRepository).save(funkoCaptor.capture());
+        assertAll(
+                () -> assertEquals(10, funkoCaptor.getValue().getCantidad()),
+                () -> assertEquals(25, funkoActual.cantidad())
+        );
+        verify(stockMovements, times(1)).record(1L, 17, StockMovement.Motivo.AJUSTE);
+    }
+
+    @Test
+    void deleteByIdWithLedger() {
+        Long id = 1L;
+        StockLedger ledger = mock(StockLedger.class);
+        when(stockLedger.getIfAvailable()).thenReturn(ledger);
+        when(ledger.remove(id)).thenReturn(4);
+        when(funkoRepository.findById(id)).thenReturn(Optional.of(funko1));
+
+        funkoService.deleteById(id);
+
+        verify(funkoRepository, times(1)).deleteById(id);
+        verify(stockMovements, times(1)).record(1L, -4, StockMovement.Motivo.BAJA);
     }
 
     @Test
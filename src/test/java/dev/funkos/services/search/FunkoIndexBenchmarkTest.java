@@ -0,0 +1,67 @@
+package dev.funkos.services.search;
+
+import dev.rest.categoria.models.Categoria;
+import dev.rest.categoria.repositories.CategoriaRepository;
+import dev.rest.funkos.dto.FunkoIndexEntry;
+import dev.rest.funkos.repositories.FunkoRepository;
+import dev.rest.funkos.services.search.FunkoIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.mockito.Mockito.*;
+
+// Benchmark manual, no se ejecuta en el build: ./gradlew test -Dbenchmark=true --tests '*FunkoIndexBenchmarkTest'
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FunkoIndexBenchmarkTest {
+    private static final int FILAS = 1_000_000;
+    private static final int BUSQUEDAS = 200;
+    private static final String[] PALABRAS = {"iron", "man", "spider", "merida", "joey", "friends", "mickey",
+            "mouse", "fortnite", "batman", "hulk", "thor", "loki", "groot", "yoda", "vader", "funko", "pop"};
+
+    @Test
+    void searchLatency() {
+        Random random = new Random(42);
+        List<FunkoIndexEntry> entradas = new ArrayList<>(FILAS);
+        List<String> nombres = new ArrayList<>(FILAS);
+        for (long id = 0; id < FILAS; id++) {
+            String nombre = PALABRAS[random.nextInt(PALABRAS.length)] + " " + PALABRAS[random.nextInt(PALABRAS.length)] + " " + id;
+            nombres.add(nombre.toLowerCase());
+            entradas.add(new FunkoIndexEntry(id, nombre, random.nextInt(10_000) / 100.0, (long) random.nextInt(5), LocalDate.now(), LocalDate.now()));
+        }
+        FunkoRepository funkoRepository = mock(FunkoRepository.class);
+        CategoriaRepository categoriaRepository = mock(CategoriaRepository.class);
+        when(funkoRepository.findAllIndexEntries()).thenReturn(entradas);
+        when(categoriaRepository.findAll()).thenReturn(List.of(Categoria.builder().id(0L).name("Marvel").build()));
+        FunkoIndex index = new FunkoIndex(funkoRepository, categoriaRepository, 10_000);
+
+        long inicio = System.nanoTime();
+        index.rebuild();
+        System.out.printf("Construcción: %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+
+        var pageable = PageRequest.of(0, 20, Sort.by("precio"));
+        for (String buscado : List.of("batman", "der mo", "12345", "xyz")) {
+            inicio = System.nanoTime();
+            long encontrados = 0;
+            for (int i = 0; i < BUSQUEDAS; i++) {
+                encontrados = index.search(Optional.empty(), Optional.of(buscado), Optional.of(50.0), pageable).orElseThrow().getTotalElements();
+            }
+            double indice = (System.nanoTime() - inicio) / 1e6 / BUSQUEDAS;
+
+            inicio = System.nanoTime();
+            for (int i = 0; i < BUSQUEDAS / 10; i++) {
+                nombres.stream().filter(n -> n.contains(buscado)).count();
+            }
+            double scan = (System.nanoTime() - inicio) / 1e6 / (BUSQUEDAS / 10);
+
+            System.out.printf("'%s': %d resultados, página del índice %.3f ms, scan completo %.3f ms%n", buscado, encontrados, indice, scan);
+        }
+    }
+}
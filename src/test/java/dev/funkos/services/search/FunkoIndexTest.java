@@ -0,0 +1,151 @@
+package dev.funkos.services.search;
+
+import dev.rest.categoria.models.Categoria;
+import dev.rest.categoria.repositories.CategoriaRepository;
+import dev.rest.funkos.dto.FunkoIndexEntry;
+import dev.rest.funkos.exceptions.FunkoBadRequest;
+import dev.rest.funkos.models.Funko;
+import dev.rest.funkos.repositories.FunkoRepository;
+import dev.rest.funkos.services.search.FunkoIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FunkoIndexTest {
+
+    private final Categoria marvel = Categoria.builder().id(1L).name("Marvel").build();
+    private final Categoria disney = Categoria.builder().id(2L).name("Disney").build();
+
+    @Mock
+    private FunkoRepository funkoRepository;
+    @Mock
+    private CategoriaRepository categoriaRepository;
+
+    private FunkoIndex funkoIndex;
+
+    @BeforeEach
+    void setUp() {
+        funkoIndex = new FunkoIndex(funkoRepository, categoriaRepository, 100);
+        when(categoriaRepository.findAll()).thenReturn(List.of(marvel, disney));
+        when(funkoRepository.findAllIndexEntries()).thenReturn(List.of(
+                new FunkoIndexEntry(1L, "Iron Man Funko", 30.0, 1L, LocalDate.now(), LocalDate.now()),
+                new FunkoIndexEntry(2L, "Spider Man Funko", 20.0, 1L, LocalDate.now(), LocalDate.now()),
+                new FunkoIndexEntry(3L, "Merida Funko", 10.0, 2L, LocalDate.now(), LocalDate.now())
+        ));
+        funkoIndex.rebuild();
+    }
+
+    private List<Long> search(Optional<String> categoria, Optional<String> nombre, Optional<Double> maxPrecio) {
+        return funkoIndex.findIds(categoria, nombre, maxPrecio).orElseThrow();
+    }
+
+    @Test
+    void findIdsByNombre() {
+        assertAll(
+                () -> assertEquals(List.of(1L, 2L), search(Optional.empty(), Optional.of("man"), Optional.empty())),
+                () -> assertEquals(List.of(1L, 2L, 3L), search(Optional.empty(), Optional.of("FUNKO"), Optional.empty())),
+                () -> assertEquals(List.of(3L), search(Optional.empty(), Optional.of("rida"), Optional.empty())),
+                () -> assertEquals(List.of(2L), search(Optional.empty(), Optional.of("sp"), Optional.empty())),
+                () -> assertEquals(List.of(), search(Optional.empty(), Optional.of("batman"), Optional.empty()))
+        );
+    }
+
+    @Test
+    void findIdsByCategoriaAndPrecio() {
+        assertAll(
+                () -> assertEquals(List.of(3L), search(Optional.of("disn"), Optional.empty(), Optional.empty())),
+                () -> assertEquals(List.of(2L), search(Optional.of("marvel"), Optional.empty(), Optional.of(25.0))),
+                () -> assertEquals(List.of(), search(Optional.of("dc"), Optional.empty(), Optional.empty()))
+        );
+    }
+
+    @Test
+    void searchPage() {
+        Pageable pageable = PageRequest.of(0, 2, Sort.by("precio").descending());
+
+        Page<Long> page = funkoIndex.search(Optional.empty(), Optional.of("funko"), Optional.empty(), pageable).orElseThrow();
+        Page<Long> segunda = funkoIndex.search(Optional.empty(), Optional.of("funko"), Optional.empty(), pageable.next()).orElseThrow();
+
+        assertAll(
+                () -> assertEquals(List.of(1L, 2L), page.getContent()),
+                () -> assertEquals(3, page.getTotalElements()),
+                () -> assertEquals(List.of(3L), segunda.getContent())
+        );
+    }
+
+    @Test
+    void searchSortsNombreLikeTheDatabase() {
+        funkoIndex.index(Funko.builder().id(4L).nombre("batman Funko").precio(5.0).categoria(marvel).build());
+        funkoIndex.index(Funko.builder().id(5L).nombre("Ángel Funko").precio(5.0).categoria(marvel).build());
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("nombre"));
+
+        Page<Long> page = funkoIndex.search(Optional.empty(), Optional.empty(), Optional.empty(), pageable).orElseThrow();
+
+        assertEquals(List.of(5L, 4L, 1L, 3L, 2L), page.getContent());
+    }
+
+    @Test
+    void searchRejectsDeepOffset() {
+        Pageable pageable = PageRequest.of(10, 10, Sort.by("precio"));
+
+        assertThrows(FunkoBadRequest.class, () -> funkoIndex.search(Optional.empty(), Optional.empty(), Optional.empty(), pageable));
+    }
+
+    @Test
+    void searchSortNotIndexed() {
+        Pageable pageable = PageRequest.of(0, 2, Sort.by("cantidad"));
+
+        assertTrue(funkoIndex.search(Optional.empty(), Optional.empty(), Optional.empty(), pageable).isEmpty());
+    }
+
+    @Test
+    void indexReplacesFunko() {
+        funkoIndex.index(Funko.builder().id(1L).nombre("Hulk Funko").precio(5.0).categoria(marvel).build());
+
+        assertAll(
+                () -> assertEquals(List.of(2L), search(Optional.empty(), Optional.of("man"), Optional.empty())),
+                () -> assertEquals(List.of(1L), search(Optional.empty(), Optional.of("hulk"), Optional.of(5.0)))
+        );
+    }
+
+    @Test
+    void remove() {
+        funkoIndex.remove(2L);
+
+        assertEquals(List.of(1L), search(Optional.empty(), Optional.of("man"), Optional.empty()));
+    }
+
+    @Test
+    void indexCategoria() {
+        funkoIndex.indexCategoria(Categoria.builder().id(2L).name("Pixar").build());
+
+        assertAll(
+                () -> assertEquals(List.of(3L), search(Optional.of("pixar"), Optional.empty(), Optional.empty())),
+                () -> assertEquals(List.of(), search(Optional.of("disney"), Optional.empty(), Optional.empty()))
+        );
+    }
+
+    @Test
+    void notBuilt() {
+        FunkoIndex vacio = new FunkoIndex(funkoRepository, categoriaRepository, 100);
+
+        assertAll(
+                () -> assertTrue(vacio.findIds(Optional.empty(), Optional.of("man"), Optional.empty()).isEmpty()),
+                () -> assertTrue(vacio.search(Optional.empty(), Optional.empty(), Optional.empty(), PageRequest.of(0, 10)).isEmpty())
+        );
+    }
+}
@@ -11,7 +11,9 @@ import dev.rest.pedido.models.Cliente;
 import dev.rest.pedido.models.Direccion;
 import dev.rest.pedido.models.LineaPedido;
 import dev.rest.pedido.models.Pedido;
+import dev.rest.pedido.services.PedidoBatchResult;
 import dev.rest.pedido.services.PedidoService;
+import dev.rest.pedido.services.intake.PedidoIntakeStatus;
 import dev.utils.pagination.PageResponse;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.Test;
@@ -31,9 +33,11 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -177,6 +181,59 @@ public class PedidoControllerTest {
         verify(pedidoService, times(1)).save(any(Pedido.class));
     }
 
+    @Test
+    void createPedidoIdempotent() throws Exception {
+        when(pedidoService.save(any(Pedido.class))).thenReturn(pedido1);
+        when(pedidoService.findById(pedido1.getId())).thenReturn(pedido1);
+        var request = post(myEndpoint)
+                .header("Idempotency-Key", "pedido-movil-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(pedido1))
+                .accept(MediaType.APPLICATION_JSON);
+
+        MockHttpServletResponse original = mockMvc.perform(request).andReturn().getResponse();
+        MockHttpServletResponse repetida = mockMvc.perform(request).andReturn().getResponse();
+        Pedido pedido = mapper.readValue(repetida.getContentAsString(), Pedido.class);
+
+        assertAll(
+                () -> assertEquals(201, original.getStatus()),
+                () -> assertEquals(201, repetida.getStatus()),
+                () -> assertEquals("true", repetida.getHeader("Idempotent-Replayed")),
+                () -> assertEquals(pedido1.getId(), pedido.getId())
+        );
+
+        verify(pedidoService, times(1)).save(any(Pedido.class));
+    }
+
+    @Test
+    void createPedidoAsync() throws Exception {
+        when(pedidoService.saveAll(any())).thenReturn(new PedidoBatchResult(List.of(pedido1), Map.of()));
+        MockHttpServletResponse response = mockMvc.perform(
+                        post(myEndpoint)
+                                .header("Prefer", "respond-async")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(pedido1))
+                                .accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse();
+
+        assertAll(
+                () -> assertEquals(202, response.getStatus()),
+                () -> assertTrue(response.getHeader("Location").endsWith(myEndpoint + "/intake/5f9f1a3b9d6b6d2e3c1d6f1a"))
+        );
+
+        var statusEndpoint = myEndpoint + "/intake/5f9f1a3b9d6b6d2e3c1d6f1a";
+        PedidoIntakeStatus estado;
+        long limite = System.currentTimeMillis() + 5000;
+        do {
+            Thread.sleep(10);
+            estado = mapper.readValue(mockMvc.perform(get(statusEndpoint).accept(MediaType.APPLICATION_JSON))
+                    .andReturn().getResponse().getContentAsString(), PedidoIntakeStatus.class);
+        } while (estado.estado() != PedidoIntakeStatus.Estado.CREATED && System.currentTimeMillis() < limite);
+
+        assertEquals(PedidoIntakeStatus.Estado.CREATED, estado.estado());
+        verify(pedidoService, never()).save(any(Pedido.class));
+    }
+
     @Test
     void createPedidoBadRequest() throws Exception {
         when(pedidoService.save(any(Pedido.class))).thenThrow(new PedidoNotItems("5f9f1a3b9d6b6d2e3c1d6f1a"));
@@ -0,0 +1,159 @@
+package dev.pedidos.idempotency;
+
+import dev.rest.pedido.exceptions.IdempotencyKeyInProgress;
+import dev.rest.pedido.exceptions.IdempotencyKeyInvalid;
+import dev.rest.pedido.idempotency.IdempotencyRecord;
+import dev.rest.pedido.idempotency.IdempotencyRepository;
+import dev.rest.pedido.idempotency.IdempotencyStore;
+import dev.rest.pedido.models.Cliente;
+import dev.rest.pedido.models.LineaPedido;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectId idPedido = new ObjectId();
+    private final String huella = IdempotencyStore.huella(1L, null, List.of(linea(1L, 2)));
+    private final String otra = IdempotencyStore.huella(1L, null, List.of(linea(1L, 3)));
+
+    @Mock
+    private IdempotencyRepository repository;
+
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(repository, 86_400_000, 1000, 2000, 60_000, 600_000, meterRegistry);
+    }
+
+    private static LineaPedido linea(Long idFunko, int cantidad) {
+        return LineaPedido.builder().idFunko(idFunko).cantidad(cantidad).precioFunko(10.0).total(cantidad * 10.0).build();
+    }
+
+    private IdempotencyRecord registro(IdempotencyRecord.Estado estado) {
+        return IdempotencyRecord.builder()
+                .clave("clave")
+                .huella(huella)
+                .estado(estado)
+                .status(201)
+                .idPedido(idPedido.toHexString())
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .build();
+    }
+
+    @Test
+    void replayAfterComplete() {
+        when(repository.complete("clave", 201, idPedido.toHexString())).thenReturn(1);
+        assertTrue(store.begin("clave", huella).isEmpty());
+        store.complete("clave", 201, idPedido);
+
+        var repetida = store.begin("clave", huella);
+
+        assertAll(
+                () -> assertEquals(Optional.of(new IdempotencyStore.Resultado(201, idPedido)), repetida),
+                () -> assertEquals(1, meterRegistry.get("pedidos.idempotency.replayed").counter().count())
+        );
+        verify(repository, times(1)).saveAndFlush(any());
+        verify(repository, times(1)).complete("clave", 201, idPedido.toHexString());
+    }
+
+    @Test
+    void sameKeyOtherRequestIsRejected() {
+        store.begin("clave", huella);
+
+        assertThrows(IdempotencyKeyInvalid.class, () -> store.begin("clave", otra));
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForOriginal() throws Exception {
+        when(repository.complete("clave", 202, idPedido.toHexString())).thenReturn(1);
+        store.begin("clave", huella);
+
+        var duplicada = CompletableFuture.supplyAsync(() -> store.begin("clave", huella));
+        Thread.sleep(50);
+        assertFalse(duplicada.isDone());
+        store.complete("clave", 202, idPedido);
+
+        assertEquals(Optional.of(new IdempotencyStore.Resultado(202, idPedido)), duplicada.get(5, TimeUnit.SECONDS));
+        verify(repository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    void failedCompleteIsRetriedAndThenThrown() {
+        when(repository.complete("clave", 201, idPedido.toHexString()))
+                .thenThrow(new IllegalStateException("Postgres caído"))
+                .thenReturn(0)
+                .thenThrow(new IllegalStateException("Postgres caído"));
+        store.begin("clave", huella);
+
+        assertThrows(IllegalStateException.class, () -> store.complete("clave", 201, idPedido));
+
+        // Este nodo sigue respondiendo a las repeticiones con el resultado original
+        assertEquals(Optional.of(new IdempotencyStore.Resultado(201, idPedido)), store.begin("clave", huella));
+        verify(repository, times(3)).complete("clave", 201, idPedido.toHexString());
+        verify(repository, never()).deleteById(any());
+    }
+
+    @Test
+    void abortReleasesKey() {
+        store.begin("clave", huella);
+        store.abort("clave");
+
+        assertTrue(store.begin("clave", otra).isEmpty());
+        verify(repository).deleteById("clave");
+        verify(repository, times(2)).saveAndFlush(any());
+    }
+
+    @Test
+    void completedOnAnotherNodeIsReplayed() {
+        when(repository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicada"));
+        when(repository.findById("clave")).thenReturn(Optional.of(registro(IdempotencyRecord.Estado.COMPLETED)));
+
+        var repetida = store.begin("clave", huella);
+
+        assertEquals(Optional.of(new IdempotencyStore.Resultado(201, idPedido)), repetida);
+        verify(repository).deleteStale(eq("clave"), any(), any());
+    }
+
+    @Test
+    void inProgressOnAnotherNodeConflicts() {
+        when(repository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicada"));
+        when(repository.findById("clave")).thenReturn(Optional.of(registro(IdempotencyRecord.Estado.IN_PROGRESS)));
+
+        assertThrows(IdempotencyKeyInProgress.class, () -> store.begin("clave", huella));
+        assertEquals(1, meterRegistry.get("pedidos.idempotency.conflicts").counter().count());
+    }
+
+    @Test
+    void huellaIsSha256OfTheRequest() {
+        Cliente cliente = new Cliente("Cliente 1", "cliente@correo.com", "600000000", null);
+
+        assertAll(
+                () -> assertTrue(huella.matches("[0-9a-f]{64}")),
+                () -> assertEquals(huella, IdempotencyStore.huella(1L, null, List.of(linea(1L, 2)))),
+                () -> assertNotEquals(huella, otra),
+                () -> assertNotEquals(huella, IdempotencyStore.huella(2L, null, List.of(linea(1L, 2)))),
+                () -> assertNotEquals(huella, IdempotencyStore.huella(1L, cliente, List.of(linea(1L, 2)))),
+                // Las mismas líneas en otro orden son otra petición
+                () -> assertNotEquals(IdempotencyStore.huella(1L, null, List.of(linea(1L, 2), linea(2L, 1))),
+                        IdempotencyStore.huella(1L, null, List.of(linea(2L, 1), linea(1L, 2))))
+        );
+    }
+}
@@ -0,0 +1,151 @@
+package dev.pedidos.repositories;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import dev.rest.pedido.models.Pedido;
+import dev.rest.pedido.repositories.PedidoCursorRepositoryImpl;
+import dev.rest.pedido.repositories.PedidoIndexes;
+import dev.utils.pagination.Cursor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+// Benchmark manual, no se ejecuta en el build y necesita un Mongo:
+// ./gradlew test -Dbenchmark=true -Dbenchmark.mongo.uri=mongodb://localhost:27017 --tests '*PedidoPaginationBenchmarkTest'
+// Carga los pedidos una vez en la base funkos-benchmark (-Dbenchmark.pedidos para otro tamaño) y compara
+// skip/limit sin índices, skip/limit con los índices de Pedido y la paginación por clave.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PedidoPaginationBenchmarkTest {
+    private static final int PEDIDOS = Integer.getInteger("benchmark.pedidos", 10_000_000);
+    private static final int USUARIOS = 1_000;
+    private static final int LOTE = 10_000;
+    private static final int PAGINA = 20;
+    private static final int REPETICIONES = 5;
+
+    @Test
+    void deepPageLatency() {
+        try (MongoClient client = MongoClients.create(System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27017"))) {
+            MongoTemplate mongoTemplate = new MongoTemplate(client, "funkos-benchmark");
+            seed(mongoTemplate);
+            // Se parte sólo con el índice de _id, como antes de declarar los índices en Pedido
+            mongoTemplate.indexOps(Pedido.class).dropAllIndexes();
+
+            List<Integer> globales = offsets(PEDIDOS);
+            List<Integer> porUsuario = offsets(PEDIDOS / USUARIOS);
+            System.out.println("Sin índices, skip/limit:");
+            skipLimit(mongoTemplate, Optional.empty(), globales);
+            skipLimit(mongoTemplate, Optional.of(0L), porUsuario);
+
+            long inicio = System.nanoTime();
+            new PedidoIndexes(mongoTemplate).ensureIndexes();
+            System.out.printf("Creación de índices: %.0f ms%n", (System.nanoTime() - inicio) / 1e6);
+
+            System.out.println("Con índices, skip/limit:");
+            skipLimit(mongoTemplate, Optional.empty(), globales);
+            skipLimit(mongoTemplate, Optional.of(0L), porUsuario);
+
+            System.out.println("Con índices, por clave:");
+            keyset(mongoTemplate, Optional.empty(), globales);
+            keyset(mongoTemplate, Optional.of(0L), porUsuario);
+        }
+    }
+
+    private void seed(MongoTemplate mongoTemplate) {
+        MongoCollection<Document> pedidos = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Pedido.class));
+        if (pedidos.estimatedDocumentCount() == PEDIDOS) {
+            return;
+        }
+        pedidos.drop();
+        Random random = new Random(42);
+        LocalDateTime momento = LocalDateTime.of(2020, 1, 1, 0, 0);
+        long inicio = System.nanoTime();
+        List<Document> lote = new ArrayList<>(LOTE);
+        for (int i = 0; i < PEDIDOS; i++) {
+            // Varios pedidos por segundo para que haya empates en createdAt
+            momento = momento.plusSeconds(random.nextInt(3));
+            Date fecha = Date.from(momento.atZone(ZoneId.systemDefault()).toInstant());
+            int cantidad = 1 + random.nextInt(3);
+            lote.add(new Document("_id", new ObjectId())
+                    .append("idUsuario", (long) (i % USUARIOS))
+                    .append("cliente", new Document("nombreCompleto", "Cliente " + i).append("email", "cliente" + i + "@soydev.dev"))
+                    .append("lineasPedido", List.of(new Document("idFunko", (long) random.nextInt(1_000))
+                            .append("cantidad", cantidad).append("precioFunko", 10.0).append("total", cantidad * 10.0)))
+                    .append("totalItems", 1)
+                    .append("total", cantidad * 10.0)
+                    .append("createdAt", fecha)
+                    .append("updatedAt", fecha)
+                    .append("isDeleted", false)
+                    .append("_class", "Pedido"));
+            if (lote.size() == LOTE) {
+                pedidos.insertMany(lote, new InsertManyOptions().ordered(false));
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            pedidos.insertMany(lote, new InsertManyOptions().ordered(false));
+        }
+        System.out.printf("Carga de %d pedidos: %.0f s%n", PEDIDOS, (System.nanoTime() - inicio) / 1e9);
+    }
+
+    private static List<Integer> offsets(int total) {
+        return List.of(0, total / 1000, total / 100, total / 10, total / 2, total - PAGINA);
+    }
+
+    private static Query query(Optional<Long> idUsuario) {
+        Query query = new Query();
+        idUsuario.ifPresent(id -> query.addCriteria(Criteria.where("idUsuario").is(id)));
+        return query;
+    }
+
+    private void skipLimit(MongoTemplate mongoTemplate, Optional<Long> idUsuario, List<Integer> offsets) {
+        for (int offset : offsets) {
+            Query query = query(idUsuario).with(PageRequest.of(offset / PAGINA, PAGINA, Sort.by("createdAt", "_id")));
+            try {
+                long inicio = System.nanoTime();
+                for (int i = 0; i < REPETICIONES; i++) {
+                    mongoTemplate.find(query, Pedido.class);
+                }
+                print(idUsuario, offset, (System.nanoTime() - inicio) / 1e6 / REPETICIONES);
+            } catch (RuntimeException e) {
+                System.out.printf("  usuario %s, offset %d: error (%s)%n", idUsuario.map(String::valueOf).orElse("-"), offset, e.getMessage());
+            }
+        }
+    }
+
+    private void keyset(MongoTemplate mongoTemplate, Optional<Long> idUsuario, List<Integer> offsets) {
+        PedidoCursorRepositoryImpl repository = new PedidoCursorRepositoryImpl(mongoTemplate);
+        for (int offset : offsets) {
+            Cursor cursor = Cursor.first("createdAt", "asc");
+            if (offset > 0) {
+                // El último pedido de la página anterior, que es lo que traería el cursor del cliente
+                Pedido anterior = mongoTemplate.findOne(query(idUsuario).with(Sort.by("createdAt", "_id")).skip(offset - 1L), Pedido.class);
+                cursor = cursor.next(anterior.getId().toHexString(), anterior.getCreatedAt().toString());
+            }
+            long inicio = System.nanoTime();
+            for (int i = 0; i < REPETICIONES; i++) {
+                repository.findAll(idUsuario, cursor, PAGINA);
+            }
+            print(idUsuario, offset, (System.nanoTime() - inicio) / 1e6 / REPETICIONES);
+        }
+    }
+
+    private static void print(Optional<Long> idUsuario, int offset, double ms) {
+        System.out.printf("  usuario %s, offset %d: %.2f ms%n", idUsuario.map(String::valueOf).orElse("-"), offset, ms);
+    }
+}
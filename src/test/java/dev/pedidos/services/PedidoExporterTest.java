@@ -0,0 +1,110 @@
+package dev.pedidos.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import dev.rest.pedido.models.Cliente;
+import dev.rest.pedido.models.LineaPedido;
+import dev.rest.pedido.models.Pedido;
+import dev.rest.pedido.services.export.PedidoExportFormat;
+import dev.rest.pedido.services.export.PedidoExporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PedidoExporterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private PedidoExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        exporter = new PedidoExporter(mongoTemplate, mapper, 2, meterRegistry);
+    }
+
+    private Pedido pedido(String id, String nombre, LineaPedido... lineas) {
+        return Pedido.builder()
+                .id(new ObjectId(id))
+                .idUsuario(1L)
+                .cliente(new Cliente(nombre, "evagomez@soydev.dev", "1234567890", null))
+                .lineasPedido(List.of(lineas))
+                .total(30.0)
+                .createdAt(LocalDateTime.of(2023, 11, 20, 12, 0))
+                .build();
+    }
+
+    private LineaPedido linea(Long idFunko, int cantidad) {
+        return LineaPedido.builder()
+                .idFunko(idFunko)
+                .cantidad(cantidad)
+                .precioFunko(10.0)
+                .total(cantidad * 10.0)
+                .build();
+    }
+
+    @Test
+    void exportNdjsonWithFilters() throws IOException {
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.stream(captor.capture(), eq(Pedido.class))).thenReturn(Stream.of(
+                pedido("5f9f1a3b9d6b6d2e3c1d6f1a", "EvaGomez", linea(1L, 2)),
+                pedido("5f9f1a3b9d6b6d2e3c1d6f1b", "EvaGomez", linea(2L, 1)),
+                pedido("5f9f1a3b9d6b6d2e3c1d6f1c", "EvaGomez", linea(3L, 1))));
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long total = exporter.export(Optional.of(1L), Optional.of(LocalDate.of(2023, 11, 1)), Optional.empty(),
+                PedidoExportFormat.NDJSON, salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertAll(
+                () -> assertEquals(3, total),
+                () -> assertEquals(3, lineas.length),
+                () -> assertTrue(lineas[0].startsWith("{") && lineas[0].contains("5f9f1a3b9d6b6d2e3c1d6f1a")),
+                () -> assertEquals(1L, captor.getValue().getQueryObject().get("idUsuario")),
+                () -> assertTrue(captor.getValue().getQueryObject().containsKey("createdAt")),
+                () -> assertEquals(2, captor.getValue().getMeta().getCursorBatchSize().intValue()),
+                () -> assertEquals(3, meterRegistry.get("pedidos.export.exported").counter().count())
+        );
+    }
+
+    @Test
+    void exportCsvOneRowPerLinea() throws IOException {
+        when(mongoTemplate.stream(any(Query.class), eq(Pedido.class))).thenReturn(Stream.of(
+                pedido("5f9f1a3b9d6b6d2e3c1d6f1a", "Gomez, Eva \"Dev\"", linea(1L, 2), linea(2L, 1))));
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        exporter.export(Optional.empty(), Optional.empty(), Optional.empty(), PedidoExportFormat.CSV, salida);
+
+        String[] filas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertAll(
+                () -> assertEquals(3, filas.length),
+                () -> assertTrue(filas[0].startsWith("id,idUsuario,cliente")),
+                () -> assertEquals("5f9f1a3b9d6b6d2e3c1d6f1a,1,\"Gomez, Eva \"\"Dev\"\"\",evagomez@soydev.dev,2023-11-20T12:00,1,2,10.0,20.0,30.0", filas[1]),
+                () -> assertTrue(filas[2].contains(",2,1,10.0,10.0,30.0"))
+        );
+    }
+}
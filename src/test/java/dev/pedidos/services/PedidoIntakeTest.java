@@ -0,0 +1,133 @@
+package dev.pedidos.services;
+
+import dev.rest.pedido.exceptions.PedidoIntakeFull;
+import dev.rest.pedido.models.Pedido;
+import dev.rest.pedido.services.PedidoBatchResult;
+import dev.rest.pedido.services.PedidoService;
+import dev.rest.pedido.services.intake.PedidoIntake;
+import dev.rest.pedido.services.intake.PedidoIntakeStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PedidoIntakeTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Pedido pedido1 = Pedido.builder().idUsuario(1L).build();
+    private final Pedido pedido2 = Pedido.builder().idUsuario(2L).build();
+    private final Pedido pedido3 = Pedido.builder().idUsuario(3L).build();
+
+    @Mock
+    private PedidoService pedidoService;
+
+    private PedidoIntake intake;
+
+    private PedidoIntake intake(int capacidad) {
+        intake = new PedidoIntake(pedidoService, false, capacidad, 10, 20, 60000, 5000, meterRegistry);
+        return intake;
+    }
+
+    private PedidoIntakeStatus.Estado estado(Pedido pedido) {
+        return intake.status(pedido.getId()).map(PedidoIntakeStatus::estado).orElse(null);
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (!condicion.getAsBoolean() && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+        assertTrue(condicion.getAsBoolean());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        intake.stop();
+    }
+
+    @Test
+    void queuedPedidosAreSavedInOneBatch() throws InterruptedException {
+        when(pedidoService.saveAll(List.of(pedido1, pedido2, pedido3))).thenReturn(new PedidoBatchResult(
+                List.of(pedido1, pedido3), Map.of(pedido2.getId(), "Sin stock")));
+        intake(100);
+
+        var encolado = intake.submit(pedido1);
+        intake.submit(pedido2);
+        intake.submit(pedido3);
+        intake.start();
+        esperar(() -> estado(pedido3) == PedidoIntakeStatus.Estado.CREATED);
+
+        verify(pedidoService, times(1)).saveAll(anyList());
+        assertAll(
+                () -> assertEquals(PedidoIntakeStatus.Estado.QUEUED, encolado.estado()),
+                () -> assertEquals(PedidoIntakeStatus.Estado.CREATED, estado(pedido1)),
+                () -> assertEquals(PedidoIntakeStatus.Estado.REJECTED, estado(pedido2)),
+                () -> assertEquals("Sin stock", intake.status(pedido2.getId()).orElseThrow().motivo()),
+                () -> assertEquals(1, meterRegistry.get("pedidos.intake.batches").counter().count()),
+                () -> assertEquals(1, meterRegistry.get("pedidos.intake.rejected").counter().count())
+        );
+    }
+
+    @Test
+    void fullQueueRejectsPedido() {
+        intake(1);
+
+        intake.submit(pedido1);
+
+        assertThrows(PedidoIntakeFull.class, () -> intake.submit(pedido2));
+        assertAll(
+                () -> assertTrue(intake.status(pedido2.getId()).isEmpty()),
+                () -> assertEquals(1, meterRegistry.get("pedidos.intake.full").counter().count())
+        );
+    }
+
+    @Test
+    void failedBatchMarksPedidosFailed() throws InterruptedException {
+        when(pedidoService.saveAll(anyList())).thenThrow(new IllegalStateException("Mongo caído"));
+        intake(100);
+
+        intake.submit(pedido1);
+        intake.start();
+        esperar(() -> estado(pedido1) == PedidoIntakeStatus.Estado.FAILED);
+
+        assertEquals("Mongo caído", intake.status(pedido1.getId()).orElseThrow().motivo());
+    }
+
+    @Test
+    void stopDrainsQueueAndRejectsNewPedidos() throws InterruptedException {
+        when(pedidoService.saveAll(List.of(pedido1, pedido2))).thenReturn(new PedidoBatchResult(List.of(pedido1, pedido2), Map.of()));
+        intake(100);
+
+        intake.submit(pedido1);
+        intake.submit(pedido2);
+        intake.start();
+        intake.stop();
+
+        assertAll(
+                () -> assertEquals(PedidoIntakeStatus.Estado.CREATED, estado(pedido1)),
+                () -> assertEquals(PedidoIntakeStatus.Estado.CREATED, estado(pedido2)),
+                () -> assertThrows(PedidoIntakeFull.class, () -> intake.submit(pedido3))
+        );
+    }
+
+    @Test
+    void preferHeaderEnablesAsync() {
+        intake(1);
+
+        assertAll(
+                () -> assertTrue(intake.isAsync("respond-async, wait=5")),
+                () -> assertFalse(intake.isAsync(null)),
+                () -> assertFalse(intake.isAsync("return=minimal"))
+        );
+    }
+}
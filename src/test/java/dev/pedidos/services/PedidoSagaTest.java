@@ -0,0 +1,152 @@
+package dev.pedidos.services;
+
+import dev.rest.pedido.exceptions.FunkoNotStock;
+import dev.rest.pedido.repositories.PedidoRepository;
+import dev.rest.pedido.services.saga.PedidoSaga;
+import dev.rest.pedido.services.saga.SagaEstado;
+import dev.rest.pedido.services.saga.StockReservation;
+import dev.rest.pedido.services.saga.StockReservationRepository;
+import dev.rest.pedido.services.stock.StockService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PedidoSagaTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ObjectId idPedido = new ObjectId();
+
+    @Mock
+    private StockService stockService;
+    @Mock
+    private StockReservationRepository reservationRepository;
+    @Mock
+    private PedidoRepository pedidoRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PedidoSaga saga;
+
+    @BeforeEach
+    void setUp() {
+        saga = new PedidoSaga(stockService, reservationRepository, pedidoRepository, transactionManager,
+                50, 30000, 60000, 100, meterRegistry);
+    }
+
+    private StockReservation reserva(SagaEstado estado) {
+        return StockReservation.builder()
+                .idPedido(idPedido.toHexString())
+                .estado(estado)
+                .cantidades(Map.of(1L, 2, 2L, 1))
+                .createdAt(LocalDateTime.now().minusMinutes(5))
+                .build();
+    }
+
+    @Test
+    void beginSavesPendingReservation() {
+        ArgumentCaptor<StockReservation> captor = ArgumentCaptor.forClass(StockReservation.class);
+
+        String resultado = saga.begin(idPedido, Map.of(1L, 2), () -> "reservado");
+
+        verify(reservationRepository).save(captor.capture());
+        verify(transactionManager).commit(any());
+        assertAll(
+                () -> assertEquals("reservado", resultado),
+                () -> assertEquals(idPedido.toHexString(), captor.getValue().getIdPedido()),
+                () -> assertEquals(SagaEstado.PENDING, captor.getValue().getEstado()),
+                () -> assertEquals(Map.of(1L, 2), captor.getValue().getCantidades())
+        );
+    }
+
+    @Test
+    void beginWithoutStockSavesNothing() {
+        assertThrows(FunkoNotStock.class, () -> saga.begin(idPedido, Map.of(1L, 2), () -> {
+            throw new FunkoNotStock(1L);
+        }));
+
+        verify(reservationRepository, never()).save(any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void compensateReleasesStock() {
+        when(reservationRepository.updateEstado(eq(List.of(idPedido.toHexString())), eq(SagaEstado.COMPENSATED), eq(SagaEstado.PENDING), any()))
+                .thenReturn(1);
+        when(reservationRepository.findById(idPedido.toHexString())).thenReturn(Optional.of(reserva(SagaEstado.COMPENSATED)));
+
+        saga.compensate(idPedido);
+
+        verify(stockService).adjust(Map.of(1L, -2, 2L, -1));
+        verify(reservationRepository, never()).save(any());
+        assertEquals(1, meterRegistry.get("pedidos.saga.compensated").counter().count());
+    }
+
+    @Test
+    void compensateIgnoresReservationNoLongerPending() {
+        // Ya confirmada o compensada por otro nodo: el UPDATE condicionado no toca ninguna fila
+        when(reservationRepository.updateEstado(eq(List.of(idPedido.toHexString())), eq(SagaEstado.COMPENSATED), eq(SagaEstado.PENDING), any()))
+                .thenReturn(0);
+
+        saga.compensate(idPedido);
+
+        verify(reservationRepository, never()).findById(any());
+        verify(stockService, never()).adjust(any());
+        assertEquals(0, meterRegistry.get("pedidos.saga.compensated").counter().count());
+    }
+
+    @Test
+    void confirmationsAreBatched() {
+        ObjectId otro = new ObjectId();
+        when(reservationRepository.updateEstado(any(), eq(SagaEstado.CONFIRMED), eq(SagaEstado.PENDING), any())).thenReturn(2);
+
+        saga.confirm(idPedido);
+        saga.confirm(otro);
+        saga.flushConfirmations();
+        saga.flushConfirmations();
+
+        verify(reservationRepository, times(1)).updateEstado(eq(List.of(idPedido.toHexString(), otro.toHexString())),
+                eq(SagaEstado.CONFIRMED), eq(SagaEstado.PENDING), any());
+        assertEquals(2, meterRegistry.get("pedidos.saga.confirmed").counter().count());
+    }
+
+    @Test
+    void sweepResolvesStuckReservations() {
+        StockReservation conPedido = reserva(SagaEstado.PENDING);
+        ObjectId sinPedidoId = new ObjectId();
+        StockReservation sinPedido = StockReservation.builder()
+                .idPedido(sinPedidoId.toHexString())
+                .cantidades(Map.of(3L, 4))
+                .build();
+        when(reservationRepository.findByEstadoAndCreatedAtBefore(eq(SagaEstado.PENDING), any(), any(Pageable.class)))
+                .thenReturn(List.of(conPedido, sinPedido));
+        when(pedidoRepository.existsById(idPedido)).thenReturn(true);
+        when(pedidoRepository.existsById(sinPedidoId)).thenReturn(false);
+        when(reservationRepository.updateEstado(eq(List.of(idPedido.toHexString())), eq(SagaEstado.CONFIRMED), eq(SagaEstado.PENDING), any()))
+                .thenReturn(1);
+        when(reservationRepository.updateEstado(eq(List.of(sinPedidoId.toHexString())), eq(SagaEstado.COMPENSATED), eq(SagaEstado.PENDING), any()))
+                .thenReturn(1);
+        when(reservationRepository.findById(sinPedidoId.toHexString())).thenReturn(Optional.of(sinPedido));
+
+        saga.sweep();
+
+        verify(reservationRepository).updateEstado(eq(List.of(idPedido.toHexString())), eq(SagaEstado.CONFIRMED), eq(SagaEstado.PENDING), any());
+        verify(stockService).adjust(Map.of(3L, -4));
+        assertEquals(2, meterRegistry.get("pedidos.saga.recovered").counter().count());
+    }
+}
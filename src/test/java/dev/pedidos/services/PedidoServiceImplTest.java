@@ -7,12 +7,19 @@ import dev.rest.pedido.models.LineaPedido;
 import dev.rest.pedido.models.Pedido;
 import dev.rest.pedido.repositories.PedidoRepository;
 import dev.rest.pedido.services.PedidoServiceImpl;
+import dev.rest.pedido.services.rollups.SalesRollups;
+import dev.rest.pedido.services.saga.PedidoSaga;
+import dev.rest.pedido.services.stock.StockService;
+import dev.rest.pedido.services.stock.ledger.StockLedger;
+import dev.utils.pagination.Cursor;
+import dev.utils.pagination.CursorPage;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -20,7 +27,10 @@ import org.springframework.data.domain.Pageable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,6 +42,16 @@ public class PedidoServiceImplTest {
     private PedidoRepository pedidosRepository;
     @Mock
     private FunkoRepository funkoRepository;
+    @Mock
+    private StockService stockService;
+    @Mock
+    private PedidoSaga pedidoSaga;
+    @Mock
+    private SalesRollups salesRollups;
+    @Mock
+    private ObjectProvider<StockLedger> stockLedger;
+    @Mock
+    private StockLedger ledger;
 
     @InjectMocks
     private PedidoServiceImpl pedidosService;
@@ -52,6 +72,24 @@ public class PedidoServiceImplTest {
         verify(pedidosRepository, times(1)).findAll(pageable);
     }
 
+    @Test
+    void findAllByCursor() {
+        Cursor cursor = Cursor.first("createdAt", "asc");
+        CursorPage<Pedido> expectedPage = new CursorPage<>(List.of(new Pedido(), new Pedido()), 2, "siguiente", null);
+        when(pedidosRepository.findAll(Optional.of(1L), cursor, 2)).thenReturn(expectedPage);
+
+        CursorPage<Pedido> result = pedidosService.findAll(Optional.of(1L), cursor, 2);
+
+        assertAll(
+                () -> assertEquals(expectedPage.content(), result.content()),
+                () -> assertTrue(result.hasNext()),
+                () -> assertFalse(result.hasPrevious())
+        );
+
+        verify(pedidosRepository, times(1)).findAll(Optional.of(1L), cursor, 2);
+        verify(pedidosRepository, never()).findByIdUsuario(any(), any(Pageable.class));
+    }
+
     @Test
     void findById() {
         ObjectId idPedido = new ObjectId();
@@ -105,7 +143,8 @@ public class PedidoServiceImplTest {
         pedidoToSave.setLineasPedido(List.of(lineaPedido));
 
         when(pedidosRepository.save(any(Pedido.class))).thenReturn(pedidoToSave);
-        when(funkoRepository.findById(anyLong())).thenReturn(Optional.of(funko));
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        when(pedidoSaga.begin(eq(pedido.getId()), eq(Map.of(1L, 2)), any())).thenAnswer(invocation -> invocation.<Supplier<Pedido>>getArgument(2).get());
         Pedido pedidoGuardado = pedidosService.save(pedido);
         assertAll(
                 () -> assertEquals(pedidoToSave, pedidoGuardado),
@@ -113,7 +152,79 @@ public class PedidoServiceImplTest {
                 () -> assertEquals(pedidoToSave.getLineasPedido().size(), pedidoGuardado.getLineasPedido().size()));
 
         verify(pedidosRepository).save(any(Pedido.class));
-        verify(funkoRepository, times(2)).findById(anyLong());
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L));
+        verify(stockService).reserve(pedido.getLineasPedido());
+        verify(pedidoSaga).confirm(pedidoToSave.getId());
+        verify(pedidoSaga, never()).compensate(any());
+        verify(salesRollups).add(List.of(pedidoToSave), Map.of(1L, funko));
+    }
+
+    @Test
+    void saveCompensatesWhenMongoFails() {
+        Funko funko = Funko.builder()
+                .id(1L)
+                .nombre("Funko 1")
+                .precio(10.0)
+                .cantidad(5)
+                .build();
+
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(LineaPedido.builder()
+                .idFunko(1L)
+                .cantidad(2)
+                .precioFunko(10.0)
+                .total(20.0)
+                .build()));
+
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        when(pedidoSaga.begin(any(), any(), any())).thenAnswer(invocation -> invocation.<Supplier<Pedido>>getArgument(2).get());
+        when(pedidosRepository.save(any(Pedido.class))).thenThrow(new IllegalStateException("Mongo no disponible"));
+
+        assertThrows(IllegalStateException.class, () -> pedidosService.save(pedido));
+
+        verify(stockService).reserve(pedido.getLineasPedido());
+        verify(pedidoSaga).compensate(pedido.getId());
+        verify(pedidoSaga, never()).confirm(any());
+        verify(salesRollups, never()).add(any(), any());
+    }
+
+    @Test
+    void saveAllRejectsWithoutAffectingTheBatch() {
+        Funko funko = Funko.builder()
+                .id(1L)
+                .nombre("Funko 1")
+                .precio(10.0)
+                .cantidad(5)
+                .build();
+        LineaPedido lineaPedido = LineaPedido.builder()
+                .idFunko(1L)
+                .cantidad(2)
+                .precioFunko(10.0)
+                .build();
+
+        Pedido valido = new Pedido();
+        valido.setLineasPedido(List.of(lineaPedido));
+        Pedido sinStock = new Pedido();
+        sinStock.setLineasPedido(List.of(lineaPedido));
+        Pedido malPrecio = new Pedido();
+        malPrecio.setLineasPedido(List.of(LineaPedido.builder().idFunko(1L).cantidad(1).precioFunko(1.0).build()));
+
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        when(stockService.reserveAll(Map.of(valido.getId(), Map.of(1L, 2), sinStock.getId(), Map.of(1L, 2))))
+                .thenReturn(Set.of(sinStock.getId()));
+        when(pedidoSaga.beginAll(any())).thenAnswer(invocation -> invocation.<Supplier<List<Pedido>>>getArgument(0).get());
+        when(pedidosRepository.insert(List.of(valido))).thenReturn(List.of(valido));
+
+        var resultado = pedidosService.saveAll(List.of(valido, sinStock, malPrecio));
+
+        assertAll(
+                () -> assertEquals(List.of(valido), resultado.guardados()),
+                () -> assertEquals(Set.of(sinStock.getId(), malPrecio.getId()), resultado.rechazados().keySet()),
+                () -> assertEquals(20.0, valido.getTotal())
+        );
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L));
+        verify(pedidosRepository, never()).save(any(Pedido.class));
+        verify(pedidoSaga).confirm(valido.getId());
     }
 
     @Test
@@ -121,7 +232,8 @@ public class PedidoServiceImplTest {
         Pedido pedido = new Pedido();
         assertThrows(PedidoNotItems.class, () -> pedidosService.save(pedido));
         verify(pedidosRepository, never()).save(any(Pedido.class));
-        verify(funkoRepository, never()).findById(anyLong());
+        verify(funkoRepository, never()).findAllById(any());
+        verify(stockService, never()).reserve(any());
     }
 
     @Test
@@ -133,6 +245,7 @@ public class PedidoServiceImplTest {
         pedidosService.delete(idPedido);
 
         verify(pedidosRepository).findById(idPedido);
+        verify(salesRollups).remove(pedidoToDelete);
     }
 
     @Test
@@ -171,7 +284,7 @@ public class PedidoServiceImplTest {
 
         when(pedidosRepository.findById(idPedido)).thenReturn(Optional.of(updatePedido));
         when(pedidosRepository.save(any(Pedido.class))).thenReturn(updatePedido);
-        when(funkoRepository.findById(anyLong())).thenReturn(Optional.of(funko));
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
         Pedido pedidoEsperado = pedidosService.update(idPedido, pedido);
         assertAll(
                 () -> assertEquals(updatePedido, pedidoEsperado),
@@ -179,7 +292,62 @@ public class PedidoServiceImplTest {
                 () -> assertEquals(updatePedido.getLineasPedido().size(), pedidoEsperado.getLineasPedido().size()));
         verify(pedidosRepository).findById(idPedido);
         verify(pedidosRepository).save(any(Pedido.class));
-        verify(funkoRepository, times(3)).findById(anyLong());
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L));
+        verify(salesRollups).update(updatePedido, updatePedido, Map.of(1L, funko));
+        verify(stockService, never()).release(any());
+        verify(stockService, never()).reserve(any());
+        verify(stockService, never()).adjust(any());
+    }
+
+    @Test
+    void updateOnlyChangedLines() {
+        Funko funko1 = Funko.builder().id(1L).nombre("Funko 1").precio(10.0).cantidad(1).build();
+        Funko funko2 = Funko.builder().id(2L).nombre("Funko 2").precio(20.0).cantidad(5).build();
+        Funko funko3 = Funko.builder().id(3L).nombre("Funko 3").precio(30.0).cantidad(5).build();
+
+        ObjectId idPedido = new ObjectId();
+        Pedido pedidoActual = new Pedido();
+        pedidoActual.setLineasPedido(List.of(
+                LineaPedido.builder().idFunko(1L).cantidad(2).precioFunko(10.0).build(),
+                LineaPedido.builder().idFunko(2L).cantidad(3).precioFunko(20.0).build(),
+                LineaPedido.builder().idFunko(3L).cantidad(1).precioFunko(30.0).build()));
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(
+                LineaPedido.builder().idFunko(1L).cantidad(3).precioFunko(10.0).build(),
+                LineaPedido.builder().idFunko(2L).cantidad(3).precioFunko(20.0).build()));
+
+        when(pedidosRepository.findById(idPedido)).thenReturn(Optional.of(pedidoActual));
+        when(pedidosRepository.save(pedido)).thenReturn(pedido);
+        when(funkoRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(funko1, funko2));
+        when(stockService.adjust(Map.of(1L, 1, 3L, -1))).thenReturn(List.of());
+
+        Pedido resultado = pedidosService.update(idPedido, pedido);
+
+        assertAll(
+                () -> assertEquals(90.0, resultado.getTotal()),
+                () -> assertEquals(6, resultado.getTotalItems())
+        );
+        verify(stockService, times(1)).adjust(Map.of(1L, 1, 3L, -1));
+        verify(stockService, never()).release(any());
+        verify(stockService, never()).reserve(any());
+    }
+
+    @Test
+    void updateNotStock() {
+        Funko funko1 = Funko.builder().id(1L).nombre("Funko 1").precio(10.0).cantidad(1).build();
+
+        ObjectId idPedido = new ObjectId();
+        Pedido pedidoActual = new Pedido();
+        pedidoActual.setLineasPedido(List.of(LineaPedido.builder().idFunko(1L).cantidad(2).precioFunko(10.0).build()));
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(LineaPedido.builder().idFunko(1L).cantidad(4).precioFunko(10.0).build()));
+
+        when(pedidosRepository.findById(idPedido)).thenReturn(Optional.of(pedidoActual));
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko1));
+
+        assertThrows(FunkoNotStock.class, () -> pedidosService.update(idPedido, pedido));
+        verify(stockService, never()).adjust(any());
+        verify(pedidosRepository, never()).save(any(Pedido.class));
     }
 
     @Test
@@ -190,7 +358,7 @@ public class PedidoServiceImplTest {
         assertThrows(PedidoNotFound.class, () -> pedidosService.update(idPedido, pedido));
         verify(pedidosRepository).findById(idPedido);
         verify(pedidosRepository, never()).save(any(Pedido.class));
-        verify(funkoRepository, never()).findById(anyLong());
+        verify(funkoRepository, never()).findAllById(any());
     }
 
     @Test
@@ -217,20 +385,44 @@ public class PedidoServiceImplTest {
                 .categoria(null)
                 .build();
 
-        when(funkoRepository.findById(1L)).thenReturn(Optional.of(funko));
+        when(stockService.reserve(lineaPedidos)).thenReturn(List.of());
 
 
-        Pedido result = pedidosService.reserveStockPedidos(pedido);
+        Pedido result = pedidosService.reserveStockPedidos(pedido, Map.of(1L, funko));
 
 
-        assertAll(() -> assertEquals(3, funko.getCantidad()),
-                () -> assertEquals(20.0, lineaPedido.getTotal()),
+        assertAll(() -> assertEquals(20.0, lineaPedido.getTotal()),
                 () -> assertEquals(20.0, result.getTotal()),
                 () -> assertEquals(2, result.getTotalItems())
         );
 
-        verify(funkoRepository, times(1)).findById(1L);
-        verify(funkoRepository, times(1)).save(funko);
+        verify(stockService, times(1)).reserve(lineaPedidos);
+        verify(funkoRepository, never()).save(any(Funko.class));
+    }
+
+    @Test
+    void reserveStockPedidosNotStock() {
+        Pedido pedido = new Pedido();
+        List<LineaPedido> lineaPedidos = new ArrayList<>();
+        LineaPedido lineaPedido1 = LineaPedido.builder()
+                .idFunko(1L)
+                .cantidad(2)
+                .precioFunko(10.0)
+                .build();
+        LineaPedido lineaPedido2 = LineaPedido.builder()
+                .idFunko(2L)
+                .cantidad(50)
+                .precioFunko(10.0)
+                .build();
+        lineaPedidos.add(lineaPedido1);
+        lineaPedidos.add(lineaPedido2);
+        pedido.setLineasPedido(lineaPedidos);
+
+        when(stockService.reserve(lineaPedidos)).thenReturn(List.of(2L));
+
+        var resultado = assertThrows(FunkoNotStock.class, () -> pedidosService.reserveStockPedidos(pedido, Map.of()));
+        assertTrue(resultado.getMessage().contains("[2]"));
+        verify(stockService, times(1)).reserve(lineaPedidos);
     }
 
     @Test
@@ -248,26 +440,12 @@ public class PedidoServiceImplTest {
         lineasPedido.add(lineaPedido1);
         pedido.setLineasPedido(lineasPedido);
 
-        Funko funko = Funko.builder()
-                .id(1L)
-                .nombre("Funko 1")
-                .precio(10.0)
-                .cantidad(5)
-                .rutaImagen("ruta1")
-                .categoria(null)
-                .build();
-
-        when(funkoRepository.findById(1L)).thenReturn(Optional.of(funko));
-        when(funkoRepository.save(funko)).thenReturn(funko);
-
         Pedido result = pedidosService.returnStockPedidos(pedido);
 
-        assertEquals(7, funko.getCantidad());
         assertEquals(pedido, result);
 
-
-        verify(funkoRepository, times(1)).findById(1L);
-        verify(funkoRepository, times(1)).save(funko);
+        verify(stockService, times(1)).release(lineasPedido);
+        verify(funkoRepository, never()).save(any(Funko.class));
     }
 
     @Test
@@ -292,9 +470,28 @@ public class PedidoServiceImplTest {
                 .categoria(null)
                 .build();
 
-        when(funkoRepository.findById(1L)).thenReturn(Optional.of(funko));
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
         assertDoesNotThrow(() -> pedidosService.checkPedido(pedido));
-        verify(funkoRepository, times(1)).findById(1L);
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L));
+    }
+
+    @Test
+    void checkPedidoVariasLineas() {
+
+        Pedido pedido = new Pedido();
+        List<LineaPedido> lineasPedido = new ArrayList<>();
+        lineasPedido.add(LineaPedido.builder().idFunko(1L).cantidad(2).precioFunko(10.0).build());
+        lineasPedido.add(LineaPedido.builder().idFunko(2L).cantidad(1).precioFunko(20.0).build());
+        lineasPedido.add(LineaPedido.builder().idFunko(1L).cantidad(1).precioFunko(10.0).build());
+        pedido.setLineasPedido(lineasPedido);
+        Funko funko1 = Funko.builder().id(1L).nombre("Funko 1").precio(10.0).cantidad(5).build();
+        Funko funko2 = Funko.builder().id(2L).nombre("Funko 2").precio(20.0).cantidad(5).build();
+
+        when(funkoRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(funko1, funko2));
+        var funkos = pedidosService.checkPedido(pedido);
+        assertEquals(Map.of(1L, funko1, 2L, funko2), funkos);
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L, 2L));
+        verify(funkoRepository, never()).findById(anyLong());
     }
 
     @Test
@@ -310,9 +507,9 @@ public class PedidoServiceImplTest {
                 .build();
         lineasPedido.add(lineaPedido1);
         pedido.setLineasPedido(lineasPedido);
-        when(funkoRepository.findById(1L)).thenReturn(Optional.empty());
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of());
         assertThrows(FunkoNotFound.class, () -> pedidosService.checkPedido(pedido));
-        verify(funkoRepository, times(1)).findById(1L);
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L));
     }
 
     @Test
@@ -338,9 +535,36 @@ public class PedidoServiceImplTest {
                 .rutaImagen("ruta1")
                 .categoria(null)
                 .build();
-        when(funkoRepository.findById(1L)).thenReturn(Optional.of(funko));
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        assertThrows(FunkoNotStock.class, () -> pedidosService.checkPedido(pedido));
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L));
+    }
+
+    @Test
+    void checkPedidoReadsStockFromLedger() {
+
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(LineaPedido.builder().idFunko(1L).cantidad(4).precioFunko(10.0).build()));
+        // La fila todavía no refleja las reservas que el ledger no ha volcado
+        Funko funko = Funko.builder().id(1L).nombre("Funko 1").precio(10.0).cantidad(5).build();
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        when(stockLedger.getIfAvailable()).thenReturn(ledger);
+        when(ledger.stock(1L)).thenReturn(3);
+
         assertThrows(FunkoNotStock.class, () -> pedidosService.checkPedido(pedido));
-        verify(funkoRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void checkPedidoWithLedgerIgnoresStaleRow() {
+
+        Pedido pedido = new Pedido();
+        pedido.setLineasPedido(List.of(LineaPedido.builder().idFunko(1L).cantidad(4).precioFunko(10.0).build()));
+        Funko funko = Funko.builder().id(1L).nombre("Funko 1").precio(10.0).cantidad(0).build();
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        when(stockLedger.getIfAvailable()).thenReturn(ledger);
+        when(ledger.stock(1L)).thenReturn(4);
+
+        assertDoesNotThrow(() -> pedidosService.checkPedido(pedido));
     }
 
     @Test
@@ -368,9 +592,9 @@ public class PedidoServiceImplTest {
                 .rutaImagen("ruta1")
                 .categoria(null)
                 .build();
-        when(funkoRepository.findById(1L)).thenReturn(Optional.of(funko));
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
         assertThrows(FunkoBadPrice.class, () -> pedidosService.checkPedido(pedido));
-        verify(funkoRepository, times(1)).findById(1L);
+        verify(funkoRepository, times(1)).findAllById(Set.of(1L));
     }
 
 }
@@ -0,0 +1,187 @@
+package dev.pedidos.services;
+
+import dev.rest.categoria.models.Categoria;
+import dev.rest.funkos.models.Funko;
+import dev.rest.funkos.repositories.FunkoRepository;
+import dev.rest.pedido.models.LineaPedido;
+import dev.rest.pedido.models.Pedido;
+import dev.rest.pedido.services.rollups.SalesRollup;
+import dev.rest.pedido.services.rollups.SalesRollups;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesRollupsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Funko funko = Funko.builder()
+            .id(1L)
+            .nombre("Funko 1")
+            .precio(10.0)
+            .cantidad(5)
+            .categoria(Categoria.builder().id(1L).name("SERIE").build())
+            .build();
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private FunkoRepository funkoRepository;
+    @Mock
+    private BulkOperations bulk;
+
+    private SalesRollups salesRollups;
+
+    @BeforeEach
+    void setUp() {
+        salesRollups = new SalesRollups(mongoTemplate, funkoRepository, 4, 7, 1000, 600000, meterRegistry);
+    }
+
+    private Pedido pedido(LineaPedido... lineas) {
+        return Pedido.builder()
+                .idUsuario(1L)
+                .lineasPedido(List.of(lineas))
+                .createdAt(LocalDateTime.of(2023, 11, 20, 12, 0))
+                .build();
+    }
+
+    private LineaPedido linea(Long idFunko, int cantidad) {
+        return LineaPedido.builder()
+                .idFunko(idFunko)
+                .cantidad(cantidad)
+                .precioFunko(10.0)
+                .total(cantidad * 10.0)
+                .build();
+    }
+
+    @Test
+    void addIncrementsEachRollupOncePerPedido() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class)).thenReturn(bulk);
+        ArgumentCaptor<Query> consultas = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> incrementos = ArgumentCaptor.forClass(Update.class);
+
+        salesRollups.add(List.of(pedido(linea(1L, 2), linea(1L, 1))), Map.of(1L, funko));
+
+        verify(bulk, times(3)).upsert(consultas.capture(), incrementos.capture());
+        verify(bulk, times(1)).execute();
+        verify(funkoRepository, never()).findAllById(any());
+        Map<Object, Document> porId = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            porId.put(consultas.getAllValues().get(i).getQueryObject().get("_id"),
+                    incrementos.getAllValues().get(i).getUpdateObject().get("$inc", Document.class));
+        }
+        assertAll(
+                () -> assertEquals(Set.of("TOTAL:total:2023-11-20", "FUNKO:1:2023-11-20", "CATEGORIA:SERIE:2023-11-20"), porId.keySet()),
+                () -> assertEquals(3L, porId.get("FUNKO:1:2023-11-20").get("unidades")),
+                () -> assertEquals(30.0, porId.get("FUNKO:1:2023-11-20").get("importe")),
+                () -> assertEquals(1L, porId.get("FUNKO:1:2023-11-20").get("pedidos"))
+        );
+    }
+
+    @Test
+    void updateOnlyWritesDifferences() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class)).thenReturn(bulk);
+        when(funkoRepository.findAllById(Set.of(2L))).thenReturn(List.of());
+
+        salesRollups.update(pedido(linea(1L, 2)), pedido(linea(1L, 2), linea(2L, 1)), Map.of(1L, funko));
+
+        // Cambian el total del día y el funko 2; el funko 1 y su categoría se quedan igual
+        verify(bulk, times(2)).upsert(any(Query.class), any(Update.class));
+        verify(bulk, times(1)).execute();
+    }
+
+    @Test
+    void unchangedUpdateWritesNothing() {
+        salesRollups.update(pedido(linea(1L, 2)), pedido(linea(1L, 2)), Map.of(1L, funko));
+
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+    }
+
+    @Test
+    void failedIncrementDoesNotThrow() {
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class)).thenReturn(bulk);
+        when(bulk.execute()).thenThrow(new IllegalStateException("Mongo no disponible"));
+
+        assertDoesNotThrow(() -> salesRollups.remove(pedido(linea(1L, 2))));
+
+        assertEquals(1, meterRegistry.get("pedidos.rollups.errors").counter().count());
+    }
+
+    @Test
+    void failedIncrementIsReconciledByRebuildingTheDay() {
+        when(funkoRepository.findAllById(Set.of(1L))).thenReturn(List.of(funko));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SalesRollup.class)).thenReturn(bulk);
+        when(bulk.execute()).thenThrow(new IllegalStateException("Mongo no disponible"));
+        salesRollups.add(List.of(pedido(linea(1L, 2))), Map.of());
+        assertEquals(1, meterRegistry.get("pedidos.rollups.pending-days").gauge().value());
+
+        when(funkoRepository.findAll()).thenReturn(List.of(funko));
+        when(mongoTemplate.stream(any(Query.class), eq(Pedido.class))).thenReturn(Stream.of(pedido(linea(1L, 2))));
+
+        assertEquals(3, salesRollups.reconcile());
+
+        verify(mongoTemplate, times(1)).remove(any(Query.class), eq(SalesRollup.class));
+        verify(mongoTemplate, times(1)).insert(anyList(), eq(SalesRollup.class));
+        assertEquals(0, meterRegistry.get("pedidos.rollups.pending-days").gauge().value());
+    }
+
+    @Test
+    void rebuildSkipsToday() {
+        assertEquals(0, salesRollups.rebuild(LocalDate.now(), LocalDate.now()));
+
+        verifyNoInteractions(mongoTemplate, funkoRepository);
+    }
+
+    @Test
+    void closedDayWriteWaitsForTheRebuildOfThatDay() throws Exception {
+        CountDownLatch leyendo = new CountDownLatch(1);
+        CountDownLatch seguir = new CountDownLatch(1);
+        when(funkoRepository.findAll()).thenReturn(List.of(funko));
+        when(mongoTemplate.stream(any(Query.class), eq(Pedido.class))).thenAnswer(invocation -> {
+            leyendo.countDown();
+            seguir.await();
+            return Stream.of(pedido(linea(1L, 2)));
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> rebuild = executor.submit(() -> salesRollups.rebuild(LocalDate.of(2023, 11, 20), LocalDate.of(2023, 11, 20)));
+            assertTrue(leyendo.await(5, TimeUnit.SECONDS));
+
+            Future<Boolean> escritura = executor.submit(() -> salesRollups.lockClosedDay(pedido(linea(1L, 1))));
+            assertThrows(TimeoutException.class, () -> escritura.get(200, TimeUnit.MILLISECONDS));
+
+            seguir.countDown();
+            assertEquals(3, rebuild.get(5, TimeUnit.SECONDS));
+            assertTrue(escritura.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
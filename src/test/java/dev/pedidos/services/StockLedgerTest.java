@@ -0,0 +1,173 @@
+package dev.pedidos.services;
+
+import dev.rest.pedido.repositories.StockRepository;
+import dev.rest.pedido.services.stock.ledger.StockLedger;
+import dev.rest.pedido.services.stock.ledger.StockLedgerCheckpoint;
+import dev.rest.pedido.services.stock.ledger.StockLedgerCheckpointRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockLedgerTest {
+
+    @TempDir
+    Path directorio;
+
+    @Mock
+    private StockRepository stockRepository;
+    @Mock
+    private StockLedgerCheckpointRepository checkpointRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StockLedger ledger;
+
+    private StockLedger ledger() throws Exception {
+        StockLedger nuevo = new StockLedger(stockRepository, checkpointRepository, transactionManager,
+                directorio.toString(), 1024, true, 4, 60_000, new SimpleMeterRegistry());
+        nuevo.start();
+        return nuevo;
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        lenient().when(stockRepository.findStock(1L)).thenReturn(Optional.of(5));
+        lenient().when(stockRepository.findStock(2L)).thenReturn(Optional.of(1));
+        ledger = ledger();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ledger.stop();
+    }
+
+    @Test
+    void adjustIsAllOrNothing() {
+        List<Long> sinStock = ledger.adjust(Map.of(1L, 2, 2L, 2));
+
+        assertAll(
+                () -> assertEquals(List.of(2L), sinStock),
+                () -> assertEquals(5, ledger.stock(1L)),
+                () -> assertEquals(1, ledger.stock(2L))
+        );
+    }
+
+    @Test
+    void reserveAllServesInArrivalOrder() {
+        var pedidos = new LinkedHashMap<String, Map<Long, Integer>>();
+        pedidos.put("primero", Map.of(1L, 4));
+        pedidos.put("segundo", Map.of(1L, 2));
+        pedidos.put("tercero", Map.of(1L, 1, 2L, 1));
+
+        Set<String> sinStock = ledger.reserveAll(pedidos);
+
+        assertAll(
+                () -> assertEquals(Set.of("segundo"), sinStock),
+                () -> assertEquals(0, ledger.stock(1L)),
+                () -> assertEquals(0, ledger.stock(2L))
+        );
+    }
+
+    @Test
+    void flushAppliesAggregatedDeltas() {
+        ledger.adjust(Map.of(1L, 2));
+        ledger.adjust(Map.of(1L, 1, 2L, -3));
+
+        ledger.flush();
+
+        ArgumentCaptor<StockLedgerCheckpoint> checkpoint = ArgumentCaptor.forClass(StockLedgerCheckpoint.class);
+        verify(stockRepository, times(1)).incrementStock(Map.of(1L, -3, 2L, 3));
+        verify(checkpointRepository).save(checkpoint.capture());
+        assertAll(
+                () -> assertEquals(3, checkpoint.getValue().getSeq()),
+                () -> assertEquals(2, ledger.stock(1L)),
+                () -> assertEquals(4, ledger.stock(2L))
+        );
+    }
+
+    @Test
+    void recoversUnflushedMovementsAfterCrash() throws Exception {
+        ledger.adjust(Map.of(1L, 2));
+        ledger.adjust(Map.of(1L, 1));
+
+        // Otra instancia sobre el mismo directorio, sin que la primera haya volcado nada
+        StockLedger recuperado = ledger();
+        recuperado.stop();
+
+        verify(stockRepository, times(1)).incrementStock(Map.of(1L, -3));
+    }
+
+    @Test
+    void rollbackCompensatesReservation() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ledger.adjust(Map.of(1L, 2));
+            assertEquals(3, ledger.stock(1L));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sincronizacion -> sincronizacion.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        ledger.flush();
+
+        assertEquals(5, ledger.stock(1L));
+        verify(stockRepository, never()).incrementStock(any());
+    }
+
+    @Test
+    void setRecordsAdminChangeAsMovement() {
+        ledger.adjust(Map.of(1L, 2));
+
+        int subida = ledger.set(1L, 10);
+        int bajada = ledger.set(2L, 0);
+        ledger.flush();
+
+        // La reserva pendiente y el ajuste se suman, sin pisar la fila con la cantidad nueva
+        verify(stockRepository, times(1)).incrementStock(Map.of(1L, 5, 2L, -1));
+        assertAll(
+                () -> assertEquals(7, subida),
+                () -> assertEquals(-1, bajada),
+                () -> assertEquals(10, ledger.stock(1L)),
+                () -> assertEquals(0, ledger.stock(2L))
+        );
+    }
+
+    @Test
+    void removeForgetsCounterAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertEquals(5, ledger.remove(1L));
+            assertEquals(5, ledger.stock(1L));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        when(stockRepository.findStock(1L)).thenReturn(Optional.empty());
+
+        assertAll(
+                () -> assertEquals(0, ledger.stock(1L)),
+                () -> assertEquals(List.of(1L), ledger.adjust(Map.of(1L, 1)))
+        );
+    }
+}
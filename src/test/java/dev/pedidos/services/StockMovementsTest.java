@@ -0,0 +1,108 @@
+package dev.pedidos.services;
+
+import dev.rest.pedido.services.stock.movements.StockMovement;
+import dev.rest.pedido.services.stock.movements.StockMovementRepository;
+import dev.rest.pedido.services.stock.movements.StockMovements;
+import dev.rest.pedido.services.stock.movements.StockSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockMovementsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LocalDateTime momento = LocalDateTime.of(2023, 11, 20, 12, 0);
+
+    @Mock
+    private StockMovementRepository repository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StockMovements stockMovements;
+
+    @BeforeEach
+    void setUp() {
+        stockMovements = new StockMovements(repository, transactionManager, 60000, 60000, 2592000000L, meterRegistry);
+    }
+
+    private StockSnapshot foto(int cantidad, long lastMovementId) {
+        return StockSnapshot.builder()
+                .idFunko(1L)
+                .cantidad(cantidad)
+                .lastMovementId(lastMovementId)
+                .takenAt(momento.minusHours(1))
+                .build();
+    }
+
+    @Test
+    void recordSkipsZeroDeltas() {
+        stockMovements.record(Map.of(1L, -2, 2L, 0), StockMovement.Motivo.PEDIDO);
+        stockMovements.record(3L, 0, StockMovement.Motivo.AJUSTE);
+
+        verify(repository, times(1)).insertAll(eq(Map.of(1L, -2)), eq(StockMovement.Motivo.PEDIDO), any());
+        verifyNoMoreInteractions(repository);
+        assertEquals(1, meterRegistry.get("stock.movements.recorded").counter().count());
+    }
+
+    @Test
+    void stockAtAddsTailToSnapshot() {
+        when(repository.findSnapshotAtOrBefore(1L, momento)).thenReturn(Optional.of(foto(10, 40L)));
+        when(repository.sumAfter(1L, 40L, momento)).thenReturn(-3);
+
+        var stock = stockMovements.stockAt(1L, momento);
+
+        assertAll(
+                () -> assertEquals(7, stock.cantidad()),
+                () -> assertEquals(momento, stock.momento())
+        );
+        verify(repository, never()).findSnapshotAfter(any(), any());
+    }
+
+    @Test
+    void stockAtBeforeFirstSnapshotUndoesMovements() {
+        when(repository.findSnapshotAtOrBefore(1L, momento)).thenReturn(Optional.empty());
+        when(repository.findSnapshotAfter(1L, momento)).thenReturn(Optional.of(foto(10, 40L)));
+        when(repository.sumBefore(1L, 40L, momento)).thenReturn(-5);
+
+        assertEquals(15, stockMovements.stockAt(1L, momento).cantidad());
+    }
+
+    @Test
+    void compactSnapshotsMovedFunkos() {
+        when(repository.lastMovementUntil(any())).thenReturn(50L);
+        when(repository.lastSnapshotMovement()).thenReturn(40L);
+        when(repository.sumByFunko(40L, 50L)).thenReturn(Map.of(1L, -3, 2L, 4));
+        when(repository.findLatestSnapshots(Set.of(1L, 2L))).thenReturn(Map.of(1L, 10));
+
+        stockMovements.compact();
+
+        verify(repository).insertSnapshots(eq(Map.of(1L, 7, 2L, 4)), eq(50L), any());
+        verify(repository).deleteSnapshotsBefore(any());
+        verify(transactionManager).commit(any());
+        assertEquals(2, meterRegistry.get("stock.movements.snapshots").counter().count());
+    }
+
+    @Test
+    void compactWithoutNewMovements() {
+        when(repository.lastMovementUntil(any())).thenReturn(40L);
+        when(repository.lastSnapshotMovement()).thenReturn(40L);
+
+        stockMovements.compact();
+
+        verify(repository, never()).sumByFunko(anyLong(), anyLong());
+        verify(repository, never()).insertSnapshots(any(), anyLong(), any());
+    }
+}
@@ -0,0 +1,136 @@
+package dev.pedidos.services;
+
+import dev.rest.pedido.models.LineaPedido;
+import dev.rest.pedido.repositories.StockRepository;
+import dev.rest.pedido.services.stock.StockServiceImpl;
+import dev.rest.pedido.services.stock.movements.StockMovement;
+import dev.rest.pedido.services.stock.movements.StockMovements;
+import dev.websockets.notifications.outbox.Outbox;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockServiceImplTest {
+
+    private final LineaPedido lineaPedido1 = LineaPedido.builder()
+            .idFunko(1L)
+            .cantidad(2)
+            .precioFunko(10.0)
+            .build();
+
+    private final LineaPedido lineaPedido2 = LineaPedido.builder()
+            .idFunko(2L)
+            .cantidad(5)
+            .precioFunko(20.0)
+            .build();
+
+    private final LineaPedido lineaPedido3 = LineaPedido.builder()
+            .idFunko(1L)
+            .cantidad(1)
+            .precioFunko(10.0)
+            .build();
+
+    @Mock
+    private StockRepository stockRepository;
+    @Mock
+    private Outbox outbox;
+    @Mock
+    private StockMovements stockMovements;
+
+    @InjectMocks
+    private StockServiceImpl stockService;
+
+    @Test
+    void reserve() {
+        when(stockRepository.decrementStock(Map.of(1L, 3, 2L, 5))).thenReturn(new int[]{1, 1});
+
+        List<Long> sinStock = stockService.reserve(List.of(lineaPedido1, lineaPedido2, lineaPedido3));
+
+        assertTrue(sinStock.isEmpty());
+        verify(stockRepository, times(1)).decrementStock(Map.of(1L, 3, 2L, 5));
+        verify(stockRepository, never()).incrementStock(any());
+        verify(outbox, times(1)).publish(isNull(), contains("\"idFunko\":1,\"cambio\":-3"), any());
+        verify(outbox, times(1)).publish(isNull(), contains("\"idFunko\":2,\"cambio\":-5"), any());
+        verify(stockMovements, times(1)).record(Map.of(1L, -3, 2L, -5), StockMovement.Motivo.PEDIDO);
+    }
+
+    @Test
+    void reserveAllFirstComeFirstServed() {
+        when(stockRepository.lockStock(Set.of(1L, 2L))).thenReturn(new HashMap<>(Map.of(1L, 3, 2L, 5)));
+        when(stockRepository.decrementStock(Map.of(1L, 3, 2L, 5))).thenReturn(new int[]{1, 1});
+        var pedidos = new LinkedHashMap<String, Map<Long, Integer>>();
+        pedidos.put("primero", Map.of(1L, 2));
+        pedidos.put("segundo", Map.of(1L, 2, 2L, 1));
+        pedidos.put("tercero", Map.of(1L, 1, 2L, 5));
+
+        Set<String> sinStock = stockService.reserveAll(pedidos);
+
+        assertEquals(Set.of("segundo"), sinStock);
+        verify(stockRepository, times(1)).decrementStock(Map.of(1L, 3, 2L, 5));
+        verify(outbox, times(1)).publish(isNull(), contains("\"idFunko\":1,\"cambio\":-3"), any());
+    }
+
+    @Test
+    void reserveNotStock() {
+        when(stockRepository.decrementStock(Map.of(1L, 2, 2L, 5))).thenReturn(new int[]{1, 0});
+
+        List<Long> sinStock = stockService.reserve(List.of(lineaPedido1, lineaPedido2));
+
+        assertEquals(List.of(2L), sinStock);
+        verify(stockRepository, times(1)).decrementStock(Map.of(1L, 2, 2L, 5));
+        verify(stockRepository, times(1)).incrementStock(Map.of(1L, 2));
+        verify(outbox, never()).publish(any(), anyString(), any());
+    }
+
+    @Test
+    void reserveNothingReserved() {
+        when(stockRepository.decrementStock(Map.of(1L, 2, 2L, 5))).thenReturn(new int[]{0, 0});
+
+        List<Long> sinStock = stockService.reserve(List.of(lineaPedido1, lineaPedido2));
+
+        assertEquals(List.of(1L, 2L), sinStock);
+        verify(stockRepository, never()).incrementStock(any());
+    }
+
+    @Test
+    void adjust() {
+        when(stockRepository.decrementStock(Map.of(1L, 2, 2L, -3))).thenReturn(new int[]{1, 1});
+
+        List<Long> sinStock = stockService.adjust(Map.of(2L, -3, 1L, 2));
+
+        assertTrue(sinStock.isEmpty());
+        verify(stockRepository, never()).incrementStock(any());
+    }
+
+    @Test
+    void adjustNotStock() {
+        when(stockRepository.decrementStock(Map.of(1L, 2, 2L, -3))).thenReturn(new int[]{0, 1});
+
+        List<Long> sinStock = stockService.adjust(Map.of(1L, 2, 2L, -3));
+
+        assertEquals(List.of(1L), sinStock);
+        verify(stockRepository, times(1)).incrementStock(Map.of(2L, -3));
+        verify(stockMovements, never()).record(anyMap(), any());
+    }
+
+    @Test
+    void release() {
+        stockService.release(List.of(lineaPedido1, lineaPedido2, lineaPedido3));
+
+        verify(stockRepository, times(1)).incrementStock(Map.of(1L, 3, 2L, 5));
+        verify(outbox, times(2)).publish(isNull(), anyString(), any());
+        verify(stockMovements, times(1)).record(Map.of(1L, 3, 2L, 5), StockMovement.Motivo.PEDIDO);
+    }
+}
@@ -0,0 +1,78 @@
+package dev.pedidos.services;
+
+import dev.rest.pedido.services.stock.ledger.StripedCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedCounterTest {
+
+    @Test
+    void takeAcrossStripes() {
+        StripedCounter contador = new StripedCounter(4, 10);
+
+        assertAll(
+                () -> assertTrue(contador.tryTake(9)),
+                () -> assertEquals(1, contador.sum()),
+                () -> assertFalse(contador.tryTake(2)),
+                () -> assertEquals(1, contador.sum()),
+                () -> assertTrue(contador.tryTake(1)),
+                () -> assertEquals(0, contador.sum())
+        );
+    }
+
+    @Test
+    void addReturnsStock() {
+        StripedCounter contador = new StripedCounter(3, 0);
+
+        contador.add(5);
+
+        assertAll(
+                () -> assertTrue(contador.tryTake(5)),
+                () -> assertFalse(contador.tryTake(1))
+        );
+    }
+
+    @Test
+    void neverOversellsUnderContention() throws Exception {
+        StripedCounter contador = new StripedCounter(8, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch salida = new CountDownLatch(1);
+        List<Future<Integer>> hilos = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            hilos.add(executor.submit(() -> {
+                salida.await();
+                int vendidas = 0;
+                for (int j = 0; j < 500; j++) {
+                    if (contador.tryTake(3)) {
+                        vendidas += 3;
+                    }
+                }
+                return vendidas;
+            }));
+        }
+        salida.countDown();
+        int vendidas = 0;
+        for (Future<Integer> hilo : hilos) {
+            vendidas += hilo.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        while (contador.tryTake(3)) {
+            vendidas += 3;
+        }
+
+        int total = vendidas;
+        assertAll(
+                () -> assertEquals(999, total),
+                () -> assertEquals(1, contador.sum())
+        );
+    }
+}
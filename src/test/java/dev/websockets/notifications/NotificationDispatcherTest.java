@@ -0,0 +1,176 @@
+package dev.websockets.notifications;
+
+import dev.config.websocket.PendingNotification;
+import dev.config.websocket.WebSocketSender;
+import dev.websockets.notifications.dispatcher.NotificationDispatcher;
+import dev.websockets.notifications.dispatcher.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> enviados = new CopyOnWriteArrayList<>();
+    private final List<List<String>> lotes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch bloqueo = new CountDownLatch(1);
+    private NotificationDispatcher dispatcher;
+
+    // El primer envío se queda esperando hasta liberar() para poder llenar la cola
+    private final WebSocketSender sender = new WebSocketSender() {
+        @Override
+        public void sendMessage(String message) throws IOException {
+            try {
+                bloqueo.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            enviados.add(message);
+        }
+
+        @Override
+        public void sendMessages(List<PendingNotification> notifications) throws IOException {
+            List<String> lote = notifications.stream().map(PendingNotification::message).toList();
+            lotes.add(lote);
+            enviados.addAll(lote);
+        }
+    };
+
+    private NotificationDispatcher dispatcher(int capacidad, OverflowPolicy overflowPolicy) {
+        return dispatcher(capacidad, overflowPolicy, 0, 500);
+    }
+
+    private NotificationDispatcher dispatcher(int capacidad, OverflowPolicy overflowPolicy, long batchWindowMs, int batchMaxEvents) {
+        dispatcher = new NotificationDispatcher(capacidad, overflowPolicy, 1, false, batchWindowMs, batchMaxEvents, meterRegistry);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private void esperarCola(int profundidad) {
+        while (dispatcher.queueDepth() != profundidad) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void esperarEnviados(int total) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5000;
+        while (enviados.size() < total && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        bloqueo.countDown();
+        dispatcher.stop();
+    }
+
+    @Test
+    void dispatchInOrder() throws InterruptedException {
+        dispatcher(10, OverflowPolicy.BLOCK);
+        bloqueo.countDown();
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch("FUNKOS:" + i, "m" + i, sender);
+        }
+        esperarEnviados(5);
+
+        assertAll(
+                () -> assertEquals(List.of("m0", "m1", "m2", "m3", "m4"), enviados),
+                () -> assertEquals(5, meterRegistry.get("notifications.dispatch.latency").timer().count())
+        );
+    }
+
+    @Test
+    void dropOldest() throws Exception {
+        dispatcher(2, OverflowPolicy.DROP_OLDEST);
+        dispatcher.dispatch("FUNKOS:0", "m0", sender);
+        esperarCola(0);
+
+        CompletableFuture<Void> descartada = dispatcher.dispatch("FUNKOS:1", "m1", sender);
+        dispatcher.dispatch("FUNKOS:2", "m2", sender);
+        CompletableFuture<Void> ultima = dispatcher.dispatch("FUNKOS:3", "m3", sender);
+        bloqueo.countDown();
+        esperarEnviados(3);
+        ultima.get(5, TimeUnit.SECONDS);
+
+        assertAll(
+                () -> assertEquals(List.of("m0", "m2", "m3"), enviados),
+                () -> assertEquals(1, meterRegistry.get("notifications.dropped").counter().count()),
+                () -> assertTrue(descartada.isCompletedExceptionally()),
+                () -> assertTrue(ultima.isDone() && !ultima.isCompletedExceptionally())
+        );
+    }
+
+    @Test
+    void coalesce() throws InterruptedException {
+        dispatcher(10, OverflowPolicy.COALESCE);
+        dispatcher.dispatch("FUNKOS:0", "m0", sender);
+        esperarCola(0);
+
+        dispatcher.dispatch("FUNKOS:1", "precio 10", sender);
+        dispatcher.dispatch("FUNKOS:2", "m2", sender);
+        dispatcher.dispatch("FUNKOS:1", "precio 20", sender);
+        assertEquals(2, dispatcher.queueDepth());
+        bloqueo.countDown();
+        esperarEnviados(3);
+
+        assertAll(
+                () -> assertEquals(List.of("m0", "precio 20", "m2"), enviados),
+                () -> assertEquals(1, meterRegistry.get("notifications.coalesced").counter().count())
+        );
+    }
+
+    @Test
+    void blockWhenFull() throws InterruptedException {
+        dispatcher(1, OverflowPolicy.BLOCK);
+        dispatcher.dispatch("FUNKOS:0", "m0", sender);
+        esperarCola(0);
+        dispatcher.dispatch("FUNKOS:1", "m1", sender);
+
+        Thread productor = new Thread(() -> dispatcher.dispatch("FUNKOS:2", "m2", sender));
+        productor.start();
+        productor.join(200);
+        assertTrue(productor.isAlive());
+
+        bloqueo.countDown();
+        productor.join(TimeUnit.SECONDS.toMillis(5));
+        esperarEnviados(3);
+
+        assertAll(
+                () -> assertFalse(productor.isAlive()),
+                () -> assertEquals(List.of("m0", "m1", "m2"), enviados)
+        );
+    }
+
+    @Test
+    void batchMergesRepeatedKeys() throws InterruptedException {
+        dispatcher(100, OverflowPolicy.BLOCK, 10_000, 4);
+        bloqueo.countDown();
+
+        dispatcher.dispatch("FUNKOS:1", "precio 10", sender);
+        dispatcher.dispatch("FUNKOS:2", "m2", sender);
+        dispatcher.dispatch("FUNKOS:1", "precio 20", sender);
+        dispatcher.dispatch("FUNKOS:3", "m3", sender);
+        long limite = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("notifications.dispatch.latency").timer().count() < 4 && System.currentTimeMillis() < limite) {
+            Thread.sleep(5);
+        }
+
+        assertAll(
+                () -> assertEquals(List.of(List.of("m2", "precio 20", "m3")), lotes),
+                () -> assertEquals(1, meterRegistry.get("notifications.coalesced").counter().count()),
+                () -> assertEquals(1, meterRegistry.get("notifications.batches").counter().count()),
+                () -> assertEquals(4, meterRegistry.get("notifications.dispatch.latency").timer().count())
+        );
+    }
+}
@@ -0,0 +1,174 @@
+package dev.websockets.notifications;
+
+import dev.config.websocket.NotificationTopic;
+import dev.config.websocket.WebSocketHandler;
+import dev.websockets.notifications.dispatcher.NotificationDispatcher;
+import dev.websockets.notifications.models.Notification;
+import dev.websockets.notifications.outbox.OutboxEvent;
+import dev.websockets.notifications.outbox.OutboxRelay;
+import dev.websockets.notifications.outbox.OutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OutboxEvent evento1 = OutboxEvent.builder()
+            .id(1L)
+            .eventKey("FUNKOS:1")
+            .payload("{\"entity\":\"FUNKOS\"}")
+            .tipo(Notification.Tipo.UPDATE)
+            .entityId(1L)
+            .categoria("Marvel")
+            .createdAt(LocalDateTime.now().minusSeconds(2))
+            .build();
+    private final OutboxEvent evento2 = OutboxEvent.builder()
+            .id(2L)
+            .payload("{\"entity\":\"STOCK\"}")
+            .createdAt(LocalDateTime.now())
+            .build();
+
+    @Mock
+    private OutboxRepository outboxRepository;
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+    @Mock
+    private WebSocketHandler webSocketHandler;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(outboxRepository, notificationDispatcher, webSocketHandler, transactionManager,
+                2, 1000, 5000, 1000, 3600000, 60000, meterRegistry);
+    }
+
+    private OutboxEvent evento(long id, LocalDateTime createdAt) {
+        return OutboxEvent.builder().id(id).payload("m" + id).createdAt(createdAt).build();
+    }
+
+    @Test
+    void relayDispatchesInOrderFromTheNodePosition() {
+        when(outboxRepository.findMaxId()).thenReturn(0L);
+        when(outboxRepository.findAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(evento1, evento2));
+        when(outboxRepository.findAfter(eq(2L), any(Pageable.class))).thenReturn(List.of());
+        when(notificationDispatcher.dispatch(any(), anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        int enviadas = relay.relay();
+
+        InOrder inOrder = inOrder(notificationDispatcher);
+        inOrder.verify(notificationDispatcher).dispatch("FUNKOS:1", "{\"entity\":\"FUNKOS\"}",
+                new NotificationTopic(Notification.Tipo.UPDATE, 1L, "Marvel"), webSocketHandler);
+        inOrder.verify(notificationDispatcher).dispatch(null, "{\"entity\":\"STOCK\"}", null, webSocketHandler);
+        // El relay no borra: las filas son de todas las réplicas y se purgan por antigüedad
+        verify(outboxRepository, never()).deleteAllInBatch(any());
+        assertAll(
+                () -> assertEquals(2, enviadas),
+                () -> assertEquals(2, relay.position()),
+                () -> assertEquals(2, meterRegistry.get("outbox.relayed").counter().count()),
+                () -> assertEquals(2, meterRegistry.get("outbox.relay.lag").timer().count()),
+                () -> assertEquals(0, meterRegistry.get("outbox.relay.oldest").gauge().value())
+        );
+    }
+
+    @Test
+    void failedSendIsRetriedFromThatEvent() {
+        when(outboxRepository.findMaxId()).thenReturn(0L);
+        when(outboxRepository.findAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(evento1, evento2));
+        when(notificationDispatcher.dispatch(any(), anyString(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("descartada")));
+
+        int enviadas = relay.relay();
+
+        assertAll(
+                () -> assertEquals(1, enviadas),
+                () -> assertEquals(1, relay.position())
+        );
+    }
+
+    @Test
+    void recentGapWaitsForTheMissingEvent() {
+        when(outboxRepository.findMaxId()).thenReturn(0L);
+        // Falta el 2: puede ser una transacción que aún no ha hecho commit
+        when(outboxRepository.findAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(evento(1, LocalDateTime.now()), evento(3, LocalDateTime.now())));
+        when(notificationDispatcher.dispatch(any(), anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+
+        verify(notificationDispatcher, times(1)).dispatch(any(), anyString(), any(), any());
+        assertEquals(1, relay.position());
+    }
+
+    @Test
+    void earlierIdCommittedLateIsNotSkipped() {
+        when(outboxRepository.findMaxId()).thenReturn(0L);
+        // El 3 se escribió hace un minuto, pero el hueco del 2 se acaba de ver: hay que esperarlo
+        OutboxEvent evento3 = evento(3, LocalDateTime.now().minusMinutes(1));
+        when(outboxRepository.findAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(evento(1, LocalDateTime.now().minusMinutes(1)), evento3));
+        when(outboxRepository.findAfter(eq(1L), any(Pageable.class)))
+                .thenReturn(List.of(evento(2, LocalDateTime.now().minusMinutes(2)), evento3));
+        when(outboxRepository.findAfter(eq(3L), any(Pageable.class))).thenReturn(List.of());
+        when(notificationDispatcher.dispatch(any(), anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+        assertEquals(1, relay.position());
+
+        // La transacción del 2 hace commit después
+        relay.relay();
+
+        InOrder inOrder = inOrder(notificationDispatcher);
+        inOrder.verify(notificationDispatcher).dispatch(null, "m1", null, webSocketHandler);
+        inOrder.verify(notificationDispatcher).dispatch(null, "m2", null, webSocketHandler);
+        inOrder.verify(notificationDispatcher).dispatch(null, "m3", null, webSocketHandler);
+        assertEquals(3, relay.position());
+    }
+
+    @Test
+    void gapIsSkippedAfterWaitingForIt() throws InterruptedException {
+        relay = new OutboxRelay(outboxRepository, notificationDispatcher, webSocketHandler, transactionManager,
+                2, 1000, 100, 1000, 3600000, 60000, meterRegistry);
+        when(outboxRepository.findMaxId()).thenReturn(0L);
+        when(outboxRepository.findAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(evento(1, LocalDateTime.now()), evento(3, LocalDateTime.now())));
+        when(outboxRepository.findAfter(eq(1L), any(Pageable.class)))
+                .thenReturn(List.of(evento(3, LocalDateTime.now())));
+        when(notificationDispatcher.dispatch(any(), anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        relay.relay();
+        assertEquals(1, relay.position());
+
+        Thread.sleep(200);
+        relay.relay();
+
+        assertEquals(3, relay.position());
+    }
+
+    @Test
+    void purgeDeletesOldRows() {
+        when(outboxRepository.deleteCreatedBefore(any())).thenReturn(3);
+
+        assertEquals(3, relay.purge());
+        assertEquals(3, meterRegistry.get("outbox.purged").counter().count());
+        verify(transactionManager, times(1)).commit(any());
+    }
+}